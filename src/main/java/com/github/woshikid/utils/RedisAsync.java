@@ -0,0 +1,653 @@
+package com.github.woshikid.utils;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RedisUtils的异步版本
+ * 通过{@link RedisUtils#async()}得到
+ * 命令在有界线程池中执行，返回CompletableFuture，便于同时发起多个互不依赖的查询
+ * CompletableFuture&lt;String&gt; name = RedisUtils.async().get(nameKey);
+ * CompletableFuture&lt;Map&lt;String, String&gt;&gt; profile = RedisUtils.async().hgetAll(profileKey);
+ * CompletableFuture.allOf(name, profile).join();
+ * 线程池与队列都满时由调用线程直接执行，以限制积压
+ * 开启async.virtualThreads并且JDK支持虚拟线程时，使用虚拟线程执行，并发数仍然限制为async.threads
+ * 执行中与等待中的任务总数超过async.threads+async.queueSize时同样由调用线程直接执行
+ * 未列出的命令可以通过{@link #supply(Supplier)}异步执行
+ * @author kid
+ *
+ */
+public class RedisAsync {
+
+	private final static Logger logger = LoggerFactory.getLogger(RedisAsync.class);
+	
+	private final Executor executor;
+	
+	/**
+	 * @param threads 最大并发数
+	 * @param queueSize 等待队列长度
+	 * @param virtualThreads 是否尝试使用虚拟线程
+	 */
+	RedisAsync(int threads, int queueSize, boolean virtualThreads) {
+		if (threads <= 0) throw new IllegalArgumentException("threads must be positive:" + threads);
+		
+		Executor virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+		if (virtualExecutor != null) {
+			//虚拟线程不需要复用，只需要限制同时执行的命令数
+			Semaphore permits = new Semaphore(threads);
+			//在创建虚拟线程之前限制积压的任务数，相当于线程池的队列长度
+			Semaphore admission = new Semaphore(threads + queueSize);
+			executor = task -> {
+				if (!admission.tryAcquire()) {
+					task.run();
+					return;
+				}
+				
+				try {
+					virtualExecutor.execute(() -> {
+						try {
+							permits.acquireUninterruptibly();
+							try {
+								task.run();
+							} finally {
+								permits.release();
+							}
+						} finally {
+							admission.release();
+						}
+					});
+				} catch (RuntimeException e) {
+					admission.release();
+					throw e;
+				}
+			};
+		} else {
+			AtomicInteger index = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+				Thread thread = new Thread(runnable, "redis-async-" + index.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}, new ThreadPoolExecutor.CallerRunsPolicy());
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+	}
+	
+	/**
+	 * 通过反射创建虚拟线程执行器，JDK不支持时返回null
+	 * @return
+	 */
+	private static Executor newVirtualThreadExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (Executor)method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			logger.warn("virtual threads not supported, use thread pool instead");
+			return null;
+		}
+	}
+	
+	/**
+	 * 得到执行命令的线程池，可用于CompletableFuture的后续操作
+	 * @return
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * 异步执行任意RedisUtils操作
+	 * RedisUtils.async().supply(() -&gt; RedisUtils.zrevrangeWithScores(key, 0, 9));
+	 * @param command
+	 * @return
+	 */
+	public <T> CompletableFuture<T> supply(Supplier<T> command) {
+		return CompletableFuture.supplyAsync(command, executor);
+	}
+	
+	/**
+	 * 异步执行没有返回值的RedisUtils操作
+	 * @param command
+	 * @return
+	 */
+	public CompletableFuture<Void> run(Runnable command) {
+		return CompletableFuture.runAsync(command, executor);
+	}
+	
+	/********** 常用命令 **********/
+	
+	/**
+	 * 同{@link RedisUtils#del(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Boolean> del(Object key) {
+		return supply(() -> RedisUtils.del(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#del(Object...)}
+	 * @param keys
+	 * @return
+	 */
+	public CompletableFuture<Long> del(Object... keys) {
+		return supply(() -> RedisUtils.del(keys));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#exists(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Boolean> exists(Object key) {
+		return supply(() -> RedisUtils.exists(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#exists(Object...)}
+	 * @param keys
+	 * @return
+	 */
+	public CompletableFuture<Long> exists(Object... keys) {
+		return supply(() -> RedisUtils.exists(keys));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#expire(Object, int)}
+	 * @param key
+	 * @param seconds
+	 * @return
+	 */
+	public CompletableFuture<Boolean> expire(Object key, int seconds) {
+		return supply(() -> RedisUtils.expire(key, seconds));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#ttl(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Long> ttl(Object key) {
+		return supply(() -> RedisUtils.ttl(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#set(Object, Object)}
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	public CompletableFuture<Boolean> set(Object key, Object value) {
+		return supply(() -> RedisUtils.set(key, value));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#set(Object, Object, String, String, long)}
+	 * @param key
+	 * @param value
+	 * @param nxxx
+	 * @param expx
+	 * @param time
+	 * @return
+	 */
+	public CompletableFuture<Boolean> set(Object key, Object value, String nxxx, String expx, long time) {
+		return supply(() -> RedisUtils.set(key, value, nxxx, expx, time));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#setex(Object, int, Object)}
+	 * @param key
+	 * @param seconds
+	 * @param value
+	 * @return
+	 */
+	public CompletableFuture<Void> setex(Object key, int seconds, Object value) {
+		return run(() -> RedisUtils.setex(key, seconds, value));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#getBytes(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<byte[]> getBytes(Object key) {
+		return supply(() -> RedisUtils.getBytes(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#get(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<String> get(Object key) {
+		return supply(() -> RedisUtils.get(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#get(Object, Class)}
+	 * @param key
+	 * @param type
+	 * @return
+	 */
+	public <T> CompletableFuture<T> get(Object key, Class<T> type) {
+		return supply(() -> RedisUtils.get(key, type));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#mgetBytes(Object...)}
+	 * @param keys
+	 * @return
+	 */
+	public CompletableFuture<List<byte[]>> mgetBytes(Object... keys) {
+		return supply(() -> RedisUtils.mgetBytes(keys));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#mget(Object...)}
+	 * @param keys
+	 * @return
+	 */
+	public CompletableFuture<List<String>> mget(Object... keys) {
+		return supply(() -> RedisUtils.mget(keys));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#mget(Class, Object...)}
+	 * @param type
+	 * @param keys
+	 * @return
+	 */
+	public <T> CompletableFuture<List<T>> mget(Class<T> type, Object... keys) {
+		return supply(() -> RedisUtils.mget(type, keys));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#mset(Object...)}
+	 * @param keysvalues
+	 * @return
+	 */
+	public CompletableFuture<Void> mset(Object... keysvalues) {
+		return run(() -> RedisUtils.mset(keysvalues));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#incr(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Long> incr(Object key) {
+		return supply(() -> RedisUtils.incr(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#incrBy(Object, long)}
+	 * @param key
+	 * @param integer
+	 * @return
+	 */
+	public CompletableFuture<Long> incrBy(Object key, long integer) {
+		return supply(() -> RedisUtils.incrBy(key, integer));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hset(Object, Object, Object)}
+	 * @param key
+	 * @param field
+	 * @param value
+	 * @return
+	 */
+	public CompletableFuture<Boolean> hset(Object key, Object field, Object value) {
+		return supply(() -> RedisUtils.hset(key, field, value));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hget(Object, Object)}
+	 * @param key
+	 * @param field
+	 * @return
+	 */
+	public CompletableFuture<String> hget(Object key, Object field) {
+		return supply(() -> RedisUtils.hget(key, field));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hget(Object, Object, Class)}
+	 * @param key
+	 * @param field
+	 * @param type
+	 * @return
+	 */
+	public <T> CompletableFuture<T> hget(Object key, Object field, Class<T> type) {
+		return supply(() -> RedisUtils.hget(key, field, type));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hmset(Object, Map)}
+	 * @param key
+	 * @param hash
+	 * @return
+	 */
+	public CompletableFuture<Void> hmset(Object key, Map<?, ?> hash) {
+		return run(() -> RedisUtils.hmset(key, hash));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hmget(Object, Object...)}
+	 * @param key
+	 * @param fields
+	 * @return
+	 */
+	public CompletableFuture<List<String>> hmget(Object key, Object... fields) {
+		return supply(() -> RedisUtils.hmget(key, fields));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hincrBy(Object, Object, long)}
+	 * @param key
+	 * @param field
+	 * @param value
+	 * @return
+	 */
+	public CompletableFuture<Long> hincrBy(Object key, Object field, long value) {
+		return supply(() -> RedisUtils.hincrBy(key, field, value));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hexists(Object, Object)}
+	 * @param key
+	 * @param field
+	 * @return
+	 */
+	public CompletableFuture<Boolean> hexists(Object key, Object field) {
+		return supply(() -> RedisUtils.hexists(key, field));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hdel(Object, Object...)}
+	 * @param key
+	 * @param fields
+	 * @return
+	 */
+	public CompletableFuture<Long> hdel(Object key, Object... fields) {
+		return supply(() -> RedisUtils.hdel(key, fields));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hlen(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Long> hlen(Object key) {
+		return supply(() -> RedisUtils.hlen(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hgetAll(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Map<String, String>> hgetAll(Object key) {
+		return supply(() -> RedisUtils.hgetAll(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hgetAll(Object, Class)}
+	 * @param key
+	 * @param type
+	 * @return
+	 */
+	public <T> CompletableFuture<Map<String, T>> hgetAll(Object key, Class<T> type) {
+		return supply(() -> RedisUtils.hgetAll(key, type));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#rpush(Object, Object...)}
+	 * @param key
+	 * @param values
+	 * @return
+	 */
+	public CompletableFuture<Long> rpush(Object key, Object... values) {
+		return supply(() -> RedisUtils.rpush(key, values));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#lpush(Object, Object...)}
+	 * @param key
+	 * @param values
+	 * @return
+	 */
+	public CompletableFuture<Long> lpush(Object key, Object... values) {
+		return supply(() -> RedisUtils.lpush(key, values));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#llen(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Long> llen(Object key) {
+		return supply(() -> RedisUtils.llen(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#lrange(Object, long, long)}
+	 * @param key
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public CompletableFuture<List<String>> lrange(Object key, long start, long end) {
+		return supply(() -> RedisUtils.lrange(key, start, end));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#lrange(Object, long, long, Class)}
+	 * @param key
+	 * @param start
+	 * @param end
+	 * @param type
+	 * @return
+	 */
+	public <T> CompletableFuture<List<T>> lrange(Object key, long start, long end, Class<T> type) {
+		return supply(() -> RedisUtils.lrange(key, start, end, type));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#sadd(Object, Object...)}
+	 * @param key
+	 * @param members
+	 * @return
+	 */
+	public CompletableFuture<Long> sadd(Object key, Object... members) {
+		return supply(() -> RedisUtils.sadd(key, members));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#srem(Object, Object...)}
+	 * @param key
+	 * @param members
+	 * @return
+	 */
+	public CompletableFuture<Long> srem(Object key, Object... members) {
+		return supply(() -> RedisUtils.srem(key, members));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#scard(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Long> scard(Object key) {
+		return supply(() -> RedisUtils.scard(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#sismember(Object, Object)}
+	 * @param key
+	 * @param member
+	 * @return
+	 */
+	public CompletableFuture<Boolean> sismember(Object key, Object member) {
+		return supply(() -> RedisUtils.sismember(key, member));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#smembers(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Set<String>> smembers(Object key) {
+		return supply(() -> RedisUtils.smembers(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#smembers(Object, Class)}
+	 * @param key
+	 * @param type
+	 * @return
+	 */
+	public <T> CompletableFuture<Set<T>> smembers(Object key, Class<T> type) {
+		return supply(() -> RedisUtils.smembers(key, type));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zadd(Object, double, Object)}
+	 * @param key
+	 * @param score
+	 * @param member
+	 * @return
+	 */
+	public CompletableFuture<Boolean> zadd(Object key, double score, Object member) {
+		return supply(() -> RedisUtils.zadd(key, score, member));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zadd(Object, Map)}
+	 * @param key
+	 * @param scoreMembers
+	 * @return
+	 */
+	public CompletableFuture<Long> zadd(Object key, Map<?, Double> scoreMembers) {
+		return supply(() -> RedisUtils.zadd(key, scoreMembers));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zincrby(Object, double, Object)}
+	 * @param key
+	 * @param score
+	 * @param member
+	 * @return
+	 */
+	public CompletableFuture<Double> zincrby(Object key, double score, Object member) {
+		return supply(() -> RedisUtils.zincrby(key, score, member));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zcard(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Long> zcard(Object key) {
+		return supply(() -> RedisUtils.zcard(key));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zscore(Object, Object)}
+	 * @param key
+	 * @param member
+	 * @return
+	 */
+	public CompletableFuture<Double> zscore(Object key, Object member) {
+		return supply(() -> RedisUtils.zscore(key, member));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zrem(Object, Object...)}
+	 * @param key
+	 * @param members
+	 * @return
+	 */
+	public CompletableFuture<Long> zrem(Object key, Object... members) {
+		return supply(() -> RedisUtils.zrem(key, members));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zrange(Object, long, long)}
+	 * @param key
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public CompletableFuture<Set<String>> zrange(Object key, long start, long end) {
+		return supply(() -> RedisUtils.zrange(key, start, end));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zrevrange(Object, long, long)}
+	 * @param key
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public CompletableFuture<Set<String>> zrevrange(Object key, long start, long end) {
+		return supply(() -> RedisUtils.zrevrange(key, start, end));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zrangeByScore(Object, double, double)}
+	 * @param key
+	 * @param min
+	 * @param max
+	 * @return
+	 */
+	public CompletableFuture<Set<String>> zrangeByScore(Object key, double min, double max) {
+		return supply(() -> RedisUtils.zrangeByScore(key, min, max));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zrangeByScore(Object, double, double, int, int)}
+	 * @param key
+	 * @param min
+	 * @param max
+	 * @param offset
+	 * @param count
+	 * @return
+	 */
+	public CompletableFuture<Set<String>> zrangeByScore(Object key, double min, double max, int offset, int count) {
+		return supply(() -> RedisUtils.zrangeByScore(key, min, max, offset, count));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#pfadd(Object, Object...)}
+	 * @param key
+	 * @param elements
+	 * @return
+	 */
+	public CompletableFuture<Boolean> pfadd(Object key, Object... elements) {
+		return supply(() -> RedisUtils.pfadd(key, elements));
+	}
+	
+	/**
+	 * 同{@link RedisUtils#pfcount(Object)}
+	 * @param key
+	 * @return
+	 */
+	public CompletableFuture<Long> pfcount(Object key) {
+		return supply(() -> RedisUtils.pfcount(key));
+	}
+	
+}
@@ -0,0 +1,604 @@
+package com.github.woshikid.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 紧凑的二进制编码方式
+ * 每个值以1字节类型标记开头，整数使用变长编码
+ * 普通对象按照属性名保存各个非static,非transient属性，不要求实现Serializable
+ * 解码时按照目标类型的属性名赋值，属性增减不影响已有数据的读取
+ * 普通对象需要有无参构造方法
+ * 支持基本类型、字符串、BigDecimal、BigInteger、Date及其子类、UUID、枚举、java.time中的日期时间类型、数组、集合与Map
+ * 其他java.*,javax.*中的类(包括继承这些类的对象)不支持，编码时抛出IllegalArgumentException
+ * 属性中的对象与属性声明的类型不同时(如声明为接口、父类或Object)同时保存实际类名，解码时按实际类型创建
+ * 不支持循环引用，对象图中有环时编码会栈溢出
+ * @author kid
+ *
+ */
+public class RedisBinaryCodec implements RedisCodec {
+
+	private static final byte NULL = 0;
+	private static final byte TRUE = 1;
+	private static final byte FALSE = 2;
+	private static final byte INT = 3;
+	private static final byte LONG = 4;
+	private static final byte SHORT = 5;
+	private static final byte BYTE = 6;
+	private static final byte DOUBLE = 7;
+	private static final byte FLOAT = 8;
+	private static final byte CHAR = 9;
+	private static final byte STRING = 10;
+	private static final byte BYTES = 11;
+	private static final byte BIG_DECIMAL = 12;
+	private static final byte BIG_INTEGER = 13;
+	private static final byte DATE = 14;
+	private static final byte ENUM = 15;
+	private static final byte LIST = 16;
+	private static final byte SET = 17;
+	private static final byte MAP = 18;
+	private static final byte OBJECT = 19;
+	private static final byte UUID_TAG = 20;
+	private static final byte TIME = 21;
+	private static final byte TYPED_OBJECT = 22;
+	
+	/**
+	 * 支持的java.time类型，以序号与toString保存，解码时以对应的parse方法还原
+	 * 只能在末尾增加
+	 */
+	private static final List<Class<?>> TIME_TYPES = Arrays.asList(Instant.class, LocalDate.class, LocalTime.class, LocalDateTime.class,
+			OffsetDateTime.class, OffsetTime.class, ZonedDateTime.class, Duration.class, Period.class, Year.class, YearMonth.class, MonthDay.class,
+			ZoneOffset.class, ZoneId.class);
+	
+	private static final List<Function<String, Object>> TIME_PARSERS = Arrays.asList(Instant::parse, LocalDate::parse, LocalTime::parse, LocalDateTime::parse,
+			OffsetDateTime::parse, OffsetTime::parse, ZonedDateTime::parse, Duration::parse, Period::parse, Year::parse, YearMonth::parse, MonthDay::parse,
+			ZoneOffset::of, ZoneId::of);
+	
+	/**
+	 * 缓存各个类需要保存的属性
+	 */
+	private final Map<Class<?>, Field[]> fieldsCache = new ConcurrentHashMap<>();
+	
+	/**
+	 * 缓存各个类按属性名查找的属性，与父类同名时为子类的属性
+	 */
+	private final Map<Class<?>, Map<String, Field>> fieldMapCache = new ConcurrentHashMap<>();
+	
+	public byte[] encode(Object object) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+		write(out, object, null);
+		return out.toByteArray();
+	}
+	
+	@SuppressWarnings("unchecked")
+	public <T> T decode(byte[] bytes, Class<T> type) {
+		return (T)read(ByteBuffer.wrap(bytes), type);
+	}
+	
+	/********** 编码 **********/
+	
+	private void write(ByteArrayOutputStream out, Object object) {
+		write(out, object, null);
+	}
+	
+	/**
+	 * @param out
+	 * @param object
+	 * @param declared 属性声明的类型，不是属性时为null
+	 */
+	private void write(ByteArrayOutputStream out, Object object, Class<?> declared) {
+		if (object == null) {
+			out.write(NULL);
+		} else if (object instanceof Boolean) {
+			out.write((Boolean)object ? TRUE : FALSE);
+		} else if (object instanceof Integer) {
+			out.write(INT);
+			writeVarLong(out, (Integer)object);
+		} else if (object instanceof Long) {
+			out.write(LONG);
+			writeVarLong(out, (Long)object);
+		} else if (object instanceof Short) {
+			out.write(SHORT);
+			writeVarLong(out, (Short)object);
+		} else if (object instanceof Byte) {
+			out.write(BYTE);
+			out.write((Byte)object);
+		} else if (object instanceof Double) {
+			out.write(DOUBLE);
+			writeFixedLong(out, Double.doubleToLongBits((Double)object));
+		} else if (object instanceof Float) {
+			out.write(FLOAT);
+			writeFixedLong(out, Float.floatToIntBits((Float)object) & 0xFFFFFFFFL, 4);
+		} else if (object instanceof Character) {
+			out.write(CHAR);
+			writeVarLong(out, (Character)object);
+		} else if (object instanceof String) {
+			out.write(STRING);
+			writeBytes(out, ((String)object).getBytes(StandardCharsets.UTF_8));
+		} else if (object instanceof byte[]) {
+			out.write(BYTES);
+			writeBytes(out, (byte[])object);
+		} else if (object instanceof BigDecimal) {
+			out.write(BIG_DECIMAL);
+			writeBytes(out, object.toString().getBytes(StandardCharsets.UTF_8));
+		} else if (object instanceof BigInteger) {
+			out.write(BIG_INTEGER);
+			writeBytes(out, ((BigInteger)object).toByteArray());
+		} else if (object instanceof Date) {
+			out.write(DATE);
+			writeVarLong(out, ((Date)object).getTime());
+		} else if (object instanceof UUID) {
+			UUID uuid = (UUID)object;
+			out.write(UUID_TAG);
+			writeFixedLong(out, uuid.getMostSignificantBits());
+			writeFixedLong(out, uuid.getLeastSignificantBits());
+		} else if (timeType(object) >= 0) {
+			out.write(TIME);
+			out.write(timeType(object));
+			writeBytes(out, object.toString().getBytes(StandardCharsets.UTF_8));
+		} else if (object instanceof Enum) {
+			out.write(ENUM);
+			writeBytes(out, ((Enum<?>)object).name().getBytes(StandardCharsets.UTF_8));
+		} else if (object instanceof Collection) {
+			Collection<?> collection = (Collection<?>)object;
+			out.write(object instanceof Set ? SET : LIST);
+			writeVarLong(out, collection.size());
+			for (Object element : collection) {
+				write(out, element);
+			}
+		} else if (object.getClass().isArray()) {
+			int length = Array.getLength(object);
+			out.write(LIST);
+			writeVarLong(out, length);
+			for (int i = 0; i < length; i++) {
+				write(out, Array.get(object, i));
+			}
+		} else if (object instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>)object;
+			out.write(MAP);
+			writeVarLong(out, map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				write(out, entry.getKey());
+				write(out, entry.getValue());
+			}
+		} else {
+			Class<?> clazz = object.getClass();
+			Field[] fields = getFields(clazz);
+			if (declared != null && declared != clazz) {
+				//实际类型与属性声明的类型不同，保存实际类名
+				out.write(TYPED_OBJECT);
+				writeBytes(out, clazz.getName().getBytes(StandardCharsets.UTF_8));
+			} else {
+				out.write(OBJECT);
+			}
+			writeVarLong(out, fields.length);
+			try {
+				for (Field field : fields) {
+					writeBytes(out, field.getName().getBytes(StandardCharsets.UTF_8));
+					write(out, field.get(object), field.getType());
+				}
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	/**
+	 * 写入zigzag变长整数，绝对值小的数占用字节少
+	 * @param out
+	 * @param value
+	 */
+	private static void writeVarLong(ByteArrayOutputStream out, long value) {
+		long zigzag = (value << 1) ^ (value >> 63);
+		while ((zigzag & ~0x7FL) != 0) {
+			out.write((int)((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+		out.write((int)zigzag);
+	}
+	
+	private static void writeFixedLong(ByteArrayOutputStream out, long value) {
+		writeFixedLong(out, value, 8);
+	}
+	
+	private static void writeFixedLong(ByteArrayOutputStream out, long value, int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			out.write((int)(value >>> (i * 8)));
+		}
+	}
+	
+	private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+		writeVarLong(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+	
+	/**
+	 * 得到java.time类型的序号
+	 * @param object
+	 * @return 不是支持的类型时为-1
+	 */
+	private static int timeType(Object object) {
+		int type = TIME_TYPES.indexOf(object.getClass());
+		if (type < 0 && object instanceof ZoneId) type = TIME_TYPES.indexOf(ZoneId.class);
+		return type;
+	}
+	
+	/**
+	 * 得到需要保存的属性
+	 * @param clazz
+	 * @return
+	 * @throws IllegalArgumentException 类或其父类属于java.*,javax.*，不能反射其内部属性
+	 */
+	private Field[] getFields(Class<?> clazz) {
+		Field[] fields = fieldsCache.get(clazz);
+		if (fields != null) return fields;
+		
+		for (Class<?> type = clazz; type != null && type != Object.class; type = type.getSuperclass()) {
+			if (isPlatformClass(type.getName())) throw new IllegalArgumentException("unsupported type for binary codec:" + clazz.getName());
+		}
+		
+		List<Field> list = new ArrayList<>();
+		for (Field field : ObjectUtils.getAllFields(clazz)) {
+			int modifiers = field.getModifiers();
+			if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue;
+			
+			field.setAccessible(true);
+			list.add(field);
+		}
+		
+		fields = list.toArray(new Field[list.size()]);
+		fieldsCache.put(clazz, fields);
+		return fields;
+	}
+	
+	/**
+	 * 得到按属性名查找的需要保存的属性
+	 * @param clazz
+	 * @return
+	 */
+	private Map<String, Field> getFieldMap(Class<?> clazz) {
+		Map<String, Field> fieldMap = fieldMapCache.get(clazz);
+		if (fieldMap != null) return fieldMap;
+		
+		Field[] fields = getFields(clazz);
+		fieldMap = new HashMap<>(fields.length * 4 / 3 + 1);
+		for (Field field : fields) {
+			fieldMap.putIfAbsent(field.getName(), field);
+		}
+		
+		fieldMapCache.put(clazz, fieldMap);
+		return fieldMap;
+	}
+	
+	private static boolean isPlatformClass(String name) {
+		return name.startsWith("java.") || name.startsWith("javax.");
+	}
+	
+	/********** 解码 **********/
+	
+	/**
+	 * 按照目标类型读取一个值
+	 * @param in
+	 * @param type 目标类型，可以带有泛型信息
+	 * @return
+	 */
+	private Object read(ByteBuffer in, Type type) {
+		Class<?> clazz = toClass(type);
+		byte tag = in.get();
+		switch (tag) {
+		case NULL:
+			return null;
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case INT:
+			return toNumber((int)readVarLong(in), clazz);
+		case LONG:
+			return toNumber(readVarLong(in), clazz);
+		case SHORT:
+			return toNumber((short)readVarLong(in), clazz);
+		case BYTE:
+			return toNumber(in.get(), clazz);
+		case DOUBLE:
+			return toNumber(in.getDouble(), clazz);
+		case FLOAT:
+			return toNumber(in.getFloat(), clazz);
+		case CHAR:
+			char c = (char)readVarLong(in);
+			return clazz == String.class ? String.valueOf(c) : c;
+		case STRING:
+			String string = readString(in);
+			if (clazz == char.class || clazz == Character.class) return string.charAt(0);
+			if (clazz.isEnum()) return toEnum(string, clazz);
+			return string;
+		case BYTES:
+			return readBytes(in);
+		case BIG_DECIMAL:
+			return toNumber(new BigDecimal(readString(in)), clazz);
+		case BIG_INTEGER:
+			return toNumber(new BigInteger(readBytes(in)), clazz);
+		case DATE:
+			return toDate(readVarLong(in), clazz);
+		case UUID_TAG:
+			UUID uuid = new UUID(in.getLong(), in.getLong());
+			return clazz == String.class ? uuid.toString() : uuid;
+		case TIME:
+			int timeType = in.get();
+			String text = readString(in);
+			if (timeType < 0 || timeType >= TIME_PARSERS.size()) throw new IllegalArgumentException("unknown time type:" + timeType);
+			return clazz == String.class ? text : TIME_PARSERS.get(timeType).apply(text);
+		case ENUM:
+			String name = readString(in);
+			return clazz.isEnum() ? toEnum(name, clazz) : name;
+		case LIST:
+		case SET:
+			return readCollection(in, tag, type, clazz);
+		case MAP:
+			return readMap(in, type, clazz);
+		case OBJECT:
+			return readObject(in, clazz);
+		case TYPED_OBJECT:
+			return readObject(in, toObjectClass(readString(in), clazz));
+		default:
+			throw new IllegalArgumentException("unknown tag:" + tag);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Object readCollection(ByteBuffer in, byte tag, Type type, Class<?> clazz) {
+		int size = (int)readVarLong(in);
+		
+		//数组
+		if (clazz.isArray()) {
+			Type componentType = type instanceof GenericArrayType ? ((GenericArrayType)type).getGenericComponentType() : clazz.getComponentType();
+			Object array = Array.newInstance(clazz.getComponentType(), size);
+			for (int i = 0; i < size; i++) {
+				Array.set(array, i, read(in, componentType));
+			}
+			return array;
+		}
+		
+		Collection<Object> collection;
+		if (isConcrete(clazz, Collection.class)) {
+			collection = (Collection<Object>)newInstance(clazz);
+		} else if (SortedSet.class.isAssignableFrom(clazz)) {
+			collection = new TreeSet<>();
+		} else if (Set.class.isAssignableFrom(clazz) || (tag == SET && !List.class.isAssignableFrom(clazz))) {
+			collection = new LinkedHashSet<>(size * 4 / 3 + 1);
+		} else {
+			collection = new ArrayList<>(size);
+		}
+		
+		Type elementType = getTypeArgument(type, 0);
+		for (int i = 0; i < size; i++) {
+			collection.add(read(in, elementType));
+		}
+		return collection;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Object readMap(ByteBuffer in, Type type, Class<?> clazz) {
+		int size = (int)readVarLong(in);
+		Map<Object, Object> map;
+		if (isConcrete(clazz, Map.class)) {
+			map = (Map<Object, Object>)newInstance(clazz);
+		} else if (SortedMap.class.isAssignableFrom(clazz)) {
+			map = new TreeMap<>();
+		} else {
+			map = new LinkedHashMap<>(size * 4 / 3 + 1);
+		}
+		
+		Type keyType = getTypeArgument(type, 0);
+		Type valueType = getTypeArgument(type, 1);
+		for (int i = 0; i < size; i++) {
+			Object key = read(in, keyType);
+			map.put(key, read(in, valueType));
+		}
+		return map;
+	}
+	
+	private Object readObject(ByteBuffer in, Class<?> clazz) {
+		int size = (int)readVarLong(in);
+		
+		//没有具体类型时读取为Map
+		if (clazz == Object.class || Map.class.isAssignableFrom(clazz)) {
+			Map<String, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+			for (int i = 0; i < size; i++) {
+				String name = readString(in);
+				map.put(name, read(in, Object.class));
+			}
+			return map;
+		}
+		
+		Object object = newInstance(clazz);
+		Map<String, Field> fieldMap = getFieldMap(clazz);
+		try {
+			for (int i = 0; i < size; i++) {
+				Field field = fieldMap.get(readString(in));
+				
+				//属性已经不存在或已不需要保存时跳过
+				if (field == null) {
+					read(in, Object.class);
+					continue;
+				}
+				
+				Object value = read(in, field.getGenericType());
+				if (value == null && field.getType().isPrimitive()) continue;
+				
+				field.set(object, value);
+			}
+			return object;
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * 还原Date或其子类(如java.sql.Timestamp)
+	 * @param time
+	 * @param clazz
+	 * @return
+	 */
+	private static Date toDate(long time, Class<?> clazz) {
+		if (clazz == Date.class || !Date.class.isAssignableFrom(clazz)) return new Date(time);
+		
+		try {
+			return (Date)clazz.getConstructor(long.class).newInstance(time);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("unsupported date type:" + clazz.getName(), e);
+		}
+	}
+	
+	/**
+	 * 得到保存的实际类型
+	 * @param name 实际类名
+	 * @param clazz 目标类型
+	 * @return
+	 */
+	private static Class<?> toObjectClass(String name, Class<?> clazz) {
+		if (isPlatformClass(name)) throw new IllegalArgumentException("unsupported type for binary codec:" + name);
+		
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (loader == null) loader = RedisBinaryCodec.class.getClassLoader();
+		try {
+			Class<?> actual = Class.forName(name, false, loader);
+			if (!clazz.isAssignableFrom(actual)) throw new IllegalArgumentException(name + " is not a " + clazz.getName());
+			return actual;
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("class not found:" + name, e);
+		}
+	}
+	
+	/**
+	 * 通过无参构造方法创建对象
+	 * @param clazz
+	 * @return
+	 */
+	private static Object newInstance(Class<?> clazz) {
+		try {
+			Constructor<?> constructor = clazz.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return constructor.newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * 是否为可以直接创建的集合类型
+	 * @param clazz
+	 * @param collectionType
+	 * @return
+	 */
+	private static boolean isConcrete(Class<?> clazz, Class<?> collectionType) {
+		return collectionType.isAssignableFrom(clazz) && !clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers());
+	}
+	
+	private static long readVarLong(ByteBuffer in) {
+		long zigzag = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = in.get();
+			zigzag |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) break;
+		}
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+	
+	private static byte[] readBytes(ByteBuffer in) {
+		byte[] bytes = new byte[(int)readVarLong(in)];
+		in.get(bytes);
+		return bytes;
+	}
+	
+	private static String readString(ByteBuffer in) {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * 将数字转换为目标类型
+	 * @param number
+	 * @param clazz
+	 * @return
+	 */
+	private static Object toNumber(Number number, Class<?> clazz) {
+		if (clazz == int.class || clazz == Integer.class) return number.intValue();
+		if (clazz == long.class || clazz == Long.class) return number.longValue();
+		if (clazz == double.class || clazz == Double.class) return number.doubleValue();
+		if (clazz == float.class || clazz == Float.class) return number.floatValue();
+		if (clazz == short.class || clazz == Short.class) return number.shortValue();
+		if (clazz == byte.class || clazz == Byte.class) return number.byteValue();
+		if (clazz == BigDecimal.class && !(number instanceof BigDecimal)) return new BigDecimal(number.toString());
+		if (clazz == BigInteger.class && !(number instanceof BigInteger)) return new BigDecimal(number.toString()).toBigInteger();
+		if (clazz == String.class) return number.toString();
+		return number;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object toEnum(String name, Class<?> clazz) {
+		return Enum.valueOf((Class<Enum>)clazz, name);
+	}
+	
+	private static Class<?> toClass(Type type) {
+		if (type instanceof Class) return (Class<?>)type;
+		if (type instanceof ParameterizedType) return toClass(((ParameterizedType)type).getRawType());
+		if (type instanceof GenericArrayType) return Array.newInstance(toClass(((GenericArrayType)type).getGenericComponentType()), 0).getClass();
+		return Object.class;
+	}
+	
+	/**
+	 * 得到泛型参数，没有时为Object
+	 * @param type
+	 * @param index
+	 * @return
+	 */
+	private static Type getTypeArgument(Type type, int index) {
+		if (type instanceof ParameterizedType) {
+			Type[] arguments = ((ParameterizedType)type).getActualTypeArguments();
+			if (index < arguments.length) return arguments[index];
+		}
+		return Object.class;
+	}
+	
+}
@@ -0,0 +1,329 @@
+package com.github.woshikid.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import redis.clients.jedis.Response;
+
+/**
+ * 基于redis位图的布隆过滤器
+ * 在客户端以murmur3计算k个位置，所有位的读写通过一次管道往返完成
+ * 容量较大时分为多个分片key，每个元素只落在一个分片中，集群模式下分片分布在不同的slot
+ * 单个分片最多2^32位(512MB)，超出时自动增加分片
+ * 分片key为name:序号，只有一个分片时为name
+ * 需要所有分片在同一个slot时，name中使用{hashtag}
+ * @author kid
+ *
+ */
+public class RedisBloomFilter {
+
+	/**
+	 * redis字符串的最大位数
+	 */
+	private static final long MAX_SHARD_BITS = 1L << 32;
+	
+	private final String name;
+	
+	private final int shards;
+	
+	private final long shardBits;
+	
+	private final int hashes;
+	
+	/**
+	 * @param name 过滤器名称，即分片key的前缀
+	 * @param expectedInsertions 预计插入的元素个数
+	 * @param fpp 期望的误判率
+	 */
+	public RedisBloomFilter(String name, long expectedInsertions, double fpp) {
+		this(name, expectedInsertions, fpp, 1);
+	}
+	
+	/**
+	 * @param name 过滤器名称，即分片key的前缀
+	 * @param expectedInsertions 预计插入的元素个数
+	 * @param fpp 期望的误判率
+	 * @param shards 分片个数，位数超出单个分片上限时自动增加
+	 */
+	public RedisBloomFilter(String name, long expectedInsertions, double fpp, int shards) {
+		if (expectedInsertions <= 0) throw new IllegalArgumentException("expectedInsertions must be positive:" + expectedInsertions);
+		if (fpp <= 0 || fpp >= 1) throw new IllegalArgumentException("fpp must be between 0 and 1:" + fpp);
+		if (shards <= 0) throw new IllegalArgumentException("shards must be positive:" + shards);
+		
+		//m = -n*ln(p)/(ln2)^2, k = m/n*ln2
+		long bits = Math.max(64, (long)Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+		long minShards = (bits + MAX_SHARD_BITS - 1) / MAX_SHARD_BITS;
+		if (minShards > Integer.MAX_VALUE) throw new IllegalArgumentException("too many bits:" + bits);
+		
+		this.name = name;
+		this.shards = (int)Math.max(shards, minShards);
+		this.shardBits = (bits + this.shards - 1) / this.shards;
+		this.hashes = Math.max(1, (int)Math.round((double)bits / expectedInsertions * Math.log(2)));
+	}
+	
+	/**
+	 * 加入元素
+	 * @param element
+	 * @return 是否为新元素，有可能误判为已存在
+	 */
+	public boolean put(Object element) {
+		List<Object> elements = new ArrayList<>(1);
+		elements.add(element);
+		return putAll(elements) == 1;
+	}
+	
+	/**
+	 * 批量加入元素，所有位在一次管道中设置
+	 * @param elements
+	 * @return 新元素的个数
+	 */
+	public long putAll(Collection<?> elements) {
+		List<List<Response<Boolean>>> responses = new ArrayList<>(elements.size());
+		RedisUtils.pipeline(batch -> {
+			for (Object element : elements) {
+				Probe probe = new Probe(element);
+				List<Response<Boolean>> bits = new ArrayList<>(hashes);
+				for (long offset : probe.offsets) {
+					bits.add(batch.setbit(probe.key, offset, true));
+				}
+				responses.add(bits);
+			}
+		});
+		
+		//有任意一位原来为0即为新元素
+		long added = 0;
+		for (List<Response<Boolean>> bits : responses) {
+			for (Response<Boolean> bit : bits) {
+				if (!bit.get()) {
+					added++;
+					break;
+				}
+			}
+		}
+		return added;
+	}
+	
+	/**
+	 * 判断元素是否可能存在
+	 * @param element
+	 * @return false时一定不存在，true时有可能误判
+	 */
+	public boolean mightContain(Object element) {
+		List<Object> elements = new ArrayList<>(1);
+		elements.add(element);
+		return mightContainAll(elements).get(0);
+	}
+	
+	/**
+	 * 批量判断元素是否可能存在，所有位在一次管道中读取
+	 * @param elements
+	 * @return 按照参数的顺序排列
+	 */
+	public List<Boolean> mightContainAll(Collection<?> elements) {
+		List<List<Response<Boolean>>> responses = new ArrayList<>(elements.size());
+		RedisUtils.pipeline(batch -> {
+			for (Object element : elements) {
+				Probe probe = new Probe(element);
+				List<Response<Boolean>> bits = new ArrayList<>(hashes);
+				for (long offset : probe.offsets) {
+					bits.add(batch.getbit(probe.key, offset));
+				}
+				responses.add(bits);
+			}
+		});
+		
+		List<Boolean> results = new ArrayList<>(responses.size());
+		for (List<Response<Boolean>> bits : responses) {
+			boolean contains = true;
+			for (Response<Boolean> bit : bits) {
+				if (!bit.get()) {
+					contains = false;
+					break;
+				}
+			}
+			results.add(contains);
+		}
+		return results;
+	}
+	
+	/**
+	 * 根据已设置的位数估算已加入的元素个数
+	 * @return
+	 */
+	public long approximateCount() {
+		List<Response<Long>> counts = new ArrayList<>(shards);
+		RedisUtils.pipeline(batch -> {
+			for (int i = 0; i < shards; i++) {
+				counts.add(batch.bitcount(getKey(i)));
+			}
+		});
+		
+		//n = -m/k*ln(1-X/m)，按分片分别估算
+		double count = 0;
+		for (Response<Long> bitCount : counts) {
+			long setBits = Math.min(bitCount.get(), shardBits - 1);
+			count += -(double)shardBits / hashes * Math.log(1 - (double)setBits / shardBits);
+		}
+		return Math.round(count);
+	}
+	
+	/**
+	 * 删除所有分片
+	 */
+	public void delete() {
+		Object[] keys = new Object[shards];
+		for (int i = 0; i < shards; i++) {
+			keys[i] = getKey(i);
+		}
+		RedisUtils.del(keys);
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int getShards() {
+		return shards;
+	}
+	
+	/**
+	 * 每个分片的位数
+	 * @return
+	 */
+	public long getShardBits() {
+		return shardBits;
+	}
+	
+	/**
+	 * 每个元素使用的位数
+	 * @return
+	 */
+	public int getHashes() {
+		return hashes;
+	}
+	
+	private String getKey(int shard) {
+		return shards == 1 ? name : name + ":" + shard;
+	}
+	
+	/**
+	 * 元素所在的分片key与位置
+	 */
+	private class Probe {
+		
+		final String key;
+		
+		final long[] offsets = new long[hashes];
+		
+		Probe(Object element) {
+			byte[] bytes = RedisUtils.toBytes(element);
+			long[] hash = murmur3(bytes);
+			
+			key = getKey((int)Long.remainderUnsigned(fmix64(hash[1] ^ hash[0]), shards));
+			
+			//双重哈希：h1 + i*h2
+			long combined = hash[0];
+			for (int i = 0; i < hashes; i++) {
+				offsets[i] = Long.remainderUnsigned(combined, shardBits);
+				combined += hash[1];
+			}
+		}
+	}
+	
+	/**
+	 * MurmurHash3 x64 128位
+	 * @param data
+	 * @return
+	 */
+	@SuppressWarnings("fallthrough")
+	private static long[] murmur3(byte[] data) {
+		final long c1 = 0x87c37b91114253d5L;
+		final long c2 = 0x4cf5ad432745937fL;
+		
+		long h1 = 0;
+		long h2 = 0;
+		int length = data.length;
+		int blocks = length / 16;
+		
+		for (int i = 0; i < blocks; i++) {
+			long k1 = getLong(data, i * 16);
+			long k2 = getLong(data, i * 16 + 8);
+			
+			k1 *= c1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= c2;
+			h1 ^= k1;
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+			
+			k2 *= c2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= c1;
+			h2 ^= k2;
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+		
+		long k1 = 0;
+		long k2 = 0;
+		int tail = blocks * 16;
+		switch (length & 15) {
+		case 15: k2 ^= (long)(data[tail + 14] & 0xFF) << 48;
+		case 14: k2 ^= (long)(data[tail + 13] & 0xFF) << 40;
+		case 13: k2 ^= (long)(data[tail + 12] & 0xFF) << 32;
+		case 12: k2 ^= (long)(data[tail + 11] & 0xFF) << 24;
+		case 11: k2 ^= (long)(data[tail + 10] & 0xFF) << 16;
+		case 10: k2 ^= (long)(data[tail + 9] & 0xFF) << 8;
+		case 9:
+			k2 ^= (long)(data[tail + 8] & 0xFF);
+			k2 *= c2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= c1;
+			h2 ^= k2;
+		case 8: k1 ^= (long)(data[tail + 7] & 0xFF) << 56;
+		case 7: k1 ^= (long)(data[tail + 6] & 0xFF) << 48;
+		case 6: k1 ^= (long)(data[tail + 5] & 0xFF) << 40;
+		case 5: k1 ^= (long)(data[tail + 4] & 0xFF) << 32;
+		case 4: k1 ^= (long)(data[tail + 3] & 0xFF) << 24;
+		case 3: k1 ^= (long)(data[tail + 2] & 0xFF) << 16;
+		case 2: k1 ^= (long)(data[tail + 1] & 0xFF) << 8;
+		case 1:
+			k1 ^= (long)(data[tail] & 0xFF);
+			k1 *= c1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= c2;
+			h1 ^= k1;
+		}
+		
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+		h1 += h2;
+		h2 += h1;
+		return new long[] {h1, h2};
+	}
+	
+	private static long getLong(byte[] data, int offset) {
+		long value = 0;
+		for (int i = 7; i >= 0; i--) {
+			value = (value << 8) | (data[offset + i] & 0xFF);
+		}
+		return value;
+	}
+	
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+	
+}
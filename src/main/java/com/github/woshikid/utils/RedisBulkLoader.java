@@ -0,0 +1,283 @@
+package com.github.woshikid.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 批量导入数据到redis
+ * 调用线程读取记录并分批放入有界队列，多个工作线程各自以管道写入一批，每批占用一个连接
+ * 队列中最多有threads*2批记录，读取速度超过写入速度时调用线程等待，以限制内存
+ * key与value的转换规则与RedisUtils相同
+ * 任意一批写入失败时停止导入并抛出异常，已写入的数据不会回滚
+ * @author kid
+ *
+ */
+public class RedisBulkLoader {
+
+	private final static Logger logger = LoggerFactory.getLogger(RedisBulkLoader.class);
+	
+	private final int threads;
+	
+	private final int batchSize;
+	
+	private final long reportMillis;
+	
+	private final Consumer<Progress> listener;
+	
+	/**
+	 * 导入进度
+	 */
+	public static class Progress {
+		
+		private final long loaded;
+		
+		private final long elapsedMillis;
+		
+		private final boolean finished;
+		
+		Progress(long loaded, long elapsedMillis, boolean finished) {
+			this.loaded = loaded;
+			this.elapsedMillis = elapsedMillis;
+			this.finished = finished;
+		}
+		
+		/**
+		 * 已写入的记录数
+		 * @return
+		 */
+		public long getLoaded() {
+			return loaded;
+		}
+		
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+		
+		/**
+		 * 每秒写入的记录数
+		 * @return
+		 */
+		public double getRate() {
+			return loaded * 1000.0 / Math.max(elapsedMillis, 1);
+		}
+		
+		/**
+		 * 是否已全部完成
+		 * @return
+		 */
+		public boolean isFinished() {
+			return finished;
+		}
+		
+		public String toString() {
+			return "loaded=" + loaded + ", elapsed=" + elapsedMillis + "ms, rate=" + String.format("%.1f", getRate()) + "/s" + (finished ? ", finished" : "");
+		}
+	}
+	
+	/**
+	 * 每10秒以日志输出进度
+	 * @param threads 同时写入的连接数
+	 * @param batchSize 每批的记录数
+	 */
+	public RedisBulkLoader(int threads, int batchSize) {
+		this(threads, batchSize, 10000, progress -> logger.info("redis bulk load {}", progress));
+	}
+	
+	/**
+	 * @param threads 同时写入的连接数
+	 * @param batchSize 每批的记录数
+	 * @param reportMillis 报告进度的间隔(毫秒)
+	 * @param listener 接收进度，在调用线程中执行
+	 */
+	public RedisBulkLoader(int threads, int batchSize, long reportMillis, Consumer<Progress> listener) {
+		if (threads <= 0) throw new IllegalArgumentException("threads must be positive:" + threads);
+		if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive:" + batchSize);
+		
+		this.threads = threads;
+		this.batchSize = batchSize;
+		this.reportMillis = reportMillis;
+		this.listener = listener;
+	}
+	
+	/**
+	 * 导入文本文件，每行为key与value，以separator分隔，空行忽略
+	 * 文件编码为UTF-8
+	 * @param file
+	 * @param separator
+	 * @param seconds 过期时间(秒)，小于等于0时不过期
+	 * @return 写入的记录数
+	 */
+	public long load(Path file, String separator, int seconds) {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			Iterator<Map.Entry<String, String>> entries = new Iterator<Map.Entry<String, String>>() {
+				
+				private String line = nextLine();
+				
+				private String nextLine() {
+					try {
+						String next;
+						do {
+							next = reader.readLine();
+						} while (next != null && next.isEmpty());
+						return next;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				
+				public boolean hasNext() {
+					return line != null;
+				}
+				
+				public Map.Entry<String, String> next() {
+					int index = line.indexOf(separator);
+					if (index < 0) throw new IllegalArgumentException("separator not found:" + line);
+					
+					Map.Entry<String, String> entry = new AbstractMap.SimpleEntry<>(line.substring(0, index), line.substring(index + separator.length()));
+					line = nextLine();
+					return entry;
+				}
+			};
+			
+			return load(entries, seconds);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * 导入key与value
+	 * @param entries
+	 * @param seconds 过期时间(秒)，小于等于0时不过期
+	 * @return 写入的记录数
+	 */
+	public long load(Iterator<? extends Map.Entry<?, ?>> entries, int seconds) {
+		return load(entries, (pipeline, entry) -> {
+			if (seconds > 0) {
+				pipeline.setex(entry.getKey(), seconds, entry.getValue());
+			} else {
+				pipeline.set(entry.getKey(), entry.getValue());
+			}
+		});
+	}
+	
+	/**
+	 * 导入任意记录，由writer将每条记录写入管道
+	 * @param records
+	 * @param writer
+	 * @return 写入的记录数
+	 */
+	public <T> long load(Iterator<T> records, BiConsumer<RedisPipeline, T> writer) {
+		long start = System.currentTimeMillis();
+		LongAdder loaded = new LongAdder();
+		AtomicReference<RuntimeException> error = new AtomicReference<>();
+		
+		//空批次为结束标记
+		List<T> end = Collections.emptyList();
+		BlockingQueue<List<T>> queue = new ArrayBlockingQueue<>(threads * 2);
+		
+		AtomicInteger index = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "redis-bulk-loader-" + index.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		try {
+			List<Future<?>> workers = new ArrayList<>(threads);
+			for (int i = 0; i < threads; i++) {
+				workers.add(executor.submit(() -> {
+					try {
+						List<T> batch;
+						while ((batch = queue.take()) != end) {
+							//失败后继续取出剩余的批次直到结束标记，使调用线程不会阻塞
+							if (error.get() != null) continue;
+							
+							List<T> current = batch;
+							try {
+								RedisUtils.pipeline(batchSize, pipeline -> {
+									for (T record : current) {
+										writer.accept(pipeline, record);
+									}
+								});
+								loaded.add(current.size());
+							} catch (RuntimeException e) {
+								error.compareAndSet(null, e);
+							}
+						}
+					} catch (InterruptedException e) {
+						//调用线程中断时停止
+					}
+				}));
+			}
+			
+			long lastReport = start;
+			try {
+				while (records.hasNext() && error.get() == null) {
+					List<T> batch = new ArrayList<>(batchSize);
+					while (batch.size() < batchSize && records.hasNext()) {
+						batch.add(records.next());
+					}
+					queue.put(batch);
+					
+					long now = System.currentTimeMillis();
+					if (listener != null && now - lastReport >= reportMillis) {
+						listener.accept(new Progress(loaded.sum(), now - start, false));
+						lastReport = now;
+					}
+				}
+				
+				for (int i = 0; i < threads; i++) {
+					queue.put(end);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			
+			for (Future<?> worker : workers) {
+				try {
+					worker.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		if (error.get() != null) throw error.get();
+		
+		long total = loaded.sum();
+		if (listener != null) listener.accept(new Progress(total, System.currentTimeMillis() - start, true));
+		return total;
+	}
+	
+}
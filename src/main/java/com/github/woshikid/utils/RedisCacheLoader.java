@@ -0,0 +1,322 @@
+package com.github.woshikid.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+/**
+ * 缓存加载
+ * 缓存不存在时，同一进程中同一个key只有一个线程执行加载，其他线程等待该结果
+ * 多个进程之间以key:lock(SET NX PX)互斥，未取得锁的进程等待缓存写入，超过锁的时间仍未写入时自己加载
+ * 加载耗时保存在同一个slot的辅助key中，缓存过期前按XFetch算法提前在后台刷新，耗时越长、越接近过期刷新的概率越大
+ * 有hashtag的key辅助key为key:loadtime，否则为{key}:loadtime，key中含有}但没有hashtag时不记录耗时，也不提前刷新
+ * 缓存的值与set写入的相同，可以通过get、mget等命令读取
+ * @author kid
+ *
+ */
+class RedisCacheLoader {
+
+	private final static Logger logger = LoggerFactory.getLogger(RedisCacheLoader.class);
+	
+	/**
+	 * 等待其他进程写入缓存时的读取间隔(毫秒)
+	 */
+	private static final long POLL_MILLIS = 50;
+	
+	/**
+	 * 只有持有者才能释放锁
+	 * KEYS[1]锁，ARGV[1]持有者标识
+	 */
+	private static final RedisScript UNLOCK = new RedisScript(
+			"if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n" +
+			"return 0");
+	
+	private final long lockMillis;
+	
+	private final double beta;
+	
+	private final Map<ByteBuffer, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+	
+	private final Set<ByteBuffer> refreshing = ConcurrentHashMap.newKeySet();
+	
+	private final ThreadPoolExecutor executor;
+	
+	/**
+	 * @param lockMillis 加载锁的时间(毫秒)，应大于加载的耗时
+	 * @param beta 提前刷新的系数，越大越早刷新，为0时不提前刷新
+	 * @param threads 后台刷新的线程数
+	 */
+	RedisCacheLoader(long lockMillis, double beta, int threads) {
+		if (lockMillis <= 0) throw new IllegalArgumentException("lockMillis must be positive:" + lockMillis);
+		if (beta < 0) throw new IllegalArgumentException("beta must not be negative:" + beta);
+		
+		this.lockMillis = lockMillis;
+		this.beta = beta;
+		
+		//刷新队列满时放弃刷新，由缓存过期后的加载处理
+		AtomicInteger index = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1000), runnable -> {
+			Thread thread = new Thread(runnable, "redis-cache-loader-" + index.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * 读取缓存，不存在时加载并写入
+	 * @param key
+	 * @param seconds 过期时间(秒)
+	 * @param loader 返回null时不写入缓存
+	 * @return
+	 */
+	byte[] get(Object key, int seconds, Supplier<?> loader) {
+		if (seconds <= 0) throw new IllegalArgumentException("seconds must be positive:" + seconds);
+		
+		byte[] rawKey = RedisUtils.toBytes(key);
+		byte[] timeKey = timeKey(rawKey);
+		Object[] cached = read(rawKey, timeKey);
+		byte[] value = (byte[])cached[0];
+		if (value != null) {
+			long ttl = (Long)cached[1];
+			if (shouldRefresh((byte[])cached[2], ttl)) refresh(rawKey, timeKey, seconds, loader);
+			return RedisUtils.fromValueBytes(value);
+		}
+		
+		ByteBuffer flight = ByteBuffer.wrap(rawKey);
+		CompletableFuture<byte[]> future = new CompletableFuture<>();
+		CompletableFuture<byte[]> leader = loading.putIfAbsent(flight, future);
+		if (leader != null) {
+			try {
+				return leader.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+				throw e;
+			}
+		}
+		
+		try {
+			value = load(rawKey, timeKey, seconds, loader);
+			future.complete(value);
+			return value;
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(flight, future);
+		}
+	}
+	
+	/**
+	 * 取得锁后加载，未取得锁时等待其他进程写入
+	 * @param rawKey
+	 * @param timeKey
+	 * @param seconds
+	 * @param loader
+	 * @return
+	 */
+	private byte[] load(byte[] rawKey, byte[] timeKey, int seconds, Supplier<?> loader) {
+		long deadline = System.currentTimeMillis() + lockMillis;
+		while (true) {
+			String token = lock(rawKey);
+			if (token != null) {
+				try {
+					return write(rawKey, timeKey, seconds, loader);
+				} finally {
+					unlock(rawKey, token);
+				}
+			}
+			
+			try {
+				Thread.sleep(POLL_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			
+			byte[] value = (byte[])read(rawKey, null)[0];
+			if (value != null) return RedisUtils.fromValueBytes(value);
+			
+			//持有锁的进程可能已停止
+			if (System.currentTimeMillis() >= deadline) return write(rawKey, timeKey, seconds, loader);
+		}
+	}
+	
+	/**
+	 * 在后台刷新，同一进程中同一个key同时只有一个刷新，未取得锁时放弃
+	 * @param rawKey
+	 * @param timeKey
+	 * @param seconds
+	 * @param loader
+	 */
+	private void refresh(byte[] rawKey, byte[] timeKey, int seconds, Supplier<?> loader) {
+		ByteBuffer flight = ByteBuffer.wrap(rawKey);
+		if (!refreshing.add(flight)) return;
+		
+		try {
+			executor.execute(() -> {
+				try {
+					String token = lock(rawKey);
+					if (token == null) return;
+					
+					try {
+						write(rawKey, timeKey, seconds, loader);
+					} finally {
+						unlock(rawKey, token);
+					}
+				} catch (Exception e) {
+					logger.warn("redis cache refresh failed:" + RedisUtils.toString(rawKey), e);
+				} finally {
+					refreshing.remove(flight);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			refreshing.remove(flight);
+		}
+	}
+	
+	/**
+	 * XFetch：-delta * beta * ln(random) >= ttl时刷新
+	 * @param loadTime 加载耗时(毫秒)，没有记录时为null
+	 * @param ttl 剩余时间(毫秒)
+	 * @return
+	 */
+	private boolean shouldRefresh(byte[] loadTime, long ttl) {
+		if (beta == 0 || ttl < 0 || loadTime == null) return false;
+		
+		long delta = RedisUtils.toLong(loadTime);
+		double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+		return -delta * beta * Math.log(random) >= ttl;
+	}
+	
+	/**
+	 * 执行加载并写入缓存，在同一个pipeline中记录加载耗时
+	 * @param rawKey
+	 * @param timeKey 为null时不记录加载耗时
+	 * @param seconds
+	 * @param loader
+	 * @return
+	 */
+	private byte[] write(byte[] rawKey, byte[] timeKey, int seconds, Supplier<?> loader) {
+		long start = System.currentTimeMillis();
+		Object loaded = loader.get();
+		long delta = System.currentTimeMillis() - start;
+		if (loaded == null) return null;
+		
+		byte[] value = RedisUtils.toValueBytes(loaded);
+		try {
+			RedisUtils.execute("setex", new Object[] {rawKey}, jedis -> {
+				Pipeline pipeline = jedis.pipelined();
+				Response<String> result = pipeline.setex(rawKey, seconds, value);
+				if (timeKey != null) pipeline.setex(timeKey, seconds, RedisUtils.toBytes(delta));
+				pipeline.sync();
+				return result.get();
+			});
+		} finally {
+			RedisUtils.invalidate(rawKey);
+		}
+		return RedisUtils.toBytes(loaded);
+	}
+	
+	/**
+	 * 在一个连接上读取值、剩余时间与加载耗时
+	 * @param rawKey
+	 * @param timeKey 为null时不读取加载耗时
+	 * @return 值、剩余时间(毫秒)与加载耗时
+	 */
+	private Object[] read(byte[] rawKey, byte[] timeKey) {
+		return RedisUtils.execute("get", new Object[] {rawKey}, jedis -> {
+			Pipeline pipeline = jedis.pipelined();
+			Response<byte[]> value = pipeline.get(rawKey);
+			Response<Long> ttl = pipeline.pttl(rawKey);
+			Response<byte[]> loadTime = timeKey == null ? null : pipeline.get(timeKey);
+			pipeline.sync();
+			return new Object[] {value.get(), ttl.get(), loadTime == null ? null : loadTime.get()};
+		});
+	}
+	
+	private String lock(byte[] rawKey) {
+		String token = IDUtils.uuid();
+		boolean locked = RedisUtils.set(lockKey(rawKey), token, "NX", "PX", lockMillis);
+		return locked ? token : null;
+	}
+	
+	private void unlock(byte[] rawKey, String token) {
+		try {
+			byte[] lockKey = lockKey(rawKey);
+			UNLOCK.eval(new Object[] {lockKey}, token);
+		} catch (Exception e) {
+			//锁到期后自动释放
+			logger.warn("redis cache unlock failed:" + RedisUtils.toString(rawKey), e);
+		}
+	}
+	
+	private static byte[] lockKey(byte[] rawKey) {
+		byte[] suffix = RedisUtils.toBytes(":lock");
+		byte[] lockKey = Arrays.copyOf(rawKey, rawKey.length + suffix.length);
+		System.arraycopy(suffix, 0, lockKey, rawKey.length, suffix.length);
+		return lockKey;
+	}
+	
+	/**
+	 * 记录加载耗时的key，与缓存的key在同一个slot中，无法保证时返回null
+	 * @param rawKey
+	 * @return
+	 */
+	private static byte[] timeKey(byte[] rawKey) {
+		byte[] suffix = RedisUtils.toBytes(":loadtime");
+		if (hasTag(rawKey)) {
+			byte[] timeKey = Arrays.copyOf(rawKey, rawKey.length + suffix.length);
+			System.arraycopy(suffix, 0, timeKey, rawKey.length, suffix.length);
+			return timeKey;
+		}
+		
+		//整个key作为hashtag，key中含有}时无法做到
+		for (byte b : rawKey) {
+			if (b == '}') return null;
+		}
+		
+		byte[] timeKey = new byte[rawKey.length + suffix.length + 2];
+		timeKey[0] = '{';
+		System.arraycopy(rawKey, 0, timeKey, 1, rawKey.length);
+		timeKey[rawKey.length + 1] = '}';
+		System.arraycopy(suffix, 0, timeKey, rawKey.length + 2, suffix.length);
+		return timeKey;
+	}
+	
+	/**
+	 * key中是否有非空的hashtag，规则与集群相同
+	 * @param rawKey
+	 * @return
+	 */
+	private static boolean hasTag(byte[] rawKey) {
+		for (int start = 0; start < rawKey.length; start++) {
+			if (rawKey[start] != '{') continue;
+			
+			for (int end = start + 1; end < rawKey.length; end++) {
+				if (rawKey[end] == '}') return end > start + 1;
+			}
+			return false;
+		}
+		return false;
+	}
+	
+}
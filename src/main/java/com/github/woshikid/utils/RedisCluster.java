@@ -0,0 +1,377 @@
+package com.github.woshikid.utils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisClusterCommand;
+import redis.clients.jedis.JedisClusterInfoCache;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisClusterException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.util.JedisClusterCRC16;
+
+/**
+ * 可以按slot路由任意Jedis命令的JedisCluster
+ * 命令在key所在节点的连接上执行，并自动处理MOVED/ASK重定向
+ * @author kid
+ *
+ */
+public class RedisCluster extends JedisCluster implements RedisNodes {
+
+	private final JedisClusterInfoCache cache;
+	
+	/**
+	 * 用于多个节点并行执行命令
+	 */
+	private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "redis-cluster-worker");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	public RedisCluster(Set<HostAndPort> clusterNodes, int timeout, int maxAttempts, GenericObjectPoolConfig poolConfig) {
+		super(clusterNodes, timeout, maxAttempts, poolConfig);
+		
+		//slot与节点的对应关系没有公开，只能通过反射得到
+		try {
+			Field field = ObjectUtils.getField(connectionHandler.getClass(), "cache");
+			field.setAccessible(true);
+			cache = (JedisClusterInfoCache)field.get(connectionHandler);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * 在key所在的节点上执行命令
+	 * @param key
+	 * @param command
+	 * @return
+	 */
+	public <T> T execute(byte[] key, Function<Jedis, T> command) {
+		return new JedisClusterCommand<T>(connectionHandler, maxAttempts) {
+			public T execute(Jedis connection) {
+				return command.apply(connection);
+			}
+		}.runBinary(key);
+	}
+	
+	/**
+	 * 在多个key所在的节点上执行命令
+	 * 所有key必须在同一个slot中
+	 * @param keys
+	 * @param command
+	 * @return
+	 */
+	public <T> T execute(byte[][] keys, Function<Jedis, T> command) {
+		return new JedisClusterCommand<T>(connectionHandler, maxAttempts) {
+			public T execute(Jedis connection) {
+				return command.apply(connection);
+			}
+		}.runBinary(keys.length, keys);
+	}
+	
+	/**
+	 * 在任意一个节点上执行与key无关的命令
+	 * @param command
+	 * @return
+	 */
+	public <T> T executeAnyNode(Function<Jedis, T> command) {
+		return new JedisClusterCommand<T>(connectionHandler, maxAttempts) {
+			public T execute(Jedis connection) {
+				return command.apply(connection);
+			}
+		}.runWithAnyNode();
+	}
+	
+	/**
+	 * 在所有主节点上依次执行命令
+	 * @param command
+	 * @return 各个主节点的执行结果
+	 */
+	public <T> List<T> executeMasters(Function<Jedis, T> command) {
+		List<JedisPool> pools = getMasterPools();
+		List<T> results = new ArrayList<>(pools.size());
+		for (JedisPool pool : pools) {
+			try (Jedis jedis = pool.getResource()) {
+				results.add(command.apply(jedis));
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * 将参数按照key的slot分组，分别在各slot所在的节点上执行命令
+	 * 同一节点上各个slot的命令以管道方式一次发送，不同节点之间并行执行
+	 * 如果管道中的命令遇到重定向，则该slot改为单独执行并自动处理重定向
+	 * 结果汇总在调用线程中完成
+	 * @param args 参数，每step个为一组，每组的第一个为key
+	 * @param step 每组参数的个数
+	 * @param pipelined 在管道中执行同一slot中的参数
+	 * @param direct 单独执行同一slot中的参数
+	 * @param collector 接收每组参数的序号与对应slot的执行结果
+	 */
+	public <R> void executeBySlot(byte[][] args, int step, BiFunction<Pipeline, byte[][], Response<R>> pipelined, BiFunction<Jedis, byte[][], R> direct, BiConsumer<int[], R> collector) {
+		if (args.length == 0) return;
+		
+		//按slot分组，记录每组参数的序号
+		Map<Integer, List<Integer>> slotGroups = new LinkedHashMap<>();
+		for (int i = 0; i < args.length / step; i++) {
+			int slot = JedisClusterCRC16.getSlot(args[i * step]);
+			List<Integer> group = slotGroups.get(slot);
+			if (group == null) {
+				group = new ArrayList<>();
+				slotGroups.put(slot, group);
+			}
+			group.add(i);
+		}
+		
+		//只有一个slot时直接执行
+		if (slotGroups.size() == 1) {
+			int[] indexes = toIndexes(slotGroups.values().iterator().next());
+			collector.accept(indexes, executeSlot(args, step, indexes, direct));
+			return;
+		}
+		
+		//按节点分组
+		Map<JedisPool, List<int[]>> nodeGroups = new IdentityHashMap<>();
+		for (Map.Entry<Integer, List<Integer>> entry : slotGroups.entrySet()) {
+			JedisPool pool = getSlotPool(entry.getKey());
+			List<int[]> group = nodeGroups.get(pool);
+			if (group == null) {
+				group = new ArrayList<>();
+				nodeGroups.put(pool, group);
+			}
+			group.add(toIndexes(entry.getValue()));
+		}
+		
+		//除最后一个节点外，其他节点交给线程池并行执行
+		List<List<int[]>> groups = new ArrayList<>(nodeGroups.values());
+		List<JedisPool> pools = new ArrayList<>(nodeGroups.keySet());
+		List<Future<List<R>>> futures = new ArrayList<>(pools.size() - 1);
+		for (int i = 0; i < pools.size() - 1; i++) {
+			JedisPool pool = pools.get(i);
+			List<int[]> group = groups.get(i);
+			futures.add(executor.submit(() -> executeNode(pool, args, step, group, pipelined, direct)));
+		}
+		
+		//等待所有节点执行完成，第一个异常之后的异常作为被抑制的异常
+		List<List<R>> results = new ArrayList<>(pools.size());
+		RuntimeException error = null;
+		List<R> lastResults = null;
+		try {
+			lastResults = executeNode(pools.get(pools.size() - 1), args, step, groups.get(pools.size() - 1), pipelined, direct);
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		for (Future<List<R>> future : futures) {
+			try {
+				results.add(getResult(future));
+			} catch (RuntimeException e) {
+				error = suppress(error, e);
+			}
+		}
+		if (error != null) throw error;
+		results.add(lastResults);
+		
+		for (int i = 0; i < results.size(); i++) {
+			List<int[]> group = groups.get(i);
+			List<R> nodeResults = results.get(i);
+			for (int j = 0; j < group.size(); j++) {
+				collector.accept(group.get(j), nodeResults.get(j));
+			}
+		}
+	}
+	
+	/**
+	 * 在一个节点上以管道方式执行多个slot的命令
+	 * @param pool
+	 * @param args
+	 * @param step
+	 * @param group 每个slot中参数组的序号
+	 * @param pipelined
+	 * @param direct
+	 * @return 每个slot的执行结果
+	 */
+	private <R> List<R> executeNode(JedisPool pool, byte[][] args, int step, List<int[]> group, BiFunction<Pipeline, byte[][], Response<R>> pipelined, BiFunction<Jedis, byte[][], R> direct) {
+		List<Response<R>> responses = new ArrayList<>(group.size());
+		try (Jedis jedis = pool.getResource()) {
+			Pipeline pipeline = jedis.pipelined();
+			for (int[] indexes : group) {
+				responses.add(pipelined.apply(pipeline, toArgs(args, step, indexes)));
+			}
+			pipeline.sync();
+		}
+		
+		List<R> results = new ArrayList<>(group.size());
+		for (int i = 0; i < group.size(); i++) {
+			try {
+				results.add(responses.get(i).get());
+			} catch (JedisRedirectionException e) {
+				//slot正在迁移或已经迁移
+				results.add(executeSlot(args, step, group.get(i), direct));
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * 单独执行一个slot的命令，并自动处理重定向
+	 * @param args
+	 * @param step
+	 * @param indexes
+	 * @param direct
+	 * @return
+	 */
+	private <R> R executeSlot(byte[][] args, int step, int[] indexes, BiFunction<Jedis, byte[][], R> direct) {
+		byte[][] slotArgs = toArgs(args, step, indexes);
+		byte[][] slotKeys = new byte[indexes.length][];
+		for (int i = 0; i < indexes.length; i++) {
+			slotKeys[i] = args[indexes[i] * step];
+		}
+		
+		return execute(slotKeys, jedis -> direct.apply(jedis, slotArgs));
+	}
+	
+	/**
+	 * 取出指定序号的参数组
+	 * @param args
+	 * @param step
+	 * @param indexes
+	 * @return
+	 */
+	private static byte[][] toArgs(byte[][] args, int step, int[] indexes) {
+		byte[][] selected = new byte[indexes.length * step][];
+		for (int i = 0; i < indexes.length; i++) {
+			System.arraycopy(args, indexes[i] * step, selected, i * step, step);
+		}
+		return selected;
+	}
+	
+	/**
+	 * 将序号列表转换为数组
+	 * @param list
+	 * @return
+	 */
+	private static int[] toIndexes(List<Integer> list) {
+		int[] indexes = new int[list.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = list.get(i);
+		}
+		return indexes;
+	}
+	
+	/**
+	 * 合并多个节点的异常，保留第一个异常，之后的异常作为被抑制的异常
+	 * @param error 已有的异常，可以为null
+	 * @param e 新的异常
+	 * @return
+	 */
+	static RuntimeException suppress(RuntimeException error, RuntimeException e) {
+		if (error == null) return e;
+		
+		error.addSuppressed(e);
+		return error;
+	}
+	
+	/**
+	 * 等待并取得并行执行的结果
+	 * @param future
+	 * @return
+	 */
+	private static <R> R getResult(Future<R> future) {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			throw new RuntimeException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * 得到用于多个节点并行执行的线程池
+	 * @return
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * 得到slot所在主节点的连接池
+	 * @param slot
+	 * @return
+	 */
+	public JedisPool getSlotPool(int slot) {
+		JedisPool pool = cache.getSlotPool(slot);
+		if (pool != null) return pool;
+		
+		//slot信息可能已过期，刷新后再试一次
+		connectionHandler.renewSlotCache();
+		pool = cache.getSlotPool(slot);
+		if (pool != null) return pool;
+		
+		throw new JedisClusterException("no reachable node for slot:" + slot);
+	}
+	
+	/**
+	 * 得到key的slot所在主节点的连接池
+	 * @param key
+	 * @return
+	 */
+	public JedisPool getKeyPool(byte[] key) {
+		return getSlotPool(JedisClusterCRC16.getSlot(key));
+	}
+	
+	/**
+	 * 集群中的发布会广播到所有节点，任意一个主节点即可
+	 * @return
+	 */
+	public JedisPool getAnyNodePool() {
+		return getSlotPool(0);
+	}
+	
+	/**
+	 * 得到所有主节点的连接池
+	 * 按照节点负责的第一个slot排序
+	 * @return
+	 */
+	public List<JedisPool> getMasterPools() {
+		Map<JedisPool, Boolean> pools = new IdentityHashMap<>();
+		List<JedisPool> masters = new ArrayList<>();
+		for (int slot = 0; slot < HASHSLOTS; slot++) {
+			JedisPool pool = cache.getSlotPool(slot);
+			if (pool != null && pools.put(pool, Boolean.TRUE) == null) masters.add(pool);
+		}
+		return masters;
+	}
+	
+	public void close() throws IOException {
+		executor.shutdown();
+		super.close();
+	}
+	
+}
@@ -0,0 +1,27 @@
+package com.github.woshikid.utils;
+
+/**
+ * Redis值的编码方式
+ * String,Number,Boolean,byte[]总是按照文本或原样保存，其余对象由编码方式决定
+ * 通过redis.properties中的codec配置，可选java,json,binary或实现类的完整类名
+ * @author kid
+ *
+ */
+public interface RedisCodec {
+
+	/**
+	 * 将对象编码为字节数组
+	 * @param object 不为null
+	 * @return
+	 */
+	byte[] encode(Object object);
+	
+	/**
+	 * 将字节数组解码为指定类型的对象
+	 * @param bytes 不为null
+	 * @param type
+	 * @return
+	 */
+	<T> T decode(byte[] bytes, Class<T> type);
+	
+}
@@ -0,0 +1,232 @@
+package com.github.woshikid.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Redis值的透明压缩
+ * 编码后长度达到阈值的值使用deflate压缩，压缩后没有变小时保存原值
+ * 压缩后的值以4字节标记与4字节原始长度开头，没有标记的值原样返回，因此可以读取未压缩的旧数据
+ * 标记以0xFE开头，不会出现在UTF-8字符串、java序列化数据与二进制编码数据的开头
+ * 压缩只作用于值，key与hash的field不压缩
+ * append,setrange,getrange,strlen等按字节操作的命令不压缩，遇到压缩过的值时抛出异常，不会破坏数据
+ * linsert,lrem等按值匹配的命令以当前设置压缩参数后比较，压缩设置不同时写入的元素无法匹配
+ * Deflater与Inflater在有限的池中复用，超出的用完后立即释放本地内存
+ * 通过{@link RedisUtils#getCompressor()}查询压缩率等统计信息
+ * @author kid
+ *
+ */
+public class RedisCompressor {
+
+	private static final byte[] MAGIC = {(byte)0xFE, 'R', 'Z', 1};
+	
+	/**
+	 * 压缩标记与原值长度
+	 */
+	static final int HEADER = MAGIC.length + 4;
+	
+	/**
+	 * deflate的最大压缩比约为1032:1，超出时不是压缩数据
+	 */
+	private static final int MAX_RATIO = 1032;
+	
+	/**
+	 * 池中最多保留的Deflater与Inflater个数
+	 */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+	
+	private static final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+	
+	private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+	
+	private final int level;
+	
+	private final int threshold;
+	
+	private final LongAdder compressed = new LongAdder();
+	
+	private final LongAdder skipped = new LongAdder();
+	
+	private final LongAdder decompressed = new LongAdder();
+	
+	private final LongAdder rawBytes = new LongAdder();
+	
+	private final LongAdder compressedBytes = new LongAdder();
+	
+	/**
+	 * @param threshold 开始压缩的字节数，小于等于0时不压缩
+	 * @param level 压缩级别0-9
+	 */
+	RedisCompressor(int threshold, int level) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) throw new IllegalArgumentException("invalid compress level:" + level);
+		
+		this.threshold = threshold;
+		this.level = level;
+	}
+	
+	/**
+	 * 压缩值，没有达到阈值或压缩后没有变小时返回原值
+	 * @param bytes
+	 * @return
+	 */
+	byte[] compress(byte[] bytes) {
+		if (threshold <= 0 || bytes == null || bytes.length < threshold || bytes.length <= HEADER) return bytes;
+		
+		//输出缓冲与原值等长，写不下说明压缩后没有变小
+		byte[] out = new byte[bytes.length];
+		Deflater deflater = deflaters.poll();
+		if (deflater == null) deflater = new Deflater(level);
+		int length;
+		try {
+			deflater.setInput(bytes);
+			deflater.finish();
+			length = deflater.deflate(out, HEADER, out.length - HEADER);
+			if (!deflater.finished()) {
+				skipped.increment();
+				return bytes;
+			}
+		} finally {
+			deflater.reset();
+			if (!deflaters.offer(deflater)) deflater.end();
+		}
+		
+		System.arraycopy(MAGIC, 0, out, 0, MAGIC.length);
+		out[4] = (byte)(bytes.length >>> 24);
+		out[5] = (byte)(bytes.length >>> 16);
+		out[6] = (byte)(bytes.length >>> 8);
+		out[7] = (byte)bytes.length;
+		
+		compressed.increment();
+		rawBytes.add(bytes.length);
+		compressedBytes.add(HEADER + length);
+		return Arrays.copyOf(out, HEADER + length);
+	}
+	
+	/**
+	 * 解压值，没有压缩标记或不是有效的压缩数据时返回原值
+	 * @param bytes
+	 * @return
+	 */
+	byte[] decompress(byte[] bytes) {
+		if (!isCompressed(bytes)) return bytes;
+		
+		int length = (bytes[4] & 0xFF) << 24 | (bytes[5] & 0xFF) << 16 | (bytes[6] & 0xFF) << 8 | (bytes[7] & 0xFF);
+		if (length < 0 || length > (long)(bytes.length - HEADER) * MAX_RATIO) return bytes;
+		
+		byte[] out = new byte[length];
+		Inflater inflater = inflaters.poll();
+		if (inflater == null) inflater = new Inflater();
+		try {
+			inflater.setInput(bytes, HEADER, bytes.length - HEADER);
+			if (inflater.inflate(out) != length || !inflater.finished()) return bytes;
+		} catch (DataFormatException e) {
+			return bytes;
+		} finally {
+			inflater.reset();
+			if (!inflaters.offer(inflater)) inflater.end();
+		}
+		
+		decompressed.increment();
+		return out;
+	}
+	
+	/**
+	 * 压缩标记的副本，用于在服务端识别压缩过的值
+	 * @return
+	 */
+	static byte[] magic() {
+		return MAGIC.clone();
+	}
+	
+	/**
+	 * 是否带有压缩标记
+	 * @param bytes
+	 * @return
+	 */
+	private static boolean isCompressed(byte[] bytes) {
+		if (bytes == null || bytes.length <= HEADER) return false;
+		
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (bytes[i] != MAGIC[i]) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * 开始压缩的字节数，小于等于0表示不压缩
+	 * @return
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+	
+	/**
+	 * 压缩保存的值的个数
+	 * @return
+	 */
+	public long getCompressedCount() {
+		return compressed.sum();
+	}
+	
+	/**
+	 * 达到阈值但压缩后没有变小而保存原值的个数
+	 * @return
+	 */
+	public long getSkippedCount() {
+		return skipped.sum();
+	}
+	
+	/**
+	 * 读取时解压的值的个数
+	 * @return
+	 */
+	public long getDecompressedCount() {
+		return decompressed.sum();
+	}
+	
+	/**
+	 * 压缩保存的值压缩前的总字节数
+	 * @return
+	 */
+	public long getRawBytes() {
+		return rawBytes.sum();
+	}
+	
+	/**
+	 * 压缩保存的值压缩后的总字节数(包括标记)
+	 * @return
+	 */
+	public long getCompressedBytes() {
+		return compressedBytes.sum();
+	}
+	
+	/**
+	 * 压缩率，即压缩后与压缩前的字节数之比，没有压缩过时返回1
+	 * @return
+	 */
+	public double getRatio() {
+		long raw = rawBytes.sum();
+		return raw == 0 ? 1 : (double)compressedBytes.sum() / raw;
+	}
+	
+	/**
+	 * 清空统计
+	 */
+	public void reset() {
+		compressed.reset();
+		skipped.reset();
+		decompressed.reset();
+		rawBytes.reset();
+		compressedBytes.reset();
+	}
+	
+	public String toString() {
+		return "threshold=" + threshold + ", compressed=" + getCompressedCount() + ", skipped=" + getSkippedCount() + ", decompressed=" + getDecompressedCount() + ", rawBytes=" + getRawBytes() + ", compressedBytes=" + getCompressedBytes() + ", ratio=" + getRatio();
+	}
+	
+}
@@ -0,0 +1,348 @@
+package com.github.woshikid.utils;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * 计数的本地合并缓冲
+ * incrBy、hincrBy与pfadd先在本地合并，定期或累积到一定数量时以一个管道写入redis
+ * 同一个key(与field)的多次增加合并为一次incrBy，同一个key的多个元素合并为一次pfadd
+ * 计数最多延迟flushMillis写入，写入失败时没有得到结果的命令合并回缓冲，下次重试
+ * 连接在发送之后、读取结果之前断开时，命令可能已经执行，重试后会重复计入，即至少写入一次
+ * redis不可用期间合并回的计数最多保留maxPending个key、field与元素，超过的部分丢弃
+ * 进程退出时通过shutdown hook写入剩余的计数，进程被强制终止时缓冲中的计数会丢失
+ * 适用于统计类计数，不能用于需要立即读到结果的场景
+ * @author kid
+ *
+ */
+public class RedisCounterBuffer implements Closeable {
+
+	private final static Logger logger = LoggerFactory.getLogger(RedisCounterBuffer.class);
+	
+	private static final AtomicInteger index = new AtomicInteger();
+	
+	/**
+	 * 一批待写入的计数
+	 * 写入时整批替换，正在写入的线程计数归零后再读取，保证替换前的增加不会丢失
+	 */
+	private static class Batch {
+		
+		private final AtomicInteger writers = new AtomicInteger();
+		
+		private final AtomicInteger size = new AtomicInteger();
+		
+		private final Map<ByteBuffer, LongAdder> counters = new ConcurrentHashMap<>();
+		
+		private final Map<ByteBuffer, Map<ByteBuffer, LongAdder>> hashes = new ConcurrentHashMap<>();
+		
+		private final Map<ByteBuffer, Set<ByteBuffer>> logs = new ConcurrentHashMap<>();
+		
+		private void incrBy(ByteBuffer key, long value) {
+			counter(counters, key).add(value);
+		}
+		
+		private void hincrBy(ByteBuffer key, ByteBuffer field, long value) {
+			Map<ByteBuffer, LongAdder> fields = hashes.get(key);
+			if (fields == null) fields = hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+			counter(fields, field).add(value);
+		}
+		
+		private void pfadd(ByteBuffer key, ByteBuffer element) {
+			Set<ByteBuffer> elements = logs.get(key);
+			if (elements == null) elements = logs.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+			if (elements.add(element)) size.incrementAndGet();
+		}
+		
+		private LongAdder counter(Map<ByteBuffer, LongAdder> map, ByteBuffer key) {
+			LongAdder counter = map.get(key);
+			if (counter != null) return counter;
+			
+			return map.computeIfAbsent(key, k -> {
+				size.incrementAndGet();
+				return new LongAdder();
+			});
+		}
+		
+		private boolean isEmpty() {
+			return size.get() == 0;
+		}
+	}
+	
+	private final int maxSize;
+	
+	private final int maxPending;
+	
+	private final ScheduledExecutorService scheduler;
+	
+	private final Thread shutdownHook;
+	
+	private final AtomicBoolean flushing = new AtomicBoolean();
+	
+	private volatile Batch current = new Batch();
+	
+	private volatile boolean closed = false;
+	
+	/**
+	 * 写入失败时最多保留maxSize的10倍
+	 * @param flushMillis 写入的间隔(毫秒)，即计数的最大延迟
+	 * @param maxSize 缓冲中的key、field与元素的个数超过该值时立即写入
+	 */
+	public RedisCounterBuffer(long flushMillis, int maxSize) {
+		this(flushMillis, maxSize, maxSize * 10);
+	}
+	
+	/**
+	 * @param flushMillis 写入的间隔(毫秒)，即计数的最大延迟
+	 * @param maxSize 缓冲中的key、field与元素的个数超过该值时立即写入
+	 * @param maxPending 写入失败时合并回缓冲的key、field与元素的最大个数
+	 */
+	public RedisCounterBuffer(long flushMillis, int maxSize, int maxPending) {
+		if (flushMillis <= 0) throw new IllegalArgumentException("flushMillis must be positive:" + flushMillis);
+		if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive:" + maxSize);
+		if (maxPending < 0) throw new IllegalArgumentException("maxPending must not be negative:" + maxPending);
+		
+		this.maxSize = maxSize;
+		this.maxPending = maxPending;
+		
+		String name = "redis-counter-buffer-" + index.incrementAndGet();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+		
+		this.shutdownHook = new Thread(this::flushQuietly, name + "-shutdown");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+	
+	/**
+	 * 将key的值加1
+	 * @param key
+	 */
+	public void incr(Object key) {
+		incrBy(key, 1);
+	}
+	
+	/**
+	 * 将key的值增加指定的值
+	 * @param key
+	 * @param value
+	 */
+	public void incrBy(Object key, long value) {
+		ByteBuffer rawKey = wrap(key);
+		Batch batch = acquire();
+		try {
+			batch.incrBy(rawKey, value);
+		} finally {
+			release(batch);
+		}
+	}
+	
+	/**
+	 * 将hash中指定字段的值增加指定的值
+	 * @param key
+	 * @param field
+	 * @param value
+	 */
+	public void hincrBy(Object key, Object field, long value) {
+		ByteBuffer rawKey = wrap(key);
+		ByteBuffer rawField = wrap(field);
+		Batch batch = acquire();
+		try {
+			batch.hincrBy(rawKey, rawField, value);
+		} finally {
+			release(batch);
+		}
+	}
+	
+	/**
+	 * 向HyperLogLog中加入元素，缓冲中重复的元素只写入一次
+	 * @param key
+	 * @param elements
+	 */
+	public void pfadd(Object key, Object... elements) {
+		ByteBuffer rawKey = wrap(key);
+		Batch batch = acquire();
+		try {
+			for (Object element : elements) {
+				batch.pfadd(rawKey, wrap(element));
+			}
+		} finally {
+			release(batch);
+		}
+	}
+	
+	/**
+	 * 缓冲中的key、field与元素的个数
+	 * @return
+	 */
+	public int size() {
+		return current.size.get();
+	}
+	
+	/**
+	 * 立即以一个管道写入缓冲中的所有计数
+	 * 写入失败时没有得到结果的命令合并回缓冲并抛出异常
+	 */
+	public synchronized void flush() {
+		Batch batch = current;
+		if (batch.isEmpty()) return;
+		
+		current = new Batch();
+		
+		//等待替换前开始的增加完成
+		while (batch.writers.get() != 0) {
+			Thread.yield();
+		}
+		
+		//每个命令的重试与结果按顺序对应，没有结果的命令尚未发送
+		List<Consumer<Batch>> retries = new ArrayList<>();
+		List<Response<?>> responses = new ArrayList<>();
+		try {
+			RedisUtils.pipeline(pipeline -> {
+				for (Map.Entry<ByteBuffer, LongAdder> counter : batch.counters.entrySet()) {
+					ByteBuffer key = counter.getKey();
+					long value = counter.getValue().sum();
+					if (value == 0) continue;
+					
+					retries.add(retry -> retry.incrBy(key, value));
+					responses.add(pipeline.incrBy(key.array(), value));
+				}
+				for (Map.Entry<ByteBuffer, Map<ByteBuffer, LongAdder>> hash : batch.hashes.entrySet()) {
+					ByteBuffer key = hash.getKey();
+					for (Map.Entry<ByteBuffer, LongAdder> field : hash.getValue().entrySet()) {
+						long value = field.getValue().sum();
+						if (value == 0) continue;
+						
+						retries.add(retry -> retry.hincrBy(key, field.getKey(), value));
+						responses.add(pipeline.hincrBy(key.array(), field.getKey().array(), value));
+					}
+				}
+				for (Map.Entry<ByteBuffer, Set<ByteBuffer>> log : batch.logs.entrySet()) {
+					ByteBuffer key = log.getKey();
+					retries.add(retry -> log.getValue().forEach(element -> retry.pfadd(key, element)));
+					responses.add(pipeline.pfadd(key.array(), log.getValue().stream().map(ByteBuffer::array).toArray()));
+				}
+			});
+		} catch (RuntimeException e) {
+			merge(retries, responses);
+			throw e;
+		}
+	}
+	
+	/**
+	 * 写入剩余的计数并停止定期写入
+	 */
+	public void close() {
+		closed = true;
+		scheduler.shutdown();
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			//正在退出，由shutdown hook写入
+			return;
+		}
+		flush();
+	}
+	
+	private Batch acquire() {
+		while (true) {
+			Batch batch = current;
+			batch.writers.incrementAndGet();
+			if (batch == current) return batch;
+			
+			//已被替换，在新的一批中重试
+			batch.writers.decrementAndGet();
+		}
+	}
+	
+	private void release(Batch batch) {
+		batch.writers.decrementAndGet();
+		
+		if (batch.size.get() >= maxSize && !closed && flushing.compareAndSet(false, true)) {
+			try {
+				scheduler.execute(() -> {
+					try {
+						flushQuietly();
+					} finally {
+						flushing.set(false);
+					}
+				});
+			} catch (Exception e) {
+				flushing.set(false);
+			}
+		}
+	}
+	
+	/**
+	 * 将没有得到结果的命令合并回当前的缓冲，超过maxPending的部分丢弃
+	 * @param retries
+	 * @param responses
+	 */
+	private void merge(List<Consumer<Batch>> retries, List<Response<?>> responses) {
+		int dropped = 0;
+		Batch batch = acquire();
+		try {
+			for (int i = 0; i < retries.size(); i++) {
+				if (i < responses.size() && isDone(responses.get(i))) continue;
+				
+				if (batch.size.get() < maxPending) {
+					retries.get(i).accept(batch);
+				} else {
+					dropped++;
+				}
+			}
+		} finally {
+			batch.writers.decrementAndGet();
+		}
+		
+		if (dropped > 0) logger.warn("redis counter buffer full, " + dropped + " commands dropped");
+	}
+	
+	/**
+	 * 命令是否已经成功得到结果
+	 * 尚未读取结果与redis返回错误时都会抛出异常，返回错误的命令最多随下一次写入再执行一次
+	 * @param response
+	 * @return
+	 */
+	private static boolean isDone(Response<?> response) {
+		try {
+			response.get();
+			return true;
+		} catch (JedisDataException e) {
+			return false;
+		}
+	}
+	
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (Exception e) {
+			logger.warn("redis counter buffer flush failed, " + size() + " pending", e);
+		}
+	}
+	
+	private static ByteBuffer wrap(Object object) {
+		return ByteBuffer.wrap(RedisUtils.toBytes(object));
+	}
+	
+}
@@ -0,0 +1,233 @@
+package com.github.woshikid.utils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于zset的延时队列
+ * 任务以到期时间(毫秒)为分数保存，由Lua脚本一次原子地取出一批到期的任务，多个线程或进程同时取出时不会重复
+ * 租约为0时取出即删除，消费失败的任务丢失
+ * 租约大于0时取出的任务移入处理中的zset，ack之后删除，租约到期仍未ack的任务重新放回队列
+ * 相同内容的任务只保存一个，需要重复的任务应在内容中包含唯一标识
+ * 到期时间使用客户端时间，各个节点的时间需要同步
+ * 队列的key为{name}，处理中的key为{name}:processing，集群模式下在同一个slot中
+ * @author kid
+ *
+ */
+public class RedisDelayQueue {
+
+	private final static Logger logger = LoggerFactory.getLogger(RedisDelayQueue.class);
+	
+	/**
+	 * KEYS[1]队列，KEYS[2]处理中
+	 * ARGV[1]当前时间，ARGV[2]最多取出的个数，ARGV[3]租约(毫秒)
+	 */
+	private static final RedisScript CLAIM = new RedisScript(
+			"local now = tonumber(ARGV[1])\n" +
+			"local lease = tonumber(ARGV[3])\n" +
+			"if lease > 0 then\n" +
+			"  local expired = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', now, 'LIMIT', 0, ARGV[2])\n" +
+			"  for i, job in ipairs(expired) do\n" +
+			"    redis.call('ZREM', KEYS[2], job)\n" +
+			"    redis.call('ZADD', KEYS[1], now, job)\n" +
+			"  end\n" +
+			"end\n" +
+			"local jobs = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', now, 'LIMIT', 0, ARGV[2])\n" +
+			"for i, job in ipairs(jobs) do\n" +
+			"  redis.call('ZREM', KEYS[1], job)\n" +
+			"  if lease > 0 then redis.call('ZADD', KEYS[2], now + lease, job) end\n" +
+			"end\n" +
+			"return jobs");
+	
+	private final String key;
+	
+	private final String processingKey;
+	
+	private final long leaseMillis;
+	
+	/**
+	 * 取出即删除的队列
+	 * @param name
+	 */
+	public RedisDelayQueue(String name) {
+		this(name, 0);
+	}
+	
+	/**
+	 * @param name
+	 * @param leaseMillis 任务取出后需要ack的时间(毫秒)，为0时取出即删除
+	 */
+	public RedisDelayQueue(String name, long leaseMillis) {
+		if (leaseMillis < 0) throw new IllegalArgumentException("leaseMillis must not be negative:" + leaseMillis);
+		
+		this.key = "{" + name + "}";
+		this.processingKey = key + ":processing";
+		this.leaseMillis = leaseMillis;
+	}
+	
+	/**
+	 * 加入任务，已存在时更新到期时间
+	 * @param job
+	 * @param delayMillis 延时(毫秒)
+	 * @return 是否为新任务
+	 */
+	public boolean offer(Object job, long delayMillis) {
+		return offerAt(job, System.currentTimeMillis() + delayMillis);
+	}
+	
+	/**
+	 * 加入任务，已存在时更新到期时间
+	 * @param job
+	 * @param timestamp 到期时间(毫秒)
+	 * @return 是否为新任务
+	 */
+	public boolean offerAt(Object job, long timestamp) {
+		return RedisUtils.zadd(key, timestamp, job);
+	}
+	
+	/**
+	 * 一次性加入多个任务
+	 * @param jobs 任务与到期时间(毫秒)
+	 * @return 新任务的个数
+	 */
+	public long offerAll(Map<?, Long> jobs) {
+		if (jobs.isEmpty()) return 0;
+		
+		Map<Object, Double> scoreMembers = new HashMap<>(jobs.size());
+		for (Map.Entry<?, Long> job : jobs.entrySet()) {
+			scoreMembers.put(job.getKey(), job.getValue().doubleValue());
+		}
+		return RedisUtils.zadd(key, scoreMembers);
+	}
+	
+	/**
+	 * 取出最多max个到期的任务，没有时返回空
+	 * @param max
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public List<byte[]> pollBytes(int max) {
+		if (max <= 0) throw new IllegalArgumentException("max must be positive:" + max);
+		
+		return (List<byte[]>)CLAIM.eval(new Object[] {key, processingKey}, System.currentTimeMillis(), max, leaseMillis);
+	}
+	
+	/**
+	 * 取出最多max个到期的任务，没有时返回空
+	 * @param max
+	 * @return
+	 */
+	public List<String> poll(int max) {
+		return RedisUtils.toString(pollBytes(max));
+	}
+	
+	/**
+	 * 确认任务已处理完成，租约为0时不需要调用
+	 * @param job
+	 * @return 任务是否仍在租约中，false表示租约已到期并可能被再次取出
+	 */
+	public boolean ack(Object job) {
+		return RedisUtils.zrem(processingKey, job) == 1L;
+	}
+	
+	/**
+	 * 删除尚未取出的任务
+	 * @param job
+	 * @return
+	 */
+	public boolean remove(Object job) {
+		return RedisUtils.zrem(key, job) == 1L;
+	}
+	
+	/**
+	 * 队列中的任务数，包括未到期的任务
+	 * @return
+	 */
+	public long size() {
+		return RedisUtils.zcard(key);
+	}
+	
+	/**
+	 * 已取出但尚未ack的任务数
+	 * @return
+	 */
+	public long processingSize() {
+		return RedisUtils.zcard(processingKey);
+	}
+	
+	/**
+	 * 启动消费线程，持续取出到期的任务交给handler处理
+	 * handler正常返回时自动ack，抛出异常时等待租约到期后重新处理
+	 * 没有到期的任务时等待idleMillis再取
+	 * @param threads 消费线程数
+	 * @param batchSize 每次取出的任务数
+	 * @param idleMillis 没有任务时的等待时间(毫秒)
+	 * @param handler
+	 * @return 关闭时停止所有消费线程，正在处理的任务会处理完成
+	 */
+	public Closeable consume(int threads, int batchSize, long idleMillis, Consumer<String> handler) {
+		if (threads <= 0) throw new IllegalArgumentException("threads must be positive:" + threads);
+		if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive:" + batchSize);
+		if (idleMillis <= 0) throw new IllegalArgumentException("idleMillis must be positive:" + idleMillis);
+		
+		AtomicInteger index = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "redis-delay-queue-" + index.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		for (int i = 0; i < threads; i++) {
+			executor.execute(() -> {
+				while (!executor.isShutdown()) {
+					List<String> jobs = Collections.emptyList();
+					try {
+						jobs = poll(batchSize);
+					} catch (Exception e) {
+						logger.warn("redis delay queue poll failed", e);
+					}
+					
+					List<String> done = new ArrayList<>(jobs.size());
+					for (String job : jobs) {
+						try {
+							handler.accept(job);
+							done.add(job);
+						} catch (Exception e) {
+							logger.warn("redis delay queue job failed:" + job, e);
+						}
+					}
+					if (leaseMillis > 0 && !done.isEmpty()) {
+						try {
+							RedisUtils.zrem(processingKey, done.toArray());
+						} catch (Exception e) {
+							logger.warn("redis delay queue ack failed", e);
+						}
+					}
+					
+					if (jobs.size() < batchSize) {
+						try {
+							TimeUnit.MILLISECONDS.sleep(idleMillis);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			});
+		}
+		
+		return executor::shutdown;
+	}
+	
+}
@@ -0,0 +1,155 @@
+package com.github.woshikid.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 将并发的单key读取合并为mget
+ * 调度线程收集一个时间窗口内(或达到最大个数)的读取请求，合并为一次mget执行
+ * 同一批次中重复的key只读取一次
+ * 每批mget在独立的线程池中执行，不阻塞下一批的收集
+ * 线程池满时由调度线程直接执行，此时请求在队列中积累，下一批自然变大
+ * @author kid
+ *
+ */
+class RedisGetCoalescer {
+
+	private static class Request {
+		
+		final byte[] key;
+		
+		final CompletableFuture<byte[]> future = new CompletableFuture<>();
+		
+		Request(byte[] key) {
+			this.key = key;
+		}
+	}
+	
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+	
+	private final long windowNanos;
+	
+	private final int maxBatch;
+	
+	private final Executor executor;
+	
+	/**
+	 * @param windowMicros 收集请求的时间窗口(微秒)
+	 * @param maxBatch 每批最多的请求个数
+	 * @param threads 同时执行的mget个数
+	 */
+	RedisGetCoalescer(long windowMicros, int maxBatch, int threads) {
+		if (windowMicros < 0) throw new IllegalArgumentException("windowMicros must not be negative:" + windowMicros);
+		if (maxBatch <= 0) throw new IllegalArgumentException("maxBatch must be positive:" + maxBatch);
+		
+		this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+		this.maxBatch = maxBatch;
+		
+		//不能与异步接口共用线程池，否则异步任务中的读取可能互相等待
+		AtomicInteger index = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "redis-get-coalescer-" + index.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, new ThreadPoolExecutor.CallerRunsPolicy());
+		pool.allowCoreThreadTimeOut(true);
+		this.executor = pool;
+		
+		Thread dispatcher = new Thread(this::dispatch, "redis-get-coalescer");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+	
+	/**
+	 * 读取key的值，等待所在批次执行完成
+	 * @param key
+	 * @return
+	 */
+	byte[] get(byte[] key) {
+		Request request = new Request(key);
+		queue.add(request);
+		
+		try {
+			return request.future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			throw e;
+		}
+	}
+	
+	/**
+	 * 持续收集请求并分批执行
+	 */
+	private void dispatch() {
+		while (true) {
+			List<Request> batch = new ArrayList<>();
+			try {
+				batch.add(queue.take());
+				
+				long deadline = System.nanoTime() + windowNanos;
+				while (batch.size() < maxBatch) {
+					Request request = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (request == null) break;
+					batch.add(request);
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+			
+			executor.execute(() -> execute(batch));
+		}
+	}
+	
+	/**
+	 * 以一次mget执行一批请求
+	 * @param batch
+	 */
+	private void execute(List<Request> batch) {
+		//合并重复的key
+		Map<ByteBuffer, List<Request>> requests = new LinkedHashMap<>();
+		for (Request request : batch) {
+			ByteBuffer key = ByteBuffer.wrap(request.key);
+			List<Request> sameKey = requests.get(key);
+			if (sameKey == null) {
+				sameKey = new ArrayList<>(1);
+				requests.put(key, sameKey);
+			}
+			sameKey.add(request);
+		}
+		
+		Object[] keys = new Object[requests.size()];
+		int index = 0;
+		for (List<Request> sameKey : requests.values()) {
+			keys[index++] = sameKey.get(0).key;
+		}
+		
+		try {
+			List<byte[]> values = RedisUtils.mgetBytes(keys);
+			index = 0;
+			for (List<Request> sameKey : requests.values()) {
+				byte[] value = values.get(index++);
+				for (Request request : sameKey) {
+					request.future.complete(value);
+				}
+			}
+		} catch (Throwable e) {
+			for (Request request : batch) {
+				request.future.completeExceptionally(e);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,319 @@
+package com.github.woshikid.utils;
+
+import java.beans.ConstructorProperties;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 客户端热点key统计
+ * 按采样率抽取访问的key，在每个时间窗口内以count-min sketch估算访问次数，并保留访问最多的topK个key
+ * 查询的结果为上一个完整窗口的统计，访问次数已按采样率还原
+ * 本地缓存命中的读取不访问redis，不计入统计
+ * 通过{@link RedisUtils#getHotKeys()}查询
+ * @author kid
+ *
+ */
+public class RedisHotKeys {
+
+	/**
+	 * sketch的行数，即独立哈希的个数
+	 */
+	private static final int DEPTH = 4;
+	
+	/**
+	 * sketch每行的计数器个数，必须为2的幂次
+	 */
+	private static final int WIDTH = 4096;
+	
+	private final double sampleRate;
+	
+	private final long windowMillis;
+	
+	private final int topK;
+	
+	private final AtomicReference<Window> current;
+	
+	/**
+	 * 上一个完整窗口
+	 */
+	private volatile Window last = null;
+	
+	/**
+	 * 一个时间窗口的统计
+	 */
+	private class Window {
+		
+		final long start;
+		
+		final AtomicLongArray sketch = new AtomicLongArray(DEPTH * WIDTH);
+		
+		/**
+		 * 候选热点key与估算的采样次数
+		 */
+		final Map<ByteBuffer, Long> candidates = new HashMap<>();
+		
+		/**
+		 * 候选中最小的次数，小于它的key不需要加锁比较
+		 */
+		volatile long floor = 0;
+		
+		Window(long start) {
+			this.start = start;
+		}
+		
+		void add(byte[] key) {
+			int hash = murmur(key);
+			long estimate = Long.MAX_VALUE;
+			for (int i = 0; i < DEPTH; i++) {
+				//每行使用不同的哈希：h1 + i*h2
+				int index = (hash + i * ((hash >>> 16) | 1)) & (WIDTH - 1);
+				estimate = Math.min(estimate, sketch.incrementAndGet(i * WIDTH + index));
+			}
+			
+			if (estimate < floor) return;
+			
+			synchronized (candidates) {
+				candidates.put(ByteBuffer.wrap(key), estimate);
+				if (candidates.size() > topK * 2) trim();
+			}
+		}
+		
+		/**
+		 * 只保留次数最多的topK个候选
+		 */
+		private void trim() {
+			List<Map.Entry<ByteBuffer, Long>> entries = new ArrayList<>(candidates.entrySet());
+			entries.sort(Map.Entry.<ByteBuffer, Long>comparingByValue().reversed());
+			
+			candidates.clear();
+			for (int i = 0; i < topK; i++) {
+				candidates.put(entries.get(i).getKey(), entries.get(i).getValue());
+			}
+			floor = entries.get(topK - 1).getValue();
+		}
+		
+		List<HotKey> toHotKeys(long millis) {
+			List<Map.Entry<ByteBuffer, Long>> entries;
+			synchronized (candidates) {
+				entries = new ArrayList<>(candidates.entrySet());
+			}
+			entries.sort(Map.Entry.<ByteBuffer, Long>comparingByValue().reversed());
+			
+			List<HotKey> hotKeys = new ArrayList<>(Math.min(topK, entries.size()));
+			for (Map.Entry<ByteBuffer, Long> entry : entries) {
+				if (hotKeys.size() >= topK) break;
+				
+				long count = Math.round(entry.getValue() / sampleRate);
+				hotKeys.add(new HotKey(RedisUtils.toString(entry.getKey().array()), count, count * 1000.0 / Math.max(millis, 1)));
+			}
+			return hotKeys;
+		}
+		
+		boolean contains(byte[] key) {
+			synchronized (candidates) {
+				return candidates.containsKey(ByteBuffer.wrap(key));
+			}
+		}
+	}
+	
+	/**
+	 * 热点key统计快照
+	 */
+	public static class HotKey {
+		
+		private final String key;
+		
+		private final long count;
+		
+		private final double rate;
+		
+		@ConstructorProperties({"key", "count", "rate"})
+		public HotKey(String key, long count, double rate) {
+			this.key = key;
+			this.count = count;
+			this.rate = rate;
+		}
+		
+		public String getKey() {
+			return key;
+		}
+		
+		/**
+		 * 窗口内估算的访问次数
+		 * @return
+		 */
+		public long getCount() {
+			return count;
+		}
+		
+		/**
+		 * 每秒访问次数
+		 * @return
+		 */
+		public double getRate() {
+			return rate;
+		}
+		
+		public String toString() {
+			return key + "=" + count + "(" + String.format("%.1f", rate) + "/s)";
+		}
+	}
+	
+	/**
+	 * @param sampleRate 采样率(0,1]
+	 * @param windowMillis 统计窗口(毫秒)
+	 * @param topK 保留的热点key个数
+	 */
+	RedisHotKeys(double sampleRate, long windowMillis, int topK) {
+		if (sampleRate <= 0 || sampleRate > 1) throw new IllegalArgumentException("sampleRate must be in (0,1]:" + sampleRate);
+		if (windowMillis <= 0) throw new IllegalArgumentException("windowMillis must be positive:" + windowMillis);
+		if (topK <= 0) throw new IllegalArgumentException("topK must be positive:" + topK);
+		
+		this.sampleRate = sampleRate;
+		this.windowMillis = windowMillis;
+		this.topK = topK;
+		this.current = new AtomicReference<>(new Window(System.currentTimeMillis()));
+	}
+	
+	/**
+	 * 记录一次key的访问，按采样率抽取
+	 * @param key
+	 */
+	void record(Object key) {
+		if (key == null || !sampled()) return;
+		
+		window(System.currentTimeMillis()).add(RedisUtils.toBytes(key));
+	}
+	
+	/**
+	 * 记录一次已转换为字节数组的key的访问，按采样率抽取
+	 * @param key
+	 */
+	void record(byte[] key) {
+		if (key == null || !sampled()) return;
+		
+		window(System.currentTimeMillis()).add(key);
+	}
+	
+	private boolean sampled() {
+		return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+	}
+	
+	/**
+	 * 得到当前窗口，超时时切换到新窗口
+	 * @param now
+	 * @return
+	 */
+	private Window window(long now) {
+		Window window = current.get();
+		if (now - window.start < windowMillis) return window;
+		
+		Window next = new Window(now);
+		if (current.compareAndSet(window, next)) {
+			last = window;
+			return next;
+		}
+		return current.get();
+	}
+	
+	/**
+	 * 得到上一个完整窗口中访问最多的key，按访问次数倒序排列
+	 * 最近一个窗口内没有访问时返回空
+	 * @return
+	 */
+	public List<HotKey> getHotKeys() {
+		Window window = completed();
+		if (window == null) return Collections.emptyList();
+		
+		return window.toHotKeys(current.get().start - window.start);
+	}
+	
+	/**
+	 * key是否为上一个完整窗口中的热点key
+	 * 可以用来决定是否在本地缓存
+	 * @param key
+	 * @return
+	 */
+	public boolean isHot(Object key) {
+		Window window = completed();
+		return window != null && window.contains(RedisUtils.toBytes(key));
+	}
+	
+	/**
+	 * 得到上一个完整窗口，已经过期时返回null
+	 * @return
+	 */
+	private Window completed() {
+		Window window = window(System.currentTimeMillis());
+		Window completed = last;
+		if (completed == null || window.start - completed.start > windowMillis * 2) return null;
+		
+		return completed;
+	}
+	
+	public double getSampleRate() {
+		return sampleRate;
+	}
+	
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+	
+	public int getTopK() {
+		return topK;
+	}
+	
+	/**
+	 * MurmurHash3 x86 32位
+	 * @param data
+	 * @return
+	 */
+	@SuppressWarnings("fallthrough")
+	private static int murmur(byte[] data) {
+		final int c1 = 0xcc9e2d51;
+		final int c2 = 0x1b873593;
+		
+		int h = 0;
+		int length = data.length;
+		int blocks = length / 4;
+		
+		for (int i = 0; i < blocks; i++) {
+			int k = (data[i * 4] & 0xFF) | (data[i * 4 + 1] & 0xFF) << 8 | (data[i * 4 + 2] & 0xFF) << 16 | (data[i * 4 + 3] & 0xFF) << 24;
+			k *= c1;
+			k = Integer.rotateLeft(k, 15);
+			k *= c2;
+			h ^= k;
+			h = Integer.rotateLeft(h, 13);
+			h = h * 5 + 0xe6546b64;
+		}
+		
+		int k = 0;
+		int tail = blocks * 4;
+		switch (length & 3) {
+		case 3: k ^= (data[tail + 2] & 0xFF) << 16;
+		case 2: k ^= (data[tail + 1] & 0xFF) << 8;
+		case 1:
+			k ^= data[tail] & 0xFF;
+			k *= c1;
+			k = Integer.rotateLeft(k, 15);
+			k *= c2;
+			h ^= k;
+		}
+		
+		h ^= length;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+	
+}
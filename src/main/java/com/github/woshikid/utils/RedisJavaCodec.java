@@ -0,0 +1,19 @@
+package com.github.woshikid.utils;
+
+/**
+ * 使用java序列化的编码方式
+ * 对象必须实现Serializable接口，兼容原有数据
+ * @author kid
+ *
+ */
+public class RedisJavaCodec implements RedisCodec {
+
+	public byte[] encode(Object object) {
+		return ObjectUtils.serialize(object);
+	}
+	
+	public <T> T decode(byte[] bytes, Class<T> type) {
+		return type.cast(ObjectUtils.deserialize(bytes));
+	}
+	
+}
@@ -0,0 +1,21 @@
+package com.github.woshikid.utils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 使用json的编码方式
+ * 可读性好，便于其他语言读取
+ * @author kid
+ *
+ */
+public class RedisJsonCodec implements RedisCodec {
+
+	public byte[] encode(Object object) {
+		return JSONUtils.toJSON(object).getBytes(StandardCharsets.UTF_8);
+	}
+	
+	public <T> T decode(byte[] bytes, Class<T> type) {
+		return JSONUtils.toObject(new String(bytes, StandardCharsets.UTF_8), type);
+	}
+	
+}
@@ -0,0 +1,305 @@
+package com.github.woshikid.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于redis的分布式可重入锁
+ * 以SET NX PX加锁，值为持有者标识(实例标识:线程号)，以Lua脚本比较持有者后释放，不会误删其他持有者的锁
+ * 持有期间后台每leaseMillis/3续期一次，进程停止后锁在leaseMillis后自动释放
+ * 等待时订阅释放通知，被唤醒或到达当前持有者的剩余时间时重新竞争，不轮询
+ * 被唤醒的等待者之间不保证先后顺序
+ * 开启统计时，每次加锁的等待时间记录为lock.wait命令，未取得锁时记为失败
+ * @author kid
+ *
+ */
+public class RedisLock {
+
+	private final static Logger logger = LoggerFactory.getLogger(RedisLock.class);
+	
+	/**
+	 * 释放通知的频道，消息为锁的名称
+	 */
+	private static final String CHANNEL = "__redis_lock__";
+	
+	/**
+	 * 锁没有过期时间时的等待间隔(毫秒)
+	 */
+	private static final long RETRY_MILLIS = 100;
+	
+	/**
+	 * 取得锁时返回-1，否则返回锁的剩余时间
+	 * KEYS[1]锁，ARGV[1]持有者标识，ARGV[2]租约(毫秒)
+	 */
+	private static final RedisScript ACQUIRE = new RedisScript(
+			"if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return -1 end\n" +
+			"local ttl = redis.call('PTTL', KEYS[1])\n" +
+			"if ttl < 0 then return 0 end\n" +
+			"return ttl");
+	
+	/**
+	 * KEYS[1]锁，ARGV[1]持有者标识
+	 */
+	private static final RedisScript RELEASE = new RedisScript(
+			"if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n" +
+			"return 0");
+	
+	/**
+	 * KEYS[1]锁，ARGV[1]持有者标识，ARGV[2]租约(毫秒)
+	 */
+	private static final RedisScript RENEW = new RedisScript(
+			"if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end\n" +
+			"return 0");
+	
+	private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "redis-lock-watchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	/**
+	 * 本进程中各个锁的等待者，每次收到释放通知时增加版本号并唤醒
+	 * 最后一个等待者离开时删除，锁的名称很多时不会持续增长
+	 */
+	private static final Map<String, Waiters> waiters = new ConcurrentHashMap<>();
+	
+	private static volatile boolean subscribed = false;
+	
+	private static class Waiters {
+		
+		long generation = 0;
+		
+		/**
+		 * 等待者的个数，只在waiters的compute中修改
+		 */
+		int count = 0;
+	}
+	
+	private final String name;
+	
+	private final long leaseMillis;
+	
+	private final String id = IDUtils.uuid();
+	
+	private volatile Thread owner = null;
+	
+	private int holds = 0;
+	
+	private volatile ScheduledFuture<?> renewal = null;
+	
+	/**
+	 * 租约为30秒
+	 * @param name 锁的key
+	 */
+	public RedisLock(String name) {
+		this(name, 30000);
+	}
+	
+	/**
+	 * @param name 锁的key
+	 * @param leaseMillis 租约(毫秒)，持有者停止续期后锁的最长保留时间
+	 */
+	public RedisLock(String name, long leaseMillis) {
+		if (leaseMillis < 3) throw new IllegalArgumentException("leaseMillis must be at least 3:" + leaseMillis);
+		
+		this.name = name;
+		this.leaseMillis = leaseMillis;
+	}
+	
+	/**
+	 * 加锁，一直等待直到取得锁
+	 * 等待期间被中断时继续等待，取得锁后恢复中断状态
+	 */
+	public void lock() {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (tryLock(-1)) break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+	
+	/**
+	 * 尝试加锁，不等待
+	 * @return
+	 */
+	public boolean tryLock() {
+		try {
+			return tryLock(0);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * 尝试加锁，最多等待waitMillis
+	 * @param waitMillis 等待时间(毫秒)，小于0时一直等待
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public boolean tryLock(long waitMillis) throws InterruptedException {
+		Thread current = Thread.currentThread();
+		if (owner == current) {
+			holds++;
+			return true;
+		}
+		
+		long start = System.nanoTime();
+		long deadline = waitMillis < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + waitMillis;
+		Waiters local = null;
+		boolean acquired = false;
+		try {
+			while (true) {
+				long generation = 0;
+				if (local != null) {
+					synchronized (local) {
+						generation = local.generation;
+					}
+				}
+				
+				long ttl = ACQUIRE.evalLong(new Object[] {name}, token(current), leaseMillis);
+				if (ttl < 0) {
+					owner = current;
+					holds = 1;
+					renewal = watchdog.scheduleWithFixedDelay(() -> renew(current), leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+					acquired = true;
+					return true;
+				}
+				
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) return false;
+				
+				//第一次需要等待时订阅，订阅之后重新竞争一次，以免错过订阅之前的释放
+				if (local == null) {
+					subscribe();
+					local = waiters.compute(name, (k, w) -> {
+						if (w == null) w = new Waiters();
+						w.count++;
+						return w;
+					});
+					continue;
+				}
+				
+				long wait = Math.min(remaining, ttl > 0 ? ttl : RETRY_MILLIS);
+				synchronized (local) {
+					if (local.generation == generation) local.wait(wait);
+				}
+			}
+		} finally {
+			if (local != null) waiters.computeIfPresent(name, (k, w) -> --w.count == 0 ? null : w);
+			
+			RedisMetrics metrics = RedisUtils.getMetrics();
+			if (metrics != null) metrics.record("lock.wait", System.nanoTime() - start, acquired);
+		}
+	}
+	
+	/**
+	 * 释放锁，重入的次数全部释放后才真正释放
+	 * @throws IllegalMonitorStateException 当前线程不持有锁，或锁已过期被其他持有者取得
+	 */
+	public void unlock() {
+		Thread current = Thread.currentThread();
+		if (owner != current) throw new IllegalMonitorStateException("redis lock not held by current thread:" + name);
+		
+		if (--holds > 0) return;
+		
+		renewal.cancel(false);
+		renewal = null;
+		owner = null;
+		
+		long released = RELEASE.evalLong(new Object[] {name}, token(current));
+		if (released == 0) throw new IllegalMonitorStateException("redis lock expired:" + name);
+		
+		signal(name);
+		try {
+			RedisUtils.publish(CHANNEL, name);
+		} catch (Exception e) {
+			//其他进程的等待者在锁的剩余时间后重新竞争
+			logger.warn("redis lock notify failed:" + name, e);
+		}
+	}
+	
+	/**
+	 * 锁是否被任意持有者持有
+	 * @return
+	 */
+	public boolean isLocked() {
+		return RedisUtils.exists(name);
+	}
+	
+	/**
+	 * 当前线程是否持有锁
+	 * @return
+	 */
+	public boolean isHeldByCurrentThread() {
+		return owner == Thread.currentThread();
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public long getLeaseMillis() {
+		return leaseMillis;
+	}
+	
+	private String token(Thread thread) {
+		return id + ":" + thread.getId();
+	}
+	
+	/**
+	 * 续期，锁已不属于该线程时停止续期
+	 * @param thread
+	 */
+	private void renew(Thread thread) {
+		try {
+			if (RENEW.evalLong(new Object[] {name}, token(thread), leaseMillis) == 0 && owner == thread) {
+				logger.warn("redis lock lost:" + name);
+				ScheduledFuture<?> current = renewal;
+				if (current != null) current.cancel(false);
+			}
+		} catch (Exception e) {
+			logger.warn("redis lock renew failed:" + name, e);
+		}
+	}
+	
+	/**
+	 * 订阅释放通知，订阅失败时等待者在锁的剩余时间后重新竞争
+	 */
+	private static synchronized void subscribe() {
+		if (subscribed) return;
+		
+		try {
+			RedisUtils.pubSub().subscribe(CHANNEL, (channel, name) -> signal(name));
+			subscribed = true;
+		} catch (Exception e) {
+			logger.warn("redis lock subscribe failed", e);
+		}
+	}
+	
+	/**
+	 * 唤醒本进程中等待该锁的线程
+	 * @param name
+	 */
+	private static void signal(String name) {
+		Waiters local = waiters.get(name);
+		if (local == null) return;
+		
+		synchronized (local) {
+			local.generation++;
+			local.notifyAll();
+		}
+	}
+	
+}
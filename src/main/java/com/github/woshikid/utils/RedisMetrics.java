@@ -0,0 +1,281 @@
+package com.github.woshikid.utils;
+
+import java.beans.ConstructorProperties;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.util.Pool;
+
+/**
+ * Redis命令统计
+ * 按命令统计调用次数、失败次数与耗时分布，并提供连接池状态
+ * 通过{@link RedisUtils#getMetrics()}查询，同时注册为JMX MXBean
+ * 耗时分布使用对数分段的桶，每段8个子桶，相对误差不超过12.5%
+ * @author kid
+ *
+ */
+public class RedisMetrics implements RedisMetricsMXBean {
+
+	/**
+	 * 小于16微秒时每微秒一个桶，之后每个2的幂次分8个桶
+	 */
+	private static final int BUCKETS = 16 + 60 * 8;
+	
+	private final Map<String, Command> commands = new ConcurrentHashMap<>();
+	
+	private final Supplier<Map<String, Pool<Jedis>>> pools;
+	
+	/**
+	 * 单个命令的统计
+	 */
+	private static class Command {
+		
+		final LongAdder calls = new LongAdder();
+		
+		final LongAdder errors = new LongAdder();
+		
+		final LongAdder totalMicros = new LongAdder();
+		
+		final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		
+		void record(long micros, boolean success) {
+			calls.increment();
+			if (!success) errors.increment();
+			totalMicros.add(micros);
+			buckets.incrementAndGet(bucket(micros));
+		}
+		
+		CommandStats toStats() {
+			long[] counts = new long[BUCKETS];
+			long total = 0;
+			int max = -1;
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] = buckets.get(i);
+				total += counts[i];
+				if (counts[i] > 0) max = i;
+			}
+			
+			long callCount = calls.sum();
+			long mean = callCount == 0 ? 0 : totalMicros.sum() / callCount;
+			return new CommandStats(callCount, errors.sum(), mean,
+					percentile(counts, total, 0.5), percentile(counts, total, 0.99), percentile(counts, total, 0.999),
+					max < 0 ? 0 : upperBound(max));
+		}
+	}
+	
+	/**
+	 * 命令统计快照，耗时单位为微秒
+	 */
+	public static class CommandStats {
+		
+		private final long calls;
+		
+		private final long errors;
+		
+		private final long meanMicros;
+		
+		private final long p50Micros;
+		
+		private final long p99Micros;
+		
+		private final long p999Micros;
+		
+		private final long maxMicros;
+		
+		@ConstructorProperties({"calls", "errors", "meanMicros", "p50Micros", "p99Micros", "p999Micros", "maxMicros"})
+		public CommandStats(long calls, long errors, long meanMicros, long p50Micros, long p99Micros, long p999Micros, long maxMicros) {
+			this.calls = calls;
+			this.errors = errors;
+			this.meanMicros = meanMicros;
+			this.p50Micros = p50Micros;
+			this.p99Micros = p99Micros;
+			this.p999Micros = p999Micros;
+			this.maxMicros = maxMicros;
+		}
+		
+		public long getCalls() {
+			return calls;
+		}
+		
+		public long getErrors() {
+			return errors;
+		}
+		
+		public long getMeanMicros() {
+			return meanMicros;
+		}
+		
+		public long getP50Micros() {
+			return p50Micros;
+		}
+		
+		public long getP99Micros() {
+			return p99Micros;
+		}
+		
+		public long getP999Micros() {
+			return p999Micros;
+		}
+		
+		public long getMaxMicros() {
+			return maxMicros;
+		}
+		
+		public String toString() {
+			return "calls=" + calls + ", errors=" + errors + ", mean=" + meanMicros + "us, p50=" + p50Micros + "us, p99=" + p99Micros + "us, p999=" + p999Micros + "us, max=" + maxMicros + "us";
+		}
+	}
+	
+	/**
+	 * 连接池状态快照
+	 */
+	public static class PoolStats {
+		
+		private final int active;
+		
+		private final int idle;
+		
+		private final int waiters;
+		
+		private final long meanBorrowWaitMillis;
+		
+		private final long maxBorrowWaitMillis;
+		
+		@ConstructorProperties({"active", "idle", "waiters", "meanBorrowWaitMillis", "maxBorrowWaitMillis"})
+		public PoolStats(int active, int idle, int waiters, long meanBorrowWaitMillis, long maxBorrowWaitMillis) {
+			this.active = active;
+			this.idle = idle;
+			this.waiters = waiters;
+			this.meanBorrowWaitMillis = meanBorrowWaitMillis;
+			this.maxBorrowWaitMillis = maxBorrowWaitMillis;
+		}
+		
+		public int getActive() {
+			return active;
+		}
+		
+		public int getIdle() {
+			return idle;
+		}
+		
+		public int getWaiters() {
+			return waiters;
+		}
+		
+		public long getMeanBorrowWaitMillis() {
+			return meanBorrowWaitMillis;
+		}
+		
+		public long getMaxBorrowWaitMillis() {
+			return maxBorrowWaitMillis;
+		}
+		
+		public String toString() {
+			return "active=" + active + ", idle=" + idle + ", waiters=" + waiters + ", meanBorrowWait=" + meanBorrowWaitMillis + "ms, maxBorrowWait=" + maxBorrowWaitMillis + "ms";
+		}
+	}
+	
+	/**
+	 * @param pools 提供当前所有连接池，key为节点名称
+	 */
+	RedisMetrics(Supplier<Map<String, Pool<Jedis>>> pools) {
+		this.pools = pools;
+	}
+	
+	/**
+	 * 记录一次命令执行
+	 * @param name 命令名称
+	 * @param nanos 耗时(纳秒)
+	 * @param success 是否成功
+	 */
+	void record(String name, long nanos, boolean success) {
+		Command command = commands.get(name);
+		if (command == null) command = commands.computeIfAbsent(name, k -> new Command());
+		command.record(nanos / 1000, success);
+	}
+	
+	/**
+	 * 得到各个命令的统计，按命令名称排序
+	 * @return
+	 */
+	public Map<String, CommandStats> getCommands() {
+		Map<String, CommandStats> stats = new TreeMap<>();
+		for (Map.Entry<String, Command> entry : commands.entrySet()) {
+			stats.put(entry.getKey(), entry.getValue().toStats());
+		}
+		return stats;
+	}
+	
+	/**
+	 * 得到指定命令的统计，没有执行过时返回null
+	 * @param name
+	 * @return
+	 */
+	public CommandStats getCommand(String name) {
+		Command command = commands.get(name);
+		return command == null ? null : command.toStats();
+	}
+	
+	/**
+	 * 得到各个连接池的状态，按节点名称排序
+	 * @return
+	 */
+	public Map<String, PoolStats> getPools() {
+		Map<String, PoolStats> stats = new TreeMap<>();
+		for (Map.Entry<String, Pool<Jedis>> entry : pools.get().entrySet()) {
+			Pool<Jedis> pool = entry.getValue();
+			stats.put(entry.getKey(), new PoolStats(pool.getNumActive(), pool.getNumIdle(), pool.getNumWaiters(), pool.getMeanBorrowWaitTimeMillis(), pool.getMaxBorrowWaitTimeMillis()));
+		}
+		return stats;
+	}
+	
+	/**
+	 * 清空所有命令统计
+	 */
+	public void reset() {
+		commands.clear();
+	}
+	
+	/**
+	 * 得到耗时对应的桶
+	 * @param micros
+	 * @return
+	 */
+	private static int bucket(long micros) {
+		if (micros < 16) return micros < 0 ? 0 : (int)micros;
+		
+		int msb = 63 - Long.numberOfLeadingZeros(micros);
+		return 16 + (msb - 4) * 8 + (int)((micros >> (msb - 3)) & 7);
+	}
+	
+	/**
+	 * 得到桶内的最大耗时
+	 * @param bucket
+	 * @return
+	 */
+	private static long upperBound(int bucket) {
+		if (bucket < 16) return bucket;
+		
+		int msb = (bucket - 16) / 8 + 4;
+		long sub = (bucket - 16) % 8;
+		return ((8 + sub + 1) << (msb - 3)) - 1;
+	}
+	
+	private static long percentile(long[] counts, long total, double percentile) {
+		if (total == 0) return 0;
+		
+		long target = (long)Math.ceil(total * percentile);
+		long count = 0;
+		for (int i = 0; i < counts.length; i++) {
+			count += counts[i];
+			if (count >= target) return upperBound(i);
+		}
+		return upperBound(counts.length - 1);
+	}
+	
+}
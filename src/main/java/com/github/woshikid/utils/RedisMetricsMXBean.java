@@ -0,0 +1,29 @@
+package com.github.woshikid.utils;
+
+import java.util.Map;
+
+/**
+ * Redis命令统计的JMX接口
+ * @author kid
+ *
+ */
+public interface RedisMetricsMXBean {
+
+	/**
+	 * 各个命令的调用次数、失败次数与耗时分布
+	 * @return
+	 */
+	Map<String, RedisMetrics.CommandStats> getCommands();
+	
+	/**
+	 * 各个连接池的状态
+	 * @return
+	 */
+	Map<String, RedisMetrics.PoolStats> getPools();
+	
+	/**
+	 * 清空所有命令统计
+	 */
+	void reset();
+	
+}
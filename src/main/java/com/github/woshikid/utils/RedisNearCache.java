@@ -0,0 +1,477 @@
+package com.github.woshikid.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.util.JedisByteHashMap;
+
+/**
+ * Redis客户端本地缓存
+ * 缓存get,hget,hgetAll的结果，最多缓存maxSize个key，每个key最多缓存ttl毫秒
+ * 通过RedisUtils执行的写命令会使本地缓存失效，并通过频道通知其他进程
+ * 频道订阅中断期间不会缓存任何内容，重新订阅后清空本地缓存
+ * 其他客户端直接执行的写命令只能等待缓存过期
+ * 注意：不要修改从本地缓存中取得的字节数组
+ * @author kid
+ *
+ */
+public class RedisNearCache {
+
+	private final static Logger logger = LoggerFactory.getLogger(RedisNearCache.class);
+	
+	/**
+	 * 缓存不存在的值
+	 */
+	private static final Object NULL = new Object();
+	
+	/**
+	 * 每条失效通知最多包含的key个数
+	 */
+	private static final int PUBLISH_BATCH = 1000;
+	
+	private static final int STRIPES = 1024;
+	
+	private final int maxSize;
+	
+	private final long ttl;
+	
+	private final byte[] channel;
+	
+	private final byte[][] prefixes;
+	
+	/**
+	 * 进程标识，用于忽略自己发出的失效通知
+	 */
+	private final byte[] id = new byte[8];
+	
+	private final ConcurrentHashMap<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+	
+	/**
+	 * 按key分段的版本号，每次失效时增加
+	 * 读取期间版本号发生变化时，读到的值不放入缓存
+	 */
+	private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+	
+	/**
+	 * 等待通知其他进程失效的key
+	 */
+	private final BlockingQueue<byte[]> pending = new LinkedBlockingQueue<>(PUBLISH_BATCH * 100);
+	
+	private volatile boolean subscribed = false;
+	
+	private final LongAdder hits = new LongAdder();
+	
+	private final LongAdder misses = new LongAdder();
+	
+	private static class Entry {
+		
+		final long expireAt;
+		
+		/**
+		 * get的结果
+		 */
+		volatile Object value;
+		
+		/**
+		 * hgetAll的结果
+		 */
+		volatile Map<byte[], byte[]> hash;
+		
+		/**
+		 * hget的结果
+		 */
+		final ConcurrentHashMap<ByteBuffer, Object> fields = new ConcurrentHashMap<>();
+		
+		Entry(long expireAt) {
+			this.expireAt = expireAt;
+		}
+	}
+	
+	/**
+	 * @param maxSize 最多缓存的key个数
+	 * @param ttl 缓存时间(毫秒)
+	 * @param channel 失效通知的频道，为null时只在本地失效
+	 * @param prefixes 只缓存以这些前缀开头的key，为空时缓存所有key
+	 */
+	RedisNearCache(int maxSize, long ttl, String channel, String[] prefixes) {
+		if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive:" + maxSize);
+		if (ttl <= 0) throw new IllegalArgumentException("ttl must be positive:" + ttl);
+		
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.channel = RedisUtils.toBytes(channel);
+		this.prefixes = new byte[prefixes.length][];
+		for (int i = 0; i < prefixes.length; i++) {
+			this.prefixes[i] = RedisUtils.toBytes(prefixes[i]);
+		}
+		new Random().nextBytes(id);
+	}
+	
+	/**
+	 * 启动订阅与通知线程
+	 */
+	void start() {
+		if (channel == null) {
+			subscribed = true;
+			return;
+		}
+		
+		Thread subscriber = new Thread(this::subscribe, "redis-near-cache-subscriber");
+		subscriber.setDaemon(true);
+		subscriber.start();
+		
+		Thread publisher = new Thread(this::publish, "redis-near-cache-publisher");
+		publisher.setDaemon(true);
+		publisher.start();
+	}
+	
+	/**
+	 * 取得缓存的get结果，不存在时通过loader读取
+	 * @param key
+	 * @param loader
+	 * @return
+	 */
+	byte[] get(byte[] key, Supplier<byte[]> loader) {
+		if (!isCacheable(key)) return loader.get();
+		
+		ByteBuffer buffer = ByteBuffer.wrap(key);
+		Entry entry = getEntry(buffer);
+		Object value = entry == null ? null : entry.value;
+		if (value != null) {
+			hits.increment();
+			return value == NULL ? null : (byte[])value;
+		}
+		
+		misses.increment();
+		long version = versions.get(stripe(buffer));
+		byte[] loaded = loader.get();
+		entry = putEntry(buffer);
+		if (entry != null) {
+			entry.value = loaded == null ? NULL : loaded;
+			checkVersion(buffer, entry, version);
+		}
+		return loaded;
+	}
+	
+	/**
+	 * 取得缓存的hget结果，不存在时通过loader读取
+	 * @param key
+	 * @param field
+	 * @param loader
+	 * @return
+	 */
+	byte[] hget(byte[] key, byte[] field, Supplier<byte[]> loader) {
+		if (!isCacheable(key)) return loader.get();
+		
+		ByteBuffer buffer = ByteBuffer.wrap(key);
+		ByteBuffer fieldBuffer = ByteBuffer.wrap(field);
+		Entry entry = getEntry(buffer);
+		Object value = entry == null ? null : entry.fields.get(fieldBuffer);
+		if (value != null) {
+			hits.increment();
+			return value == NULL ? null : (byte[])value;
+		}
+		
+		misses.increment();
+		long version = versions.get(stripe(buffer));
+		byte[] loaded = loader.get();
+		entry = putEntry(buffer);
+		if (entry != null) {
+			entry.fields.put(fieldBuffer, loaded == null ? NULL : loaded);
+			checkVersion(buffer, entry, version);
+		}
+		return loaded;
+	}
+	
+	/**
+	 * 取得缓存的hgetAll结果，不存在时通过loader读取
+	 * 返回的是缓存的副本，可以修改
+	 * @param key
+	 * @param loader
+	 * @return
+	 */
+	Map<byte[], byte[]> hgetAll(byte[] key, Supplier<Map<byte[], byte[]>> loader) {
+		if (!isCacheable(key)) return loader.get();
+		
+		ByteBuffer buffer = ByteBuffer.wrap(key);
+		Entry entry = getEntry(buffer);
+		Map<byte[], byte[]> hash = entry == null ? null : entry.hash;
+		if (hash != null) {
+			hits.increment();
+			return copy(hash);
+		}
+		
+		misses.increment();
+		long version = versions.get(stripe(buffer));
+		Map<byte[], byte[]> loaded = loader.get();
+		entry = putEntry(buffer);
+		if (entry != null && loaded != null) {
+			entry.hash = copy(loaded);
+			checkVersion(buffer, entry, version);
+		}
+		return loaded;
+	}
+	
+	/**
+	 * 使key的本地缓存失效，并通知其他进程
+	 * @param key
+	 */
+	void invalidate(byte[] key) {
+		if (!isCacheable(key)) return;
+		
+		invalidateLocal(key);
+		
+		if (channel != null && !pending.offer(key)) {
+			logger.warn("near cache invalidation queue is full, other processes will wait for ttl");
+		}
+	}
+	
+	/**
+	 * 使key的本地缓存失效
+	 * @param key
+	 */
+	private void invalidateLocal(byte[] key) {
+		ByteBuffer buffer = ByteBuffer.wrap(key);
+		versions.incrementAndGet(stripe(buffer));
+		entries.remove(buffer);
+	}
+	
+	/**
+	 * 得到未过期的缓存
+	 * @param buffer
+	 * @return
+	 */
+	private Entry getEntry(ByteBuffer buffer) {
+		Entry entry = entries.get(buffer);
+		if (entry == null) return null;
+		
+		if (entry.expireAt <= System.currentTimeMillis()) {
+			entries.remove(buffer, entry);
+			return null;
+		}
+		return entry;
+	}
+	
+	/**
+	 * 得到或创建缓存，订阅中断期间返回null
+	 * @param buffer
+	 * @return
+	 */
+	private Entry putEntry(ByteBuffer buffer) {
+		if (!subscribed) return null;
+		
+		Entry entry = getEntry(buffer);
+		if (entry != null) return entry;
+		
+		if (entries.size() >= maxSize) evict();
+		return entries.computeIfAbsent(buffer, k -> new Entry(System.currentTimeMillis() + ttl));
+	}
+	
+	/**
+	 * 读取期间发生过失效时，丢弃刚放入的缓存
+	 * @param buffer
+	 * @param entry
+	 * @param version
+	 */
+	private void checkVersion(ByteBuffer buffer, Entry entry, long version) {
+		if (versions.get(stripe(buffer)) != version) entries.remove(buffer, entry);
+	}
+	
+	/**
+	 * 缓存已满时，从少量样本中移除最早过期的一个
+	 */
+	private void evict() {
+		Iterator<Map.Entry<ByteBuffer, Entry>> iterator = entries.entrySet().iterator();
+		Map.Entry<ByteBuffer, Entry> oldest = null;
+		for (int i = 0; i < 8 && iterator.hasNext(); i++) {
+			Map.Entry<ByteBuffer, Entry> sample = iterator.next();
+			if (oldest == null || sample.getValue().expireAt < oldest.getValue().expireAt) oldest = sample;
+		}
+		
+		if (oldest != null) entries.remove(oldest.getKey(), oldest.getValue());
+	}
+	
+	private boolean isCacheable(byte[] key) {
+		if (prefixes.length == 0) return true;
+		
+		for (byte[] prefix : prefixes) {
+			if (startsWith(key, prefix)) return true;
+		}
+		return false;
+	}
+	
+	private static boolean startsWith(byte[] bytes, byte[] prefix) {
+		if (bytes.length < prefix.length) return false;
+		
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[i] != prefix[i]) return false;
+		}
+		return true;
+	}
+	
+	private static int stripe(ByteBuffer buffer) {
+		return buffer.hashCode() & (STRIPES - 1);
+	}
+	
+	private static Map<byte[], byte[]> copy(Map<byte[], byte[]> hash) {
+		Map<byte[], byte[]> copy = new JedisByteHashMap();
+		copy.putAll(hash);
+		return copy;
+	}
+	
+	/**
+	 * 持续订阅失效通知，连接中断后自动重新订阅
+	 */
+	private void subscribe() {
+		BinaryJedisPubSub pubSub = new BinaryJedisPubSub() {
+			public void onSubscribe(byte[] channel, int subscribedChannels) {
+				clear();
+				subscribed = true;
+			}
+			
+			public void onMessage(byte[] channel, byte[] message) {
+				onInvalidation(message);
+			}
+		};
+		
+		while (true) {
+			try {
+				RedisUtils.execute(null, jedis -> {
+					jedis.subscribe(pubSub, channel);
+					return null;
+				});
+			} catch (Exception e) {
+				logger.warn("near cache subscription lost", e);
+			}
+			
+			subscribed = false;
+			clear();
+			
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * 失效通知格式：8字节进程标识，之后每个key为4字节长度加内容
+	 * 长度与剩余内容不符时忽略该通知剩余的部分
+	 * @param message
+	 */
+	private void onInvalidation(byte[] message) {
+		ByteBuffer buffer = ByteBuffer.wrap(message);
+		if (buffer.remaining() < id.length) return;
+		
+		byte[] sender = new byte[id.length];
+		buffer.get(sender);
+		if (ByteBuffer.wrap(sender).equals(ByteBuffer.wrap(id))) return;
+		
+		while (buffer.hasRemaining()) {
+			int length = buffer.remaining() < 4 ? -1 : buffer.getInt();
+			if (length < 0 || length > buffer.remaining()) {
+				//不是本工具发送的通知，或者已损坏
+				logger.warn("near cache invalidation message is malformed, skipped:" + message.length + " bytes");
+				return;
+			}
+			
+			byte[] key = new byte[length];
+			buffer.get(key);
+			invalidateLocal(key);
+		}
+	}
+	
+	/**
+	 * 批量发送失效通知
+	 */
+	private void publish() {
+		List<byte[]> keys = new ArrayList<>(PUBLISH_BATCH);
+		while (true) {
+			try {
+				keys.add(pending.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			pending.drainTo(keys, PUBLISH_BATCH - 1);
+			
+			int length = id.length;
+			for (byte[] key : keys) {
+				length += 4 + key.length;
+			}
+			
+			ByteBuffer message = ByteBuffer.allocate(length);
+			message.put(id);
+			for (byte[] key : keys) {
+				message.putInt(key.length);
+				message.put(key);
+			}
+			keys.clear();
+			
+			try {
+				RedisUtils.execute("publish", jedis -> jedis.publish(channel, message.array()));
+			} catch (Exception e) {
+				logger.warn("near cache invalidation publish failed", e);
+			}
+		}
+	}
+	
+	/**
+	 * 命中次数
+	 * @return
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+	
+	/**
+	 * 未命中次数
+	 * @return
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+	
+	/**
+	 * 命中率
+	 * @return
+	 */
+	public double getHitRate() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total == 0 ? 0 : (double)hitCount / total;
+	}
+	
+	/**
+	 * 当前缓存的key个数
+	 * @return
+	 */
+	public int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * 清空本地缓存
+	 */
+	public void clear() {
+		for (int i = 0; i < STRIPES; i++) {
+			versions.incrementAndGet(i);
+		}
+		entries.clear();
+	}
+	
+}
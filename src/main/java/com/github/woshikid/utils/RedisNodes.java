@@ -0,0 +1,95 @@
+package com.github.woshikid.utils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+/**
+ * 多个节点之间按key路由命令
+ * 由集群模式的{@link RedisCluster}与分片模式的{@link RedisShards}实现
+ * @author kid
+ *
+ */
+interface RedisNodes {
+
+	/**
+	 * 在key所在的节点上执行命令
+	 * @param key
+	 * @param command
+	 * @return
+	 */
+	<T> T execute(byte[] key, Function<Jedis, T> command);
+	
+	/**
+	 * 在多个key所在的节点上执行命令
+	 * 所有key必须在同一个节点中
+	 * @param keys
+	 * @param command
+	 * @return
+	 */
+	<T> T execute(byte[][] keys, Function<Jedis, T> command);
+	
+	/**
+	 * 在任意一个节点上执行与key无关的命令
+	 * @param command
+	 * @return
+	 */
+	<T> T executeAnyNode(Function<Jedis, T> command);
+	
+	/**
+	 * 在所有主节点上依次执行命令
+	 * @param command
+	 * @return 各个主节点的执行结果
+	 */
+	<T> List<T> executeMasters(Function<Jedis, T> command);
+	
+	/**
+	 * 将参数按照key分组，分别在各组所在的节点上执行命令，不同节点之间并行执行
+	 * @param args 参数，每step个为一组，每组的第一个为key
+	 * @param step 每组参数的个数
+	 * @param pipelined 在管道中执行同一组中的参数
+	 * @param direct 单独执行同一组中的参数
+	 * @param collector 接收每组参数的序号与对应的执行结果
+	 */
+	<R> void executeBySlot(byte[][] args, int step, BiFunction<Pipeline, byte[][], Response<R>> pipelined, BiFunction<Jedis, byte[][], R> direct, BiConsumer<int[], R> collector);
+	
+	/**
+	 * 得到key所在节点的连接池
+	 * @param key
+	 * @return
+	 */
+	JedisPool getKeyPool(byte[] key);
+	
+	/**
+	 * 得到{@link #executeAnyNode(Function)}所使用节点的连接池
+	 * @return
+	 */
+	JedisPool getAnyNodePool();
+	
+	/**
+	 * 得到所有主节点的连接池，顺序固定
+	 * @return
+	 */
+	List<JedisPool> getMasterPools();
+	
+	/**
+	 * 得到所有节点的连接池
+	 * @return key为节点名称
+	 */
+	Map<String, JedisPool> getClusterNodes();
+	
+	/**
+	 * 得到用于多个节点并行执行的线程池
+	 * @return
+	 */
+	ExecutorService getExecutor();
+	
+}
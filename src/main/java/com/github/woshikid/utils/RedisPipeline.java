@@ -0,0 +1,960 @@
+package com.github.woshikid.utils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import redis.clients.jedis.Builder;
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+/**
+ * Redis管道批量操作
+ * 通过{@link RedisUtils#pipeline(java.util.function.Consumer)}得到
+ * key与value的转换规则与RedisUtils相同
+ * 集群模式下命令按照key的slot分发到各个主节点的管道中
+ * 管道中的命令不会自动处理重定向，slot迁移期间可能在Response中得到MOVED错误
+ * 命令先写入缓冲，每累积flushSize个命令自动发送并读取一次结果，以限制客户端内存
+ * 返回的Response需要在自动发送之后或批量操作结束之后才能取值
+ * @author kid
+ *
+ */
+public class RedisPipeline implements Closeable {
+
+	/**
+	 * 还原读取到的值
+	 */
+	private static final Builder<byte[]> VALUE = new Builder<byte[]>() {
+		public byte[] build(Object data) {
+			return RedisUtils.fromValueBytes((byte[])data);
+		}
+	};
+	
+	/**
+	 * 还原读取到的多个值
+	 */
+	private static final Builder<List<byte[]>> VALUE_LIST = new Builder<List<byte[]>>() {
+		public List<byte[]> build(Object data) {
+			return RedisUtils.fromValueList(BuilderFactory.BYTE_ARRAY_LIST.build(data));
+		}
+	};
+	
+	/**
+	 * 还原读取到的hash
+	 */
+	private static final Builder<Map<byte[], byte[]>> VALUE_MAP = new Builder<Map<byte[], byte[]>>() {
+		public Map<byte[], byte[]> build(Object data) {
+			return RedisUtils.fromValueMap(BuilderFactory.BYTE_ARRAY_MAP.build(data));
+		}
+	};
+	
+	/**
+	 * 将读取到的值转换为字符串
+	 */
+	private static final Builder<String> STRING = new Builder<String>() {
+		public String build(Object data) {
+			return RedisUtils.toString(VALUE.build(data));
+		}
+	};
+	
+	/**
+	 * 将读取到的多个值转换为字符串数组
+	 */
+	private static final Builder<List<String>> STRING_LIST = new Builder<List<String>>() {
+		public List<String> build(Object data) {
+			return RedisUtils.toString(VALUE_LIST.build(data));
+		}
+	};
+	
+	/**
+	 * 将结果转换为字符串集合
+	 */
+	private static final Builder<Set<String>> STRING_SET = new Builder<Set<String>>() {
+		public Set<String> build(Object data) {
+			return RedisUtils.toString(BuilderFactory.BYTE_ARRAY_ZSET.build(data));
+		}
+	};
+	
+	/**
+	 * 将读取到的hash转换为字符串Map
+	 */
+	private static final Builder<Map<String, String>> STRING_MAP = new Builder<Map<String, String>>() {
+		public Map<String, String> build(Object data) {
+			return RedisUtils.toString(VALUE_MAP.build(data));
+		}
+	};
+	
+	/**
+	 * 将状态回复转换为操作结果
+	 */
+	private static final Builder<Boolean> STATUS = new Builder<Boolean>() {
+		public Boolean build(Object data) {
+			return data != null;
+		}
+	};
+	
+	/**
+	 * 单个连接上的管道
+	 * 暴露Pipeline内部的连接与结果队列
+	 */
+	private static class Batch extends Pipeline {
+		
+		private final Jedis jedis;
+		
+		private Batch(Jedis jedis) {
+			this.jedis = jedis;
+			setClient(jedis.getClient());
+		}
+		
+		private Client client() {
+			return client;
+		}
+		
+		private <T> Response<T> response(Builder<T> builder) {
+			return getResponse(builder);
+		}
+	}
+	
+	private final RedisNodes cluster;
+	
+	private final Map<JedisPool, Batch> batches = new IdentityHashMap<>();
+	
+	private Batch batch;
+	
+	private final int flushSize;
+	
+	private int pending = 0;
+	
+	/**
+	 * 写命令涉及的key，发送之后使其本地缓存失效
+	 */
+	private final List<byte[]> written = new ArrayList<>();
+	
+	RedisPipeline(Jedis jedis, int flushSize) {
+		this.cluster = null;
+		this.batch = new Batch(jedis);
+		this.flushSize = flushSize;
+	}
+	
+	RedisPipeline(RedisNodes cluster, int flushSize) {
+		this.cluster = cluster;
+		this.flushSize = flushSize;
+	}
+	
+	/**
+	 * 得到key所在连接
+	 * 之后登记的结果将放入该连接的管道
+	 * @param key
+	 * @return
+	 */
+	private Client client(byte[] key) {
+		RedisUtils.sample(key);
+		
+		return client(cluster == null ? null : cluster.getKeyPool(key));
+	}
+	
+	/**
+	 * 得到连接池对应的连接，单机模式下pool为null
+	 * @param pool
+	 * @return
+	 */
+	private Client client(JedisPool pool) {
+		if (pool != null) {
+			batch = batches.get(pool);
+			if (batch == null) {
+				batch = new Batch(pool.getResource());
+				batches.put(pool, batch);
+			}
+		}
+		
+		return batch.client();
+	}
+	
+	/**
+	 * 得到key所在连接，并记录key在发送之后需要使本地缓存失效
+	 * @param key
+	 * @return
+	 */
+	private Client write(byte[] key) {
+		if (RedisUtils.getNearCache() != null) written.add(key);
+		
+		return client(key);
+	}
+	
+	/**
+	 * 登记刚写入命令的结果
+	 * 达到flushSize时自动发送
+	 * @param builder
+	 * @return
+	 */
+	private <T> Response<T> response(Builder<T> builder) {
+		Response<T> response = batch.response(builder);
+		if (++pending >= flushSize) sync();
+		return response;
+	}
+	
+	/**
+	 * 发送所有缓冲中的命令并读取结果
+	 * 之前返回的Response均可以取值
+	 */
+	public void sync() {
+		if (pending == 0) return;
+		
+		pending = 0;
+		try {
+			if (cluster == null) {
+				batch.sync();
+			} else {
+				//每个节点都要读完结果，否则连接返回连接池后状态错乱
+				RuntimeException error = null;
+				for (Batch nodeBatch : batches.values()) {
+					try {
+						nodeBatch.sync();
+					} catch (RuntimeException e) {
+						if (error == null) error = e;
+					}
+				}
+				if (error != null) throw error;
+			}
+		} finally {
+			for (byte[] key : written) {
+				RedisUtils.invalidate(key);
+			}
+			written.clear();
+		}
+	}
+	
+	/**
+	 * 发送剩余的命令并将连接返回连接池
+	 */
+	public void close() {
+		try {
+			sync();
+		} finally {
+			if (cluster == null) {
+				batch.jedis.close();
+			} else {
+				for (Batch nodeBatch : batches.values()) {
+					nodeBatch.jedis.close();
+				}
+			}
+		}
+	}
+	
+	/********** 通用命令 **********/
+	
+	/**
+	 * 同{@link RedisUtils#del(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Boolean> del(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).del(rawKey);
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#del(Object...)}
+	 * keys为空时不发送命令，直接返回0
+	 * @param keys
+	 * @return
+	 */
+	public Response<Long> del(Object... keys) {
+		if (keys.length == 0) {
+			Response<Long> response = new Response<>(BuilderFactory.LONG);
+			response.set(0L);
+			return response;
+		}
+		
+		byte[][] rawKeys = RedisUtils.toBytes(keys);
+		if (RedisUtils.getNearCache() != null) written.addAll(Arrays.asList(rawKeys));
+		client(rawKeys[0]).del(rawKeys);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#exists(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Boolean> exists(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).exists(rawKey);
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#expire(Object, int)}
+	 * @param key
+	 * @param seconds
+	 * @return
+	 */
+	public Response<Boolean> expire(Object key, int seconds) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).expire(rawKey, seconds);
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#expireAt(Object, long)}
+	 * @param key
+	 * @param unixTime
+	 * @return
+	 */
+	public Response<Boolean> expireAt(Object key, long unixTime) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).expireAt(rawKey, unixTime);
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#pexpire(Object, long)}
+	 * @param key
+	 * @param milliseconds
+	 * @return
+	 */
+	public Response<Boolean> pexpire(Object key, long milliseconds) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).pexpire(rawKey, milliseconds);
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#pexpireAt(Object, long)}
+	 * @param key
+	 * @param millisecondsTimestamp
+	 * @return
+	 */
+	public Response<Boolean> pexpireAt(Object key, long millisecondsTimestamp) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).pexpireAt(rawKey, millisecondsTimestamp);
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#ttl(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Long> ttl(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).ttl(rawKey);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#pttl(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Long> pttl(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).pttl(rawKey);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#persist(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Boolean> persist(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).persist(rawKey);
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/********** string命令 **********/
+	
+	/**
+	 * 同{@link RedisUtils#set(Object, Object)}
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	public Response<Boolean> set(Object key, Object value) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).set(rawKey, RedisUtils.toValueBytes(value));
+		return response(STATUS);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#set(Object, Object, String)}
+	 * @param key
+	 * @param value
+	 * @param nxxx
+	 * @return
+	 */
+	public Response<Boolean> set(Object key, Object value, String nxxx) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).set(rawKey, RedisUtils.toValueBytes(value), RedisUtils.toBytes(nxxx));
+		return response(STATUS);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#set(Object, Object, String, String, long)}
+	 * @param key
+	 * @param value
+	 * @param nxxx
+	 * @param expx
+	 * @param time
+	 * @return
+	 */
+	public Response<Boolean> set(Object key, Object value, String nxxx, String expx, long time) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).set(rawKey, RedisUtils.toValueBytes(value), RedisUtils.toBytes(nxxx), RedisUtils.toBytes(expx), time);
+		return response(STATUS);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#setex(Object, int, Object)}
+	 * @param key
+	 * @param seconds
+	 * @param value
+	 * @return
+	 */
+	public Response<Boolean> setex(Object key, int seconds, Object value) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).setex(rawKey, seconds, RedisUtils.toValueBytes(value));
+		return response(STATUS);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#psetex(Object, long, Object)}
+	 * @param key
+	 * @param milliseconds
+	 * @param value
+	 * @return
+	 */
+	public Response<Boolean> psetex(Object key, long milliseconds, Object value) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).psetex(rawKey, milliseconds, RedisUtils.toValueBytes(value));
+		return response(STATUS);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#getBytes(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<byte[]> getBytes(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).get(rawKey);
+		return response(VALUE);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#get(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<String> get(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).get(rawKey);
+		return response(STRING);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#incr(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Long> incr(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).incr(rawKey);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#incrBy(Object, long)}
+	 * @param key
+	 * @param integer
+	 * @return
+	 */
+	public Response<Long> incrBy(Object key, long integer) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).incrBy(rawKey, integer);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#incrByFloat(Object, double)}
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	public Response<Double> incrByFloat(Object key, double value) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).incrByFloat(rawKey, value);
+		return response(BuilderFactory.DOUBLE);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#decrBy(Object, long)}
+	 * @param key
+	 * @param integer
+	 * @return
+	 */
+	public Response<Long> decrBy(Object key, long integer) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).decrBy(rawKey, integer);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#setbit(Object, long, boolean)}
+	 * @param key
+	 * @param offset
+	 * @param value
+	 * @return
+	 */
+	public Response<Boolean> setbit(Object key, long offset, boolean value) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).setbit(rawKey, offset, value);
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#getbit(Object, long)}
+	 * @param key
+	 * @param offset
+	 * @return
+	 */
+	public Response<Boolean> getbit(Object key, long offset) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).getbit(rawKey, offset);
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#bitcount(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Long> bitcount(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).bitcount(rawKey);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/********** hash命令 **********/
+	
+	/**
+	 * 同{@link RedisUtils#hset(Object, Object, Object)}
+	 * @param key
+	 * @param field
+	 * @param value
+	 * @return
+	 */
+	public Response<Boolean> hset(Object key, Object field, Object value) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).hset(rawKey, RedisUtils.toBytes(field), RedisUtils.toValueBytes(value));
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hsetnx(Object, Object, Object)}
+	 * @param key
+	 * @param field
+	 * @param value
+	 * @return
+	 */
+	public Response<Boolean> hsetnx(Object key, Object field, Object value) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).hsetnx(rawKey, RedisUtils.toBytes(field), RedisUtils.toValueBytes(value));
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hgetBytes(Object, Object)}
+	 * @param key
+	 * @param field
+	 * @return
+	 */
+	public Response<byte[]> hgetBytes(Object key, Object field) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).hget(rawKey, RedisUtils.toBytes(field));
+		return response(VALUE);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hget(Object, Object)}
+	 * @param key
+	 * @param field
+	 * @return
+	 */
+	public Response<String> hget(Object key, Object field) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).hget(rawKey, RedisUtils.toBytes(field));
+		return response(STRING);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hmset(Object, Map)}
+	 * @param key
+	 * @param hash
+	 * @return
+	 */
+	public Response<Boolean> hmset(Object key, Map<?, ?> hash) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).hmset(rawKey, RedisUtils.toValueBytes(hash));
+		return response(STATUS);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hmget(Object, Object...)}
+	 * @param key
+	 * @param fields
+	 * @return
+	 */
+	public Response<List<String>> hmget(Object key, Object... fields) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).hmget(rawKey, RedisUtils.toBytes(fields));
+		return response(STRING_LIST);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hincrBy(Object, Object, long)}
+	 * @param key
+	 * @param field
+	 * @param value
+	 * @return
+	 */
+	public Response<Long> hincrBy(Object key, Object field, long value) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).hincrBy(rawKey, RedisUtils.toBytes(field), value);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hexists(Object, Object)}
+	 * @param key
+	 * @param field
+	 * @return
+	 */
+	public Response<Boolean> hexists(Object key, Object field) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).hexists(rawKey, RedisUtils.toBytes(field));
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hdel(Object, Object...)}
+	 * @param key
+	 * @param fields
+	 * @return
+	 */
+	public Response<Long> hdel(Object key, Object... fields) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		write(rawKey).hdel(rawKey, RedisUtils.toBytes(fields));
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hgetAllBytes(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Map<byte[], byte[]>> hgetAllBytes(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).hgetAll(rawKey);
+		return response(VALUE_MAP);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#hgetAll(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Map<String, String>> hgetAll(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).hgetAll(rawKey);
+		return response(STRING_MAP);
+	}
+	
+	/********** list命令 **********/
+	
+	/**
+	 * 同{@link RedisUtils#rpush(Object, Object...)}
+	 * @param key
+	 * @param values
+	 * @return
+	 */
+	public Response<Long> rpush(Object key, Object... values) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).rpush(rawKey, RedisUtils.toValueBytes(values));
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#lpush(Object, Object...)}
+	 * @param key
+	 * @param values
+	 * @return
+	 */
+	public Response<Long> lpush(Object key, Object... values) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).lpush(rawKey, RedisUtils.toValueBytes(values));
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#llen(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Long> llen(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).llen(rawKey);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#lrangeBytes(Object, long, long)}
+	 * @param key
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public Response<List<byte[]>> lrangeBytes(Object key, long start, long end) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).lrange(rawKey, start, end);
+		return response(VALUE_LIST);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#lrange(Object, long, long)}
+	 * @param key
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public Response<List<String>> lrange(Object key, long start, long end) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).lrange(rawKey, start, end);
+		return response(STRING_LIST);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#ltrim(Object, long, long)}
+	 * @param key
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public Response<Boolean> ltrim(Object key, long start, long end) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).ltrim(rawKey, start, end);
+		return response(STATUS);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#lrem(Object, long, Object)}
+	 * @param key
+	 * @param count
+	 * @param value
+	 * @return
+	 */
+	public Response<Long> lrem(Object key, long count, Object value) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).lrem(rawKey, count, RedisUtils.toValueBytes(value));
+		return response(BuilderFactory.LONG);
+	}
+	
+	/********** set命令 **********/
+	
+	/**
+	 * 同{@link RedisUtils#sadd(Object, Object...)}
+	 * @param key
+	 * @param members
+	 * @return
+	 */
+	public Response<Long> sadd(Object key, Object... members) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).sadd(rawKey, RedisUtils.toBytes(members));
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#srem(Object, Object...)}
+	 * @param key
+	 * @param members
+	 * @return
+	 */
+	public Response<Long> srem(Object key, Object... members) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).srem(rawKey, RedisUtils.toBytes(members));
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#scard(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Long> scard(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).scard(rawKey);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#sismember(Object, Object)}
+	 * @param key
+	 * @param member
+	 * @return
+	 */
+	public Response<Boolean> sismember(Object key, Object member) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).sismember(rawKey, RedisUtils.toBytes(member));
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#smembers(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Set<String>> smembers(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).smembers(rawKey);
+		return response(STRING_SET);
+	}
+	
+	/********** zset命令 **********/
+	
+	/**
+	 * 同{@link RedisUtils#zadd(Object, double, Object)}
+	 * @param key
+	 * @param score
+	 * @param member
+	 * @return
+	 */
+	public Response<Boolean> zadd(Object key, double score, Object member) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).zadd(rawKey, score, RedisUtils.toBytes(member));
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zadd(Object, Map)}
+	 * @param key
+	 * @param scoreMembers
+	 * @return
+	 */
+	public Response<Long> zadd(Object key, Map<?, Double> scoreMembers) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).zaddBinary(rawKey, RedisUtils.toBytesZ(scoreMembers));
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zincrby(Object, double, Object)}
+	 * @param key
+	 * @param score
+	 * @param member
+	 * @return
+	 */
+	public Response<Double> zincrby(Object key, double score, Object member) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).zincrby(rawKey, score, RedisUtils.toBytes(member));
+		return response(BuilderFactory.DOUBLE);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zrem(Object, Object...)}
+	 * @param key
+	 * @param members
+	 * @return
+	 */
+	public Response<Long> zrem(Object key, Object... members) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).zrem(rawKey, RedisUtils.toBytes(members));
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zscore(Object, Object)}
+	 * @param key
+	 * @param member
+	 * @return
+	 */
+	public Response<Double> zscore(Object key, Object member) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).zscore(rawKey, RedisUtils.toBytes(member));
+		return response(BuilderFactory.DOUBLE);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zcard(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Long> zcard(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).zcard(rawKey);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#zrangeByScore(Object, double, double)}
+	 * @param key
+	 * @param min
+	 * @param max
+	 * @return
+	 */
+	public Response<Set<String>> zrangeByScore(Object key, double min, double max) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).zrangeByScore(rawKey, min, max);
+		return response(STRING_SET);
+	}
+	
+	/********** HyperLogLog命令 **********/
+	
+	/**
+	 * 同{@link RedisUtils#pfadd(Object, Object...)}
+	 * @param key
+	 * @param elements
+	 * @return
+	 */
+	public Response<Boolean> pfadd(Object key, Object... elements) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).pfadd(rawKey, RedisUtils.toBytes(elements));
+		return response(BuilderFactory.BOOLEAN);
+	}
+	
+	/**
+	 * 同{@link RedisUtils#pfcount(Object)}
+	 * @param key
+	 * @return
+	 */
+	public Response<Long> pfcount(Object key) {
+		byte[] rawKey = RedisUtils.toBytes(key);
+		client(rawKey).pfcount(rawKey);
+		return response(BuilderFactory.LONG);
+	}
+	
+	/********** pub/sub命令 **********/
+	
+	/**
+	 * 同{@link RedisUtils#publish(String, Object)}
+	 * 与订阅使用同一个节点，不按频道名称路由
+	 * @param channel
+	 * @param message
+	 * @return
+	 */
+	public Response<Long> publish(String channel, Object message) {
+		client(cluster == null ? null : cluster.getAnyNodePool()).publish(RedisUtils.toBytes(channel), RedisUtils.toBytes(message));
+		return response(BuilderFactory.LONG);
+	}
+	
+}
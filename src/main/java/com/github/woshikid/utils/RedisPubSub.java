@@ -0,0 +1,294 @@
+package com.github.woshikid.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * Redis订阅
+ * 所有频道与模式共用一个订阅连接，在第一次订阅时建立，该连接一直占用连接池中的一个连接
+ * 收到的消息按频道分配到固定的工作线程执行，同一频道的消息按接收顺序处理
+ * 工作线程的队列满时订阅线程等待，消息在redis服务端的输出缓冲中积压
+ * 连接中断后自动重连并重新订阅所有频道与模式，中断期间发布的消息会丢失
+ * 集群模式下消息会广播到所有节点，订阅任意节点即可
+ * 通过{@link RedisUtils#pubSub()}得到
+ * @author kid
+ *
+ */
+public class RedisPubSub {
+
+	private final static Logger logger = LoggerFactory.getLogger(RedisPubSub.class);
+	
+	/**
+	 * 订阅连接始终订阅的频道
+	 * 取消所有业务订阅后连接仍处于订阅状态，避免订阅中的连接被归还连接池
+	 */
+	private static final byte[] CONTROL = "__redis_pubsub__".getBytes(StandardCharsets.UTF_8);
+	
+	private final Map<String, List<BiConsumer<String, byte[]>>> channels = new ConcurrentHashMap<>();
+	
+	private final Map<String, List<BiConsumer<String, byte[]>>> patterns = new ConcurrentHashMap<>();
+	
+	private final ThreadPoolExecutor[] workers;
+	
+	private final BinaryJedisPubSub listener = new BinaryJedisPubSub() {
+		public void onSubscribe(byte[] channel, int subscribedChannels) {
+			onConnected();
+		}
+		
+		public void onPSubscribe(byte[] pattern, int subscribedChannels) {
+			onConnected();
+		}
+		
+		public void onMessage(byte[] channel, byte[] message) {
+			String name = RedisUtils.toString(channel);
+			dispatch(name, channels.get(name), message);
+		}
+		
+		public void onPMessage(byte[] pattern, byte[] channel, byte[] message) {
+			dispatch(RedisUtils.toString(channel), patterns.get(RedisUtils.toString(pattern)), message);
+		}
+	};
+	
+	private Thread subscriber = null;
+	
+	/**
+	 * 订阅连接已建立，可以在连接上增加订阅
+	 */
+	private boolean connected = false;
+	
+	private volatile boolean closed = false;
+	
+	/**
+	 * @param workers 处理消息的线程数
+	 * @param queueSize 每个线程最多等待处理的消息数
+	 */
+	RedisPubSub(int workers, int queueSize) {
+		if (workers <= 0) throw new IllegalArgumentException("workers must be positive:" + workers);
+		
+		this.workers = new ThreadPoolExecutor[workers];
+		for (int i = 0; i < workers; i++) {
+			String name = "redis-pubsub-worker-" + (i + 1);
+			this.workers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			}, (runnable, executor) -> {
+				//已关闭时丢弃，关闭后的工作线程不再执行新的消息
+				if (executor.isShutdown()) return;
+				
+				//队列满时等待，以保持消息顺序
+				try {
+					executor.getQueue().put(runnable);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * 订阅频道
+	 * @param channel
+	 * @param handler 参数为频道与消息
+	 */
+	public void subscribe(String channel, BiConsumer<String, String> handler) {
+		subscribeBytes(channel, (name, message) -> handler.accept(name, RedisUtils.toString(message)));
+	}
+	
+	/**
+	 * 订阅频道，消息为字节数组
+	 * @param channel
+	 * @param handler 参数为频道与消息
+	 */
+	public void subscribeBytes(String channel, BiConsumer<String, byte[]> handler) {
+		add(channels, channel, handler, false);
+	}
+	
+	/**
+	 * 按模式订阅频道
+	 * @param pattern 支持*?[ae][a-e][^e]转义为\
+	 * @param handler 参数为实际的频道与消息
+	 */
+	public void psubscribe(String pattern, BiConsumer<String, String> handler) {
+		psubscribeBytes(pattern, (name, message) -> handler.accept(name, RedisUtils.toString(message)));
+	}
+	
+	/**
+	 * 按模式订阅频道，消息为字节数组
+	 * @param pattern 支持*?[ae][a-e][^e]转义为\
+	 * @param handler 参数为实际的频道与消息
+	 */
+	public void psubscribeBytes(String pattern, BiConsumer<String, byte[]> handler) {
+		add(patterns, pattern, handler, true);
+	}
+	
+	/**
+	 * 取消频道的所有订阅
+	 * @param channel
+	 */
+	public synchronized void unsubscribe(String channel) {
+		if (channels.remove(channel) != null && connected) send(() -> listener.unsubscribe(RedisUtils.toBytes(channel)));
+	}
+	
+	/**
+	 * 取消模式的所有订阅
+	 * @param pattern
+	 */
+	public synchronized void punsubscribe(String pattern) {
+		if (patterns.remove(pattern) != null && connected) send(() -> listener.punsubscribe(RedisUtils.toBytes(pattern)));
+	}
+	
+	/**
+	 * 当前订阅的频道
+	 * @return
+	 */
+	public List<String> getChannels() {
+		return new ArrayList<>(channels.keySet());
+	}
+	
+	/**
+	 * 当前订阅的模式
+	 * @return
+	 */
+	public List<String> getPatterns() {
+		return new ArrayList<>(patterns.keySet());
+	}
+	
+	/**
+	 * 取消所有订阅并停止工作线程
+	 */
+	public synchronized void close() {
+		closed = true;
+		channels.clear();
+		patterns.clear();
+		
+		if (connected) {
+			send(() -> {
+				listener.unsubscribe();
+				listener.punsubscribe();
+			});
+		}
+		if (subscriber != null) subscriber.interrupt();
+		
+		for (ThreadPoolExecutor worker : workers) {
+			worker.shutdown();
+		}
+	}
+	
+	private synchronized void add(Map<String, List<BiConsumer<String, byte[]>>> registry, String name, BiConsumer<String, byte[]> handler, boolean pattern) {
+		if (closed) throw new IllegalStateException("redis pubsub closed");
+		
+		List<BiConsumer<String, byte[]>> handlers = registry.get(name);
+		if (handlers == null) {
+			handlers = new CopyOnWriteArrayList<>();
+			registry.put(name, handlers);
+			
+			if (connected) {
+				if (pattern) {
+					send(() -> listener.psubscribe(RedisUtils.toBytes(name)));
+				} else {
+					send(() -> listener.subscribe(RedisUtils.toBytes(name)));
+				}
+			}
+		}
+		handlers.add(handler);
+		
+		if (subscriber == null) {
+			subscriber = new Thread(this::run, "redis-pubsub-subscriber");
+			subscriber.setDaemon(true);
+			subscriber.start();
+		}
+	}
+	
+	/**
+	 * 连接建立后订阅所有频道与模式，重复订阅不影响结果
+	 */
+	private synchronized void onConnected() {
+		if (connected) return;
+		connected = true;
+		
+		if (closed) {
+			listener.unsubscribe();
+			listener.punsubscribe();
+			return;
+		}
+		
+		if (!channels.isEmpty()) listener.subscribe(RedisUtils.toBytes(channels.keySet().toArray()));
+		if (!patterns.isEmpty()) listener.psubscribe(RedisUtils.toBytes(patterns.keySet().toArray()));
+	}
+	
+	/**
+	 * 在订阅连接上发送订阅命令
+	 * 连接刚刚断开时忽略，重新连接后在onConnected中按当前的频道与模式重新订阅
+	 * @param command
+	 */
+	private void send(Runnable command) {
+		try {
+			command.run();
+		} catch (JedisConnectionException e) {
+			logger.warn("redis pubsub connection lost, resubscribe after reconnect", e);
+		}
+	}
+	
+	/**
+	 * 按频道分配到工作线程
+	 * @param channel
+	 * @param handlers
+	 * @param message
+	 */
+	private void dispatch(String channel, List<BiConsumer<String, byte[]>> handlers, byte[] message) {
+		if (handlers == null) return;
+		
+		workers[(channel.hashCode() & 0x7FFFFFFF) % workers.length].execute(() -> {
+			for (BiConsumer<String, byte[]> handler : handlers) {
+				try {
+					handler.accept(channel, message);
+				} catch (Exception e) {
+					logger.warn("redis pubsub handler failed on channel " + channel, e);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * 持续订阅，连接中断后自动重新订阅
+	 */
+	private void run() {
+		while (!closed) {
+			try {
+				RedisUtils.execute(null, jedis -> {
+					jedis.subscribe(listener, CONTROL);
+					return null;
+				});
+			} catch (Exception e) {
+				if (!closed) logger.warn("redis pubsub subscription lost", e);
+			}
+			
+			synchronized (this) {
+				connected = false;
+			}
+			if (closed) return;
+			
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+	
+}
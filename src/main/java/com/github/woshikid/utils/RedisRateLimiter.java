@@ -0,0 +1,216 @@
+package com.github.woshikid.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于令牌桶的分布式限流
+ * 令牌桶保存在hash类型的name:key中，以Lua脚本原子地补充与扣除令牌，所有进程共享同一个速率
+ * 开启本地租约时，一次从redis取出最多leaseSize个令牌，之后的请求在本地扣除，用完或租约到期后再取
+ * 租约到期时未用完的令牌作废，因此租约越大往返越少，但各进程之间的分配越不均匀
+ * 到期的本地租约每leaseMillis清理一次，key很多时(如按用户或IP限流)内存不会持续增长
+ * 补充令牌使用客户端时间，各个节点的时间需要同步
+ * @author kid
+ *
+ */
+public class RedisRateLimiter {
+
+	/**
+	 * 按时间补充令牌后取出令牌，不足min个时不取出
+	 * KEYS[1]令牌桶
+	 * ARGV[1]每秒补充的令牌数，ARGV[2]容量，ARGV[3]当前时间(毫秒)，ARGV[4]最少取出的个数，ARGV[5]最多取出的个数
+	 */
+	private static final RedisScript ACQUIRE = new RedisScript(
+			"local rate = tonumber(ARGV[1])\n" +
+			"local capacity = tonumber(ARGV[2])\n" +
+			"local now = tonumber(ARGV[3])\n" +
+			"local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n" +
+			"local tokens = tonumber(bucket[1])\n" +
+			"local ts = tonumber(bucket[2])\n" +
+			"if tokens == nil or ts == nil then\n" +
+			"  tokens = capacity\n" +
+			"  ts = now\n" +
+			"end\n" +
+			"if now > ts then\n" +
+			"  tokens = math.min(capacity, tokens + (now - ts) * rate / 1000)\n" +
+			"  ts = now\n" +
+			"end\n" +
+			"local granted = math.min(math.floor(tokens), tonumber(ARGV[5]))\n" +
+			"if granted < tonumber(ARGV[4]) then granted = 0 end\n" +
+			"redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens - granted), 'ts', tostring(ts))\n" +
+			"redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)\n" +
+			"return granted");
+	
+	/**
+	 * 本地租约
+	 */
+	private static class Lease {
+		
+		final AtomicLong permits = new AtomicLong();
+		
+		volatile long expireAt = 0;
+	}
+	
+	private final String name;
+	
+	private final double permitsPerSecond;
+	
+	private final long capacity;
+	
+	private final int leaseSize;
+	
+	private final long leaseMillis;
+	
+	private final Map<ByteBuffer, Lease> leases = new ConcurrentHashMap<>();
+	
+	private final AtomicLong nextSweep = new AtomicLong();
+	
+	/**
+	 * 每次请求都访问redis
+	 * @param name
+	 * @param permitsPerSecond 每秒补充的令牌数
+	 * @param capacity 令牌桶的容量，即允许的突发请求数
+	 */
+	public RedisRateLimiter(String name, double permitsPerSecond, long capacity) {
+		this(name, permitsPerSecond, capacity, 1, 0);
+	}
+	
+	/**
+	 * @param name
+	 * @param permitsPerSecond 每秒补充的令牌数
+	 * @param capacity 令牌桶的容量，即允许的突发请求数
+	 * @param leaseSize 每次从redis最多取出的令牌数，为1时不使用本地租约
+	 * @param leaseMillis 本地租约的有效时间(毫秒)
+	 */
+	public RedisRateLimiter(String name, double permitsPerSecond, long capacity, int leaseSize, long leaseMillis) {
+		if (permitsPerSecond <= 0) throw new IllegalArgumentException("permitsPerSecond must be positive:" + permitsPerSecond);
+		if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive:" + capacity);
+		if (leaseSize <= 0) throw new IllegalArgumentException("leaseSize must be positive:" + leaseSize);
+		if (leaseSize > 1 && leaseMillis <= 0) throw new IllegalArgumentException("leaseMillis must be positive:" + leaseMillis);
+		
+		this.name = name;
+		this.permitsPerSecond = permitsPerSecond;
+		this.capacity = capacity;
+		this.leaseSize = leaseSize;
+		this.leaseMillis = leaseMillis;
+	}
+	
+	/**
+	 * 尝试取得一个令牌，不等待
+	 * 本地租约中有令牌时不访问redis
+	 * @param key 限流的对象
+	 * @return
+	 */
+	public boolean tryAcquire(Object key) {
+		if (leaseSize == 1) return acquire(key, 1, 1) == 1;
+		
+		sweep();
+		
+		ByteBuffer id = ByteBuffer.wrap(RedisUtils.toBytes(key));
+		Lease lease = leases.computeIfAbsent(id, k -> new Lease());
+		if (takeLocal(lease)) return true;
+		
+		//同一个key同时只有一个线程从redis取令牌，其他线程等待后再从本地取
+		synchronized (lease) {
+			if (takeLocal(lease)) return true;
+			
+			long granted = 0;
+			try {
+				granted = acquire(key, 1, leaseSize);
+			} finally {
+				//没有可用的令牌，不保留租约
+				if (granted == 0) leases.remove(id, lease);
+			}
+			if (granted == 0) return false;
+			
+			lease.permits.set(granted - 1);
+			lease.expireAt = System.currentTimeMillis() + leaseMillis;
+			return true;
+		}
+	}
+	
+	/**
+	 * 尝试一次取得多个令牌，不足时一个也不取，不使用本地租约
+	 * @param key 限流的对象
+	 * @param permits
+	 * @return
+	 */
+	public boolean tryAcquire(Object key, int permits) {
+		if (permits <= 0) throw new IllegalArgumentException("permits must be positive:" + permits);
+		
+		return acquire(key, permits, permits) == permits;
+	}
+	
+	/**
+	 * 删除key的令牌桶与本地租约，令牌桶恢复为满
+	 * @param key
+	 */
+	public void reset(Object key) {
+		leases.remove(ByteBuffer.wrap(RedisUtils.toBytes(key)));
+		RedisUtils.del(toKey(key));
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public double getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+	
+	public long getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * 删除已到期的本地租约，每leaseMillis最多执行一次
+	 */
+	private void sweep() {
+		long now = System.currentTimeMillis();
+		long next = nextSweep.get();
+		if (now < next || !nextSweep.compareAndSet(next, now + leaseMillis)) return;
+		
+		leases.entrySet().removeIf(entry -> {
+			long expireAt = entry.getValue().expireAt;
+			return expireAt != 0 && now >= expireAt;
+		});
+	}
+	
+	/**
+	 * 从本地租约中扣除一个令牌
+	 * @param lease
+	 * @return
+	 */
+	private static boolean takeLocal(Lease lease) {
+		if (System.currentTimeMillis() >= lease.expireAt) return false;
+		
+		AtomicLong permits = lease.permits;
+		for (long current = permits.get(); current > 0; current = permits.get()) {
+			if (permits.compareAndSet(current, current - 1)) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * 从redis取出令牌
+	 * @param key
+	 * @param min 最少取出的个数
+	 * @param max 最多取出的个数
+	 * @return 取出的个数，不足min个时为0
+	 */
+	private long acquire(Object key, long min, long max) {
+		return ACQUIRE.evalLong(new Object[] {toKey(key)}, permitsPerSecond, capacity, System.currentTimeMillis(), min, max);
+	}
+	
+	private byte[] toKey(Object key) {
+		byte[] prefix = RedisUtils.toBytes(name + ":");
+		byte[] rawKey = RedisUtils.toBytes(key);
+		byte[] fullKey = new byte[prefix.length + rawKey.length];
+		System.arraycopy(prefix, 0, fullKey, 0, prefix.length);
+		System.arraycopy(rawKey, 0, fullKey, prefix.length, rawKey.length);
+		return fullKey;
+	}
+	
+}
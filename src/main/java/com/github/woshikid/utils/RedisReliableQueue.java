@@ -0,0 +1,388 @@
+package com.github.woshikid.utils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Pipeline;
+
+/**
+ * 基于list的可靠队列
+ * 消息从队列尾部取出的同时放入消费者自己的处理中list，处理完成ack之后才从处理中list删除，先进先出
+ * 每个消费者定期在消费者zset中更新心跳，心跳超过visibilityMillis没有更新的消费者视为已停止
+ * 已停止的消费者处理中的消息由其他消费者放回队列，因此消息至少处理一次，有可能重复处理
+ * 队列的key为{name}，消费者zset为{name}:consumers，处理中list为{name}:processing:消费者标识，集群模式下在同一个slot中
+ * @author kid
+ *
+ */
+public class RedisReliableQueue {
+
+	private final static Logger logger = LoggerFactory.getLogger(RedisReliableQueue.class);
+	
+	/**
+	 * 将已停止的消费者处理中的消息放回队列尾部，按原顺序优先取出
+	 * KEYS[1]处理中，KEYS[2]队列，KEYS[3]消费者
+	 * ARGV[1]消费者标识，ARGV[2]心跳的过期时间
+	 */
+	private static final RedisScript REQUEUE = new RedisScript(
+			"local heartbeat = redis.call('ZSCORE', KEYS[3], ARGV[1])\n" +
+			"if heartbeat and tonumber(heartbeat) > tonumber(ARGV[2]) then return 0 end\n" +
+			"local count = 0\n" +
+			"local item = redis.call('LPOP', KEYS[1])\n" +
+			"while item do\n" +
+			"  redis.call('RPUSH', KEYS[2], item)\n" +
+			"  count = count + 1\n" +
+			"  item = redis.call('LPOP', KEYS[1])\n" +
+			"end\n" +
+			"redis.call('ZREM', KEYS[3], ARGV[1])\n" +
+			"return count");
+	
+	/**
+	 * 将处理失败的消息从处理中list放回队列头部，排在已有消息之后
+	 * KEYS[1]处理中，KEYS[2]队列
+	 * ARGV[1]消息
+	 */
+	private static final RedisScript RETURN = new RedisScript(
+			"if redis.call('LREM', KEYS[1], -1, ARGV[1]) > 0 then redis.call('LPUSH', KEYS[2], ARGV[1]) end\n" +
+			"return 0");
+	
+	private final String key;
+	
+	private final String consumersKey;
+	
+	private final String consumerId;
+	
+	private final String processingKey;
+	
+	private final long visibilityMillis;
+	
+	/**
+	 * 使用随机的消费者标识
+	 * @param name
+	 * @param visibilityMillis 消费者心跳的超时时间(毫秒)
+	 */
+	public RedisReliableQueue(String name, long visibilityMillis) {
+		this(name, IDUtils.uuid(), visibilityMillis);
+	}
+	
+	/**
+	 * @param name
+	 * @param consumerId 消费者标识，同一时间只能有一个进程使用
+	 * @param visibilityMillis 消费者心跳的超时时间(毫秒)
+	 */
+	public RedisReliableQueue(String name, String consumerId, long visibilityMillis) {
+		if (visibilityMillis <= 0) throw new IllegalArgumentException("visibilityMillis must be positive:" + visibilityMillis);
+		
+		this.key = "{" + name + "}";
+		this.consumersKey = key + ":consumers";
+		this.consumerId = consumerId;
+		this.processingKey = key + ":processing:" + consumerId;
+		this.visibilityMillis = visibilityMillis;
+	}
+	
+	/**
+	 * 加入消息
+	 * @param items
+	 * @return 加入后队列的长度
+	 */
+	public long push(Object... items) {
+		return RedisUtils.lpush(key, items);
+	}
+	
+	/**
+	 * 取出一条消息，放入处理中list，处理完成后需要ack
+	 * @param timeout 队列为空时等待的时间(秒)，0表示永久等待
+	 * @return 超时返回null
+	 */
+	public byte[] takeBytes(int timeout) {
+		heartbeat();
+		return RedisUtils.fromValueBytes(takeRaw(timeout));
+	}
+	
+	/**
+	 * 取出一条消息，放入处理中list，处理完成后需要ack
+	 * @param timeout 队列为空时等待的时间(秒)，0表示永久等待
+	 * @return 超时返回null
+	 */
+	public String take(int timeout) {
+		return RedisUtils.toString(takeBytes(timeout));
+	}
+	
+	/**
+	 * 确认消息已处理完成，多条消息在一次管道中删除
+	 * @param items
+	 */
+	public void ack(Object... items) {
+		List<byte[]> rawItems = new ArrayList<>(items.length);
+		for (Object item : items) {
+			rawItems.add(RedisUtils.toValueBytes(item));
+		}
+		ackRaw(rawItems);
+	}
+	
+	/**
+	 * 更新本消费者的心跳
+	 */
+	public void heartbeat() {
+		RedisUtils.zadd(consumersKey, System.currentTimeMillis(), consumerId);
+	}
+	
+	/**
+	 * 将心跳超时的消费者处理中的消息放回队列
+	 * @return 放回的消息数
+	 */
+	public long requeue() {
+		long expired = System.currentTimeMillis() - visibilityMillis;
+		long count = 0;
+		for (String consumer : RedisUtils.zrangeByScore(consumersKey, Double.NEGATIVE_INFINITY, expired)) {
+			String processing = key + ":processing:" + consumer;
+			count += (Long)REQUEUE.eval(new Object[] {processing, key, consumersKey}, consumer, expired);
+		}
+		return count;
+	}
+	
+	/**
+	 * 队列中等待的消息数
+	 * @return
+	 */
+	public long size() {
+		return RedisUtils.llen(key);
+	}
+	
+	/**
+	 * 本消费者处理中的消息数
+	 * @return
+	 */
+	public long processingSize() {
+		return RedisUtils.llen(processingKey);
+	}
+	
+	public String getConsumerId() {
+		return consumerId;
+	}
+	
+	/**
+	 * 启动消费
+	 * 一个拉取线程阻塞等待消息，每次最多预取prefetch条放入本地缓冲，threads个线程处理
+	 * handler正常返回后批量ack，抛出异常时消息放回队列头部重新排队
+	 * 本消费者异常停止时处理中list中的消息在心跳超时后由其他消费者放回队列
+	 * 同时定期更新心跳，并将其他已停止的消费者的消息放回队列
+	 * @param threads 处理线程数
+	 * @param prefetch 本地最多缓冲的消息数，包括处理中的消息
+	 * @param handler
+	 * @return 关闭时停止拉取，已取出的消息处理完成并ack后停止，最后将处理中list中剩余的消息放回队列
+	 */
+	public Closeable consume(int threads, int prefetch, Consumer<byte[]> handler) {
+		if (threads <= 0) throw new IllegalArgumentException("threads must be positive:" + threads);
+		if (prefetch <= 0) throw new IllegalArgumentException("prefetch must be positive:" + prefetch);
+		
+		Semaphore permits = new Semaphore(prefetch);
+		BlockingQueue<byte[]> buffer = new LinkedBlockingQueue<>();
+		BlockingQueue<byte[]> acks = new LinkedBlockingQueue<>();
+		AtomicBoolean fetching = new AtomicBoolean(true);
+		CountDownLatch stopped = new CountDownLatch(threads + 1);
+		
+		AtomicInteger index = new AtomicInteger();
+		ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "redis-reliable-queue-" + index.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		//拉取
+		executor.execute(() -> {
+			try {
+				while (!executor.isShutdown()) {
+					try {
+						permits.acquire();
+						List<byte[]> items = fetch(permits.availablePermits() + 1);
+						if (items.size() > 1) permits.acquire(items.size() - 1);
+						if (items.isEmpty()) permits.release();
+						
+						//关闭后取出的消息不再处理，放回队列
+						if (executor.isShutdown()) {
+							returnRaw(items);
+							permits.release(items.size());
+							return;
+						}
+						buffer.addAll(items);
+					} catch (InterruptedException e) {
+						return;
+					} catch (Exception e) {
+						permits.release();
+						logger.warn("redis reliable queue fetch failed", e);
+						sleep(1000);
+					}
+				}
+			} finally {
+				fetching.set(false);
+				stopped.countDown();
+			}
+		});
+		
+		//处理，拉取停止并且缓冲为空后才停止
+		for (int i = 0; i < threads; i++) {
+			executor.execute(() -> {
+				try {
+					while (fetching.get() || !buffer.isEmpty()) {
+						byte[] item;
+						try {
+							item = buffer.poll(1, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							return;
+						}
+						if (item == null) continue;
+						
+						try {
+							handler.accept(RedisUtils.fromValueBytes(item));
+							acks.add(item);
+						} catch (Exception e) {
+							logger.warn("redis reliable queue handler failed", e);
+							returnRaw(Collections.singletonList(item));
+						} finally {
+							permits.release();
+						}
+					}
+				} finally {
+					stopped.countDown();
+				}
+			});
+		}
+		
+		//ack、心跳与放回，拉取与处理线程全部停止并且ack完成后停止
+		executor.execute(() -> {
+			long nextHeartbeat = 0;
+			while (stopped.getCount() > 0 || !acks.isEmpty()) {
+				try {
+					List<byte[]> batch = new ArrayList<>();
+					byte[] item = acks.poll(100, TimeUnit.MILLISECONDS);
+					if (item != null) {
+						batch.add(item);
+						acks.drainTo(batch);
+						ackRaw(batch);
+					}
+					
+					long now = System.currentTimeMillis();
+					if (now >= nextHeartbeat) {
+						heartbeat();
+						requeue();
+						nextHeartbeat = now + visibilityMillis / 3;
+					}
+				} catch (InterruptedException e) {
+					return;
+				} catch (Exception e) {
+					logger.warn("redis reliable queue ack failed", e);
+					sleep(1000);
+				}
+			}
+			
+			//管道部分失败时取出但未放入缓冲的消息仍在处理中list中，放回队列并注销本消费者
+			try {
+				REQUEUE.eval(new Object[] {processingKey, key, consumersKey}, consumerId, Long.MAX_VALUE);
+			} catch (Exception e) {
+				logger.warn("redis reliable queue requeue failed", e);
+			}
+		});
+		
+		return executor::shutdown;
+	}
+	
+	/**
+	 * 阻塞取出一条原始消息
+	 * @param timeout
+	 * @return
+	 */
+	private byte[] takeRaw(int timeout) {
+		return RedisUtils.execute("brpoplpush", new Object[] {key, processingKey}, jedis -> jedis.brpoplpush(RedisUtils.toBytes(key), RedisUtils.toBytes(processingKey), timeout));
+	}
+	
+	/**
+	 * 阻塞等待第一条消息，之后以管道非阻塞地预取，最多取出max条
+	 * @param max
+	 * @return 等待超时返回空
+	 */
+	private List<byte[]> fetch(int max) {
+		List<byte[]> items = new ArrayList<>(max);
+		byte[] first = takeRaw(1);
+		if (first == null) return items;
+		
+		items.add(first);
+		if (max == 1) return items;
+		
+		byte[] rawKey = RedisUtils.toBytes(key);
+		byte[] rawProcessingKey = RedisUtils.toBytes(processingKey);
+		List<Object> rest;
+		try {
+			rest = RedisUtils.execute("rpoplpush", new Object[] {key, processingKey}, jedis -> {
+				Pipeline pipeline = jedis.pipelined();
+				for (int i = 1; i < max; i++) {
+					pipeline.rpoplpush(rawKey, rawProcessingKey);
+				}
+				return pipeline.syncAndReturnAll();
+			});
+		} catch (Exception e) {
+			//第一条消息已在处理中list中，不能丢弃
+			logger.warn("redis reliable queue prefetch failed", e);
+			return items;
+		}
+		for (Object item : rest) {
+			if (item instanceof byte[]) items.add((byte[])item);
+		}
+		return items;
+	}
+	
+	/**
+	 * 将原始消息从处理中list放回队列
+	 * @param rawItems
+	 */
+	private void returnRaw(List<byte[]> rawItems) {
+		for (byte[] item : rawItems) {
+			try {
+				RETURN.eval(new Object[] {processingKey, key}, item);
+			} catch (Exception e) {
+				logger.warn("redis reliable queue return failed", e);
+			}
+		}
+	}
+	
+	/**
+	 * 以管道从处理中list删除原始消息
+	 * @param rawItems
+	 */
+	private void ackRaw(List<byte[]> rawItems) {
+		if (rawItems.isEmpty()) return;
+		
+		byte[] rawProcessingKey = RedisUtils.toBytes(processingKey);
+		RedisUtils.execute("lrem", new Object[] {processingKey}, jedis -> {
+			Pipeline pipeline = jedis.pipelined();
+			for (byte[] item : rawItems) {
+				pipeline.lrem(rawProcessingKey, -1, item);
+			}
+			pipeline.sync();
+			return null;
+		});
+	}
+	
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+}
@@ -0,0 +1,236 @@
+package com.github.woshikid.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * 从节点读取
+ * 哨兵模式下通过SENTINEL slaves发现从节点，单机模式下通过主节点的INFO replication发现从节点
+ * 定期重新发现，为每个在线的从节点维护一个连接池，只读命令随机分配到从节点执行
+ * 从节点连接失败时尝试其他从节点，replicaPreferred模式下所有从节点都不可用时回到主节点执行
+ * 从节点的数据有复制延迟，写入后立即读取可能读不到
+ * @author kid
+ *
+ */
+class RedisReplicas {
+
+	private final static Logger logger = LoggerFactory.getLogger(RedisReplicas.class);
+	
+	/**
+	 * 可以在从节点执行的命令
+	 * 游标迭代的命令不在从节点执行，因为每次可能分配到不同的从节点
+	 */
+	private static final Set<String> READ_COMMANDS = new HashSet<>(Arrays.asList(
+			"get", "mget", "getrange", "substr", "strlen", "getbit", "bitcount", "bitpos",
+			"exists", "type", "ttl", "pttl", "dump", "objectIdletime", "randomBinaryKey", "keys", "dbSize",
+			"hget", "hmget", "hgetAll", "hkeys", "hvals", "hlen", "hexists",
+			"lrange", "lindex", "llen",
+			"smembers", "sismember", "scard", "srandmember", "sdiff", "sinter", "sunion",
+			"zrange", "zrangeWithScores", "zrevrange", "zrevrangeWithScores",
+			"zrangeByScore", "zrangeByScoreWithScores", "zrevrangeByScore", "zrevrangeByScoreWithScores",
+			"zrangeByLex", "zrevrangeByLex", "zlexcount", "zcard", "zcount", "zscore", "zrank", "zrevrank",
+			"pfcount"));
+	
+	private final boolean fallback;
+	
+	private final String[] sentinels;
+	
+	private final String masterName;
+	
+	private final JedisPoolConfig poolConfig;
+	
+	private final int timeout;
+	
+	private final String password;
+	
+	private final int database;
+	
+	private final long refreshMillis;
+	
+	private final Map<HostAndPort, JedisPool> pools = new HashMap<>();
+	
+	private volatile List<JedisPool> replicas = Collections.emptyList();
+	
+	/**
+	 * @param readFrom replica或replicaPreferred
+	 * @param sentinels 哨兵地址，以逗号分隔，为null时从主节点发现
+	 * @param masterName
+	 * @param poolConfig
+	 * @param timeout
+	 * @param password
+	 * @param database
+	 * @param refreshMillis 重新发现从节点的间隔(毫秒)
+	 */
+	RedisReplicas(String readFrom, String sentinels, String masterName, JedisPoolConfig poolConfig, int timeout, String password, int database, long refreshMillis) {
+		if ("replica".equals(readFrom)) {
+			this.fallback = false;
+		} else if ("replicaPreferred".equals(readFrom)) {
+			this.fallback = true;
+		} else {
+			throw new IllegalArgumentException("unknown readFrom:" + readFrom);
+		}
+		if (refreshMillis <= 0) throw new IllegalArgumentException("refreshMillis must be positive:" + refreshMillis);
+		
+		this.sentinels = sentinels == null ? null : sentinels.split(",");
+		this.masterName = masterName;
+		this.poolConfig = poolConfig;
+		this.timeout = timeout;
+		this.password = password;
+		this.database = database;
+		this.refreshMillis = refreshMillis;
+	}
+	
+	/**
+	 * 立即发现一次从节点，并启动定期发现的线程
+	 */
+	void start() {
+		refresh();
+		
+		Thread thread = new Thread(() -> {
+			while (true) {
+				try {
+					Thread.sleep(refreshMillis);
+				} catch (InterruptedException e) {
+					return;
+				}
+				refresh();
+			}
+		}, "redis-replica-discovery");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * 是否为可以在从节点执行的命令
+	 * @param name
+	 * @return
+	 */
+	static boolean isReadCommand(String name) {
+		return name != null && READ_COMMANDS.contains(name);
+	}
+	
+	/**
+	 * 在随机的从节点上执行命令，连接失败时依次尝试其他从节点
+	 * @param command
+	 * @param master 所有从节点都不可用时在主节点上执行
+	 * @return
+	 */
+	<T> T execute(Function<Jedis, T> command, Function<Function<Jedis, T>, T> master) {
+		List<JedisPool> current = replicas;
+		JedisConnectionException error = null;
+		
+		int size = current.size();
+		int start = size <= 1 ? 0 : ThreadLocalRandom.current().nextInt(size);
+		for (int i = 0; i < size; i++) {
+			try (Jedis jedis = current.get((start + i) % size).getResource()) {
+				return command.apply(jedis);
+			} catch (JedisConnectionException e) {
+				error = e;
+			}
+		}
+		
+		if (fallback) return master.apply(command);
+		if (error != null) throw error;
+		throw new JedisConnectionException("no redis replica available");
+	}
+	
+	/**
+	 * 重新发现从节点，新增的节点建立连接池，下线的节点关闭连接池
+	 */
+	private synchronized void refresh() {
+		Set<HostAndPort> addresses;
+		try {
+			addresses = sentinels != null ? discoverFromSentinels() : discoverFromMaster();
+		} catch (Exception e) {
+			logger.warn("redis replica discovery failed", e);
+			return;
+		}
+		
+		List<JedisPool> removed = new ArrayList<>();
+		pools.entrySet().removeIf(entry -> {
+			if (addresses.contains(entry.getKey())) return false;
+			
+			logger.info("redis replica removed:{}", entry.getKey());
+			removed.add(entry.getValue());
+			return true;
+		});
+		for (HostAndPort address : addresses) {
+			if (pools.containsKey(address)) continue;
+			
+			logger.info("redis replica added:{}", address);
+			pools.put(address, new JedisPool(poolConfig, address.getHost(), address.getPort(), timeout, password, database));
+		}
+		
+		replicas = Collections.unmodifiableList(new ArrayList<>(pools.values()));
+		for (JedisPool pool : removed) {
+			pool.close();
+		}
+	}
+	
+	/**
+	 * 从任意一个可用的哨兵取得主观与客观都在线、并与主节点连接正常的从节点
+	 * @return
+	 */
+	private Set<HostAndPort> discoverFromSentinels() {
+		JedisConnectionException error = null;
+		for (String sentinel : sentinels) {
+			HostAndPort address = HostAndPort.parseString(sentinel);
+			try (Jedis jedis = new Jedis(address.getHost(), address.getPort(), timeout)) {
+				Set<HostAndPort> addresses = new HashSet<>();
+				for (Map<String, String> slave : jedis.sentinelSlaves(masterName)) {
+					String flags = slave.get("flags");
+					if (flags == null || flags.contains("s_down") || flags.contains("o_down") || flags.contains("disconnected")) continue;
+					if (!"ok".equals(slave.get("master-link-status"))) continue;
+					
+					addresses.add(new HostAndPort(slave.get("ip"), Integer.parseInt(slave.get("port"))));
+				}
+				return addresses;
+			} catch (JedisConnectionException e) {
+				error = e;
+			}
+		}
+		throw error;
+	}
+	
+	/**
+	 * 从主节点的INFO replication取得在线的从节点
+	 * 格式为slave0:ip=127.0.0.1,port=6380,state=online,offset=1,lag=0
+	 * @return
+	 */
+	private Set<HostAndPort> discoverFromMaster() {
+		String info = RedisUtils.execute(null, jedis -> jedis.info("replication"));
+		
+		Set<HostAndPort> addresses = new HashSet<>();
+		for (String line : info.split("\r?\n")) {
+			if (!line.startsWith("slave") || line.indexOf(':') < 0) continue;
+			
+			Map<String, String> fields = new HashMap<>();
+			for (String field : line.substring(line.indexOf(':') + 1).split(",")) {
+				int index = field.indexOf('=');
+				if (index > 0) fields.put(field.substring(0, index), field.substring(index + 1));
+			}
+			if (!"online".equals(fields.get("state")) || fields.get("ip") == null || fields.get("port") == null) continue;
+			
+			addresses.add(new HostAndPort(fields.get("ip"), Integer.parseInt(fields.get("port"))));
+		}
+		return addresses;
+	}
+	
+}
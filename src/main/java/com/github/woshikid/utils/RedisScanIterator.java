@@ -0,0 +1,184 @@
+package com.github.woshikid.utils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+/**
+ * 自动翻页的SCAN迭代器
+ * 只有一个迭代来源时在调用线程中逐页读取
+ * 有多个迭代来源时(集群的各个主节点)，每个来源由一个线程并行读取，放入有界队列中等待消费
+ * 提前结束迭代时需要调用close，以停止后台线程
+ * @author kid
+ *
+ */
+class RedisScanIterator<T> implements Iterator<T>, Closeable {
+
+	/**
+	 * 某个来源迭代结束的标记
+	 */
+	private static final Object END = new Object();
+	
+	private final Function<byte[], ScanResult<T>> scanner;
+	
+	private byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+	
+	private final BlockingQueue<Object> queue;
+	
+	private final List<Future<?>> producers;
+	
+	/**
+	 * 尚未结束的来源个数
+	 */
+	private int remaining;
+	
+	private volatile boolean closed = false;
+	
+	private Iterator<T> page = Collections.emptyIterator();
+	
+	/**
+	 * @param scanner 根据游标读取一页
+	 */
+	RedisScanIterator(Function<byte[], ScanResult<T>> scanner) {
+		this.scanner = scanner;
+		this.queue = null;
+		this.producers = null;
+		this.remaining = 1;
+	}
+	
+	/**
+	 * @param scanners 各个来源根据游标读取一页
+	 * @param executor 执行并行读取的线程池
+	 */
+	RedisScanIterator(List<Function<byte[], ScanResult<T>>> scanners, ExecutorService executor) {
+		this.scanner = null;
+		this.queue = new ArrayBlockingQueue<>(scanners.size() * 2);
+		this.producers = new ArrayList<>(scanners.size());
+		this.remaining = scanners.size();
+		
+		for (Function<byte[], ScanResult<T>> source : scanners) {
+			producers.add(executor.submit(() -> produce(source)));
+		}
+	}
+	
+	/**
+	 * 读取一个来源的所有页放入队列
+	 * @param source
+	 */
+	private void produce(Function<byte[], ScanResult<T>> source) {
+		try {
+			//以结束标记或异常通知消费者
+			Object last = END;
+			try {
+				byte[] sourceCursor = ScanParams.SCAN_POINTER_START_BINARY;
+				do {
+					ScanResult<T> result = source.apply(sourceCursor);
+					if (!result.getResult().isEmpty()) queue.put(result.getResult());
+					sourceCursor = result.getCursorAsBytes();
+				} while (!closed && !isEnd(sourceCursor));
+			} catch (RuntimeException e) {
+				last = e;
+			}
+			queue.put(last);
+		} catch (InterruptedException e) {
+			//close时停止
+		}
+	}
+	
+	/**
+	 * 读取下一页，全部结束时返回null
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	private List<T> nextPage() {
+		if (queue == null) {
+			if (remaining == 0) return null;
+			
+			ScanResult<T> result = scanner.apply(cursor);
+			cursor = result.getCursorAsBytes();
+			if (isEnd(cursor)) remaining = 0;
+			return result.getResult();
+		}
+		
+		while (remaining > 0) {
+			Object item;
+			try {
+				item = queue.take();
+			} catch (InterruptedException e) {
+				close();
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			
+			if (item == END) {
+				remaining--;
+			} else if (item instanceof RuntimeException) {
+				close();
+				throw (RuntimeException)item;
+			} else {
+				return (List<T>)item;
+			}
+		}
+		return null;
+	}
+	
+	public boolean hasNext() {
+		while (!page.hasNext()) {
+			if (closed) return false;
+			
+			List<T> next = nextPage();
+			if (next == null) return false;
+			page = next.iterator();
+		}
+		return true;
+	}
+	
+	public T next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		return page.next();
+	}
+	
+	/**
+	 * 停止迭代，并停止所有后台线程
+	 */
+	public void close() {
+		closed = true;
+		remaining = 0;
+		page = Collections.emptyIterator();
+		
+		if (producers != null) {
+			for (Future<?> producer : producers) {
+				producer.cancel(true);
+			}
+		}
+	}
+	
+	/**
+	 * 转换为Stream，关闭Stream时停止迭代
+	 * @return
+	 */
+	Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false).onClose(this::close);
+	}
+	
+	private static boolean isEnd(byte[] cursor) {
+		return Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY);
+	}
+	
+}
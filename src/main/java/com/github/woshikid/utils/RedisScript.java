@@ -0,0 +1,109 @@
+package com.github.woshikid.utils;
+
+import java.nio.charset.StandardCharsets;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+/**
+ * Lua脚本
+ * 以EVALSHA执行，只传输脚本的SHA1，服务端没有缓存该脚本时(NOSCRIPT)以EVAL执行一次，同时缓存脚本
+ * 有key时按照第一个key路由，集群模式下所有key必须在同一个slot中
+ * key与参数的转换规则与RedisUtils相同
+ * 通过{@link RedisUtils#registerScript(String, String)}注册后可以按名称执行
+ * @author kid
+ *
+ */
+public class RedisScript {
+
+	private final String source;
+	
+	private final byte[] script;
+	
+	private final String sha1;
+	
+	private final byte[] rawSha1;
+	
+	public RedisScript(String script) {
+		this.source = script;
+		this.script = script.getBytes(StandardCharsets.UTF_8);
+		this.sha1 = MessageDigestUtils.sha1(this.script);
+		this.rawSha1 = sha1.getBytes(StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * 执行脚本
+	 * @param keys 脚本中的KEYS
+	 * @param args 脚本中的ARGV
+	 * @return 整数返回Long，字符串返回byte[]，数组返回List
+	 */
+	public Object eval(Object[] keys, Object... args) {
+		byte[][] params = new byte[keys.length + args.length][];
+		for (int i = 0; i < keys.length; i++) {
+			params[i] = RedisUtils.toBytes(keys[i]);
+		}
+		for (int i = 0; i < args.length; i++) {
+			params[keys.length + i] = RedisUtils.toBytes(args[i]);
+		}
+		
+		if (keys.length == 0) return RedisUtils.execute("evalsha", jedis -> eval(jedis, 0, params));
+		
+		return RedisUtils.execute("evalsha", keys, jedis -> eval(jedis, keys.length, params));
+	}
+	
+	/**
+	 * 执行脚本，结果为字符串
+	 * @param keys 脚本中的KEYS
+	 * @param args 脚本中的ARGV
+	 * @return
+	 */
+	public String evalString(Object[] keys, Object... args) {
+		return RedisUtils.toString((byte[])eval(keys, args));
+	}
+	
+	/**
+	 * 执行脚本，结果为整数
+	 * @param keys 脚本中的KEYS
+	 * @param args 脚本中的ARGV
+	 * @return 脚本返回nil时为null
+	 */
+	public Long evalLong(Object[] keys, Object... args) {
+		return (Long)eval(keys, args);
+	}
+	
+	/**
+	 * 将脚本预先缓存到所有主节点
+	 * 不调用也可以执行，第一次执行时自动缓存
+	 */
+	public void load() {
+		RedisUtils.scriptLoad(source);
+	}
+	
+	/**
+	 * 脚本的SHA1(小写16进制)
+	 * @return
+	 */
+	public String getSha1() {
+		return sha1;
+	}
+	
+	public String getScript() {
+		return source;
+	}
+	
+	/**
+	 * 在已取得的连接上执行脚本
+	 * @param jedis
+	 * @param keyCount
+	 * @param params key与参数
+	 * @return
+	 */
+	Object eval(Jedis jedis, int keyCount, byte[][] params) {
+		try {
+			return jedis.evalsha(rawSha1, keyCount, params);
+		} catch (JedisNoScriptException e) {
+			return jedis.eval(script, keyCount, params);
+		}
+	}
+	
+}
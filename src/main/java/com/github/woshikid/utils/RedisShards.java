@@ -0,0 +1,284 @@
+package com.github.woshikid.utils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.Hashing;
+
+/**
+ * 多个独立redis实例之间的客户端分片
+ * 按照一致性hash环路由key，每个实例按权重拥有160*weight个虚拟节点，与ShardedJedis的分布相同
+ * key中含有{}时只使用其中的部分计算hash，与集群模式的hashtag规则相同
+ * 增加或删除实例时只有相邻区间的key改变位置，改变位置的key相当于缓存未命中
+ * @author kid
+ *
+ */
+class RedisShards implements RedisNodes, Closeable {
+
+	private static final int VIRTUAL_NODES = 160;
+	
+	private final TreeMap<Long, JedisPool> ring = new TreeMap<>();
+	
+	private final Map<String, JedisPool> nodes = new LinkedHashMap<>();
+	
+	private final List<JedisPool> pools;
+	
+	/**
+	 * 用于多个实例并行执行命令
+	 */
+	private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "redis-shard-worker");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	/**
+	 * @param shards 实例列表，以逗号分隔，每个实例为host:port或host:port:weight，权重默认为1
+	 * @param poolConfig
+	 * @param timeout
+	 * @param password
+	 * @param database
+	 */
+	RedisShards(String shards, JedisPoolConfig poolConfig, int timeout, String password, int database) {
+		String[] items = shards.split(",");
+		for (int i = 0; i < items.length; i++) {
+			String[] parts = items[i].trim().split(":");
+			if (parts.length != 2 && parts.length != 3) throw new IllegalArgumentException("invalid shard:" + items[i]);
+			
+			HostAndPort address = new HostAndPort(parts[0], Integer.parseInt(parts[1]));
+			int weight = parts.length == 3 ? Integer.parseInt(parts[2]) : 1;
+			if (weight <= 0) throw new IllegalArgumentException("weight must be positive:" + items[i]);
+			if (nodes.containsKey(address.toString())) throw new IllegalArgumentException("duplicate shard:" + items[i]);
+			
+			JedisPool pool = new JedisPool(poolConfig, address.getHost(), address.getPort(), timeout, password, database);
+			nodes.put(address.toString(), pool);
+			for (int n = 0; n < VIRTUAL_NODES * weight; n++) {
+				ring.put(Hashing.MURMUR_HASH.hash("SHARD-" + i + "-NODE-" + n), pool);
+			}
+		}
+		
+		this.pools = Collections.unmodifiableList(new ArrayList<>(nodes.values()));
+	}
+	
+	public <T> T execute(byte[] key, Function<Jedis, T> command) {
+		try (Jedis jedis = getKeyPool(key).getResource()) {
+			return command.apply(jedis);
+		}
+	}
+	
+	public <T> T execute(byte[][] keys, Function<Jedis, T> command) {
+		//没有key时按与key无关的命令执行，由服务端校验参数
+		if (keys.length == 0) return executeAnyNode(command);
+		
+		JedisPool pool = getKeyPool(keys[0]);
+		for (int i = 1; i < keys.length; i++) {
+			if (getKeyPool(keys[i]) != pool) throw new JedisDataException("keys are in different shards, use {} to put them in the same shard");
+		}
+		
+		try (Jedis jedis = pool.getResource()) {
+			return command.apply(jedis);
+		}
+	}
+	
+	/**
+	 * 总是在第一个实例上执行，使发布与订阅在同一个实例上
+	 */
+	public <T> T executeAnyNode(Function<Jedis, T> command) {
+		try (Jedis jedis = pools.get(0).getResource()) {
+			return command.apply(jedis);
+		}
+	}
+	
+	public <T> List<T> executeMasters(Function<Jedis, T> command) {
+		List<T> results = new ArrayList<>(pools.size());
+		for (JedisPool pool : pools) {
+			try (Jedis jedis = pool.getResource()) {
+				results.add(command.apply(jedis));
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * 每个实例上的参数合并为一条命令执行，不同实例之间并行执行
+	 */
+	public <R> void executeBySlot(byte[][] args, int step, BiFunction<Pipeline, byte[][], Response<R>> pipelined, BiFunction<Jedis, byte[][], R> direct, BiConsumer<int[], R> collector) {
+		if (args.length == 0) return;
+		
+		//按实例分组，记录每组参数的序号
+		Map<JedisPool, List<Integer>> nodeGroups = new IdentityHashMap<>();
+		for (int i = 0; i < args.length / step; i++) {
+			JedisPool pool = getKeyPool(args[i * step]);
+			List<Integer> group = nodeGroups.get(pool);
+			if (group == null) {
+				group = new ArrayList<>();
+				nodeGroups.put(pool, group);
+			}
+			group.add(i);
+		}
+		
+		List<JedisPool> nodePools = new ArrayList<>(nodeGroups.keySet());
+		List<int[]> groups = new ArrayList<>(nodePools.size());
+		for (JedisPool pool : nodePools) {
+			groups.add(toIndexes(nodeGroups.get(pool)));
+		}
+		
+		//除最后一个实例外，其他实例交给线程池并行执行
+		List<Future<R>> futures = new ArrayList<>(nodePools.size() - 1);
+		for (int i = 0; i < nodePools.size() - 1; i++) {
+			JedisPool pool = nodePools.get(i);
+			byte[][] nodeArgs = toArgs(args, step, groups.get(i));
+			futures.add(executor.submit(() -> executeNode(pool, nodeArgs, direct)));
+		}
+		
+		//等待所有实例执行完成，第一个异常之后的异常作为被抑制的异常
+		List<R> results = new ArrayList<>(nodePools.size());
+		RuntimeException error = null;
+		R lastResult = null;
+		try {
+			int last = nodePools.size() - 1;
+			lastResult = executeNode(nodePools.get(last), toArgs(args, step, groups.get(last)), direct);
+		} catch (RuntimeException e) {
+			error = e;
+		}
+		for (Future<R> future : futures) {
+			try {
+				results.add(getResult(future));
+			} catch (RuntimeException e) {
+				error = RedisCluster.suppress(error, e);
+			}
+		}
+		if (error != null) throw error;
+		results.add(lastResult);
+		
+		for (int i = 0; i < results.size(); i++) {
+			collector.accept(groups.get(i), results.get(i));
+		}
+	}
+	
+	public JedisPool getKeyPool(byte[] key) {
+		Map.Entry<Long, JedisPool> entry = ring.ceilingEntry(Hashing.MURMUR_HASH.hash(keyTag(key)));
+		if (entry == null) entry = ring.firstEntry();
+		return entry.getValue();
+	}
+	
+	/**
+	 * 与key无关的命令总是在第一个分片上执行，发布与订阅在同一个实例上
+	 * @return
+	 */
+	public JedisPool getAnyNodePool() {
+		return pools.get(0);
+	}
+	
+	public List<JedisPool> getMasterPools() {
+		return pools;
+	}
+	
+	public Map<String, JedisPool> getClusterNodes() {
+		return new LinkedHashMap<>(nodes);
+	}
+	
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+	
+	public void close() {
+		executor.shutdown();
+		for (JedisPool pool : pools) {
+			pool.close();
+		}
+	}
+	
+	private static <R> R executeNode(JedisPool pool, byte[][] args, BiFunction<Jedis, byte[][], R> direct) {
+		try (Jedis jedis = pool.getResource()) {
+			return direct.apply(jedis, args);
+		}
+	}
+	
+	/**
+	 * 取出key中第一个{}之间的部分，没有或为空时使用整个key
+	 * @param key
+	 * @return
+	 */
+	private static byte[] keyTag(byte[] key) {
+		for (int start = 0; start < key.length; start++) {
+			if (key[start] != '{') continue;
+			
+			for (int end = start + 1; end < key.length; end++) {
+				if (key[end] != '}') continue;
+				
+				return end == start + 1 ? key : Arrays.copyOfRange(key, start + 1, end);
+			}
+			return key;
+		}
+		return key;
+	}
+	
+	/**
+	 * 取出指定序号的参数组
+	 * @param args
+	 * @param step
+	 * @param indexes
+	 * @return
+	 */
+	private static byte[][] toArgs(byte[][] args, int step, int[] indexes) {
+		byte[][] selected = new byte[indexes.length * step][];
+		for (int i = 0; i < indexes.length; i++) {
+			System.arraycopy(args, indexes[i] * step, selected, i * step, step);
+		}
+		return selected;
+	}
+	
+	/**
+	 * 将序号列表转换为数组
+	 * @param list
+	 * @return
+	 */
+	private static int[] toIndexes(List<Integer> list) {
+		int[] indexes = new int[list.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = list.get(i);
+		}
+		return indexes;
+	}
+	
+	/**
+	 * 等待并取得并行执行的结果
+	 * @param future
+	 * @return
+	 */
+	private static <R> R getResult(Future<R> future) {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			throw new RuntimeException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+	
+}
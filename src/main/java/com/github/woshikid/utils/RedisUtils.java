@@ -2,16 +2,37 @@ package com.github.woshikid.utils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import redis.clients.jedis.BinaryClient;
 import redis.clients.jedis.BitOP;
@@ -30,10 +51,15 @@ import redis.clients.jedis.ZParams;
 import redis.clients.jedis.ZParams.Aggregate;
 import redis.clients.jedis.params.sortedset.ZAddParams;
 import redis.clients.jedis.params.sortedset.ZIncrByParams;
+import redis.clients.util.JedisByteHashMap;
 import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.Pool;
 
 /**
  * Redis工具类
+ * 单机、哨兵、集群与分片模式下所有命令的用法相同
+ * 集群模式下多key命令的所有key必须在同一个slot中(mget,mset,del,exists除外)
+ * 分片模式下多key命令的所有key必须在同一个实例中(mget,mset,del,exists除外)，可以用{}指定key中计算hash的部分
  * 配置文件为/redis.properties
  * enable=true
  * pool.maxTotal=10
@@ -42,6 +68,7 @@ import redis.clients.util.JedisClusterCRC16;
  * pool.testOnBorrow=true
  * #cluster=127.0.0.1:7000,127.0.0.1:7001,127.0.0.1:7002
  * #maxRedirections=10
+ * #shards=127.0.0.1:6379:1,127.0.0.1:6380:1
  * #sentinels=127.0.0.1:26379,127.0.0.1:36379,127.0.0.1:46379
  * #masterName=redis_master
  * host=127.0.0.1
@@ -49,6 +76,37 @@ import redis.clients.util.JedisClusterCRC16;
  * timeout=2000
  * database=0
  * password=
+ * #readFrom=master
+ * #replica.refreshMillis=10000
+ * #pipeline.flushSize=1000
+ * #codec=java
+ * #scan.count=1000
+ * #decode.parallelBytes=1048576
+ * #compress.threshold=0
+ * #compress.level=1
+ * #async.threads=10
+ * #async.queueSize=10000
+ * #async.virtualThreads=false
+ * #coalesce.enable=false
+ * #coalesce.windowMicros=100
+ * #coalesce.maxBatch=100
+ * #coalesce.threads=10
+ * #loader.lockMillis=3000
+ * #loader.beta=1.0
+ * #loader.threads=4
+ * #pubsub.workers=4
+ * #pubsub.queueSize=10000
+ * #metrics.enable=false
+ * #metrics.jmx=true
+ * #hotKey.enable=false
+ * #hotKey.sampleRate=0.01
+ * #hotKey.windowMillis=10000
+ * #hotKey.topK=20
+ * #nearCache.enable=false
+ * #nearCache.maxSize=10000
+ * #nearCache.ttl=5000
+ * #nearCache.channel=__near_cache_invalidation__
+ * #nearCache.prefixes=config:,flag:
  * 
  * 
  * 未实现的命令：
@@ -73,22 +131,74 @@ import redis.clients.util.JedisClusterCRC16;
  * CONFIG相关命令
  * DEBUG相关命令
  * CLUSTER相关命令
- * SCRIPT相关命令
+ * SCRIPT KILL
  * GEO相关命令
- * PUBSUB相关命令
- * 事务管道相关命令(通过getJedis自己实现)
+ * PUBSUB(查询订阅状态)
+ * 事务相关命令(通过getJedis自己实现)
+ * 管道命令通过{@link #pipeline(Consumer)}实现
+ * 订阅命令通过{@link #pubSub()}实现
+ * 脚本命令通过{@link #registerScript(String, String)}实现
  * 
  * @author kid
  *
  */
 public class RedisUtils {
 
-	private static JedisCluster jedisCluster = null;
+	private final static Logger logger = LoggerFactory.getLogger(RedisUtils.class);
+	
+	private static RedisCluster jedisCluster = null;
+	
+	/**
+	 * 集群或分片模式下按key路由的节点
+	 */
+	private static RedisNodes nodes = null;
 	
 	private static JedisSentinelPool jedisSentinelPool = null;
 	
 	private static JedisPool jedisPool = null;
 	
+	private static RedisReplicas replicas = null;
+	
+	private static int pipelineFlushSize = 1000;
+	
+	private static RedisNearCache nearCache = null;
+	
+	private static RedisCodec codec = new RedisJavaCodec();
+	
+	private static int scanCount = 1000;
+	
+	private static long decodeParallelBytes = 1 << 20;
+	
+	private static RedisCompressor compressor = new RedisCompressor(0, Deflater.BEST_SPEED);
+	
+	private static RedisAsync async = null;
+	
+	private static RedisGetCoalescer getCoalescer = null;
+	
+	private static RedisCacheLoader cacheLoader = new RedisCacheLoader(3000, 1.0, 4);
+	
+	private static RedisPubSub pubSub = null;
+	
+	private static RedisMetrics metrics = null;
+	
+	private static RedisHotKeys hotKeys = null;
+	
+	/**
+	 * 已注册的脚本
+	 */
+	private static final Map<String, RedisScript> scripts = new ConcurrentHashMap<>();
+	
+	/**
+	 * 按字节操作string的命令，值带有压缩标记时返回错误，避免破坏压缩后的数据
+	 * KEYS[1]值，ARGV[1]压缩标记，ARGV[2]命令，其余为命令的参数
+	 */
+	private static final RedisScript UNCOMPRESSED = new RedisScript(
+			"local head = redis.call('GETRANGE', KEYS[1], 0, " + RedisCompressor.HEADER + ")\n" +
+			"if #head > " + RedisCompressor.HEADER + " and string.sub(head, 1, #ARGV[1]) == ARGV[1] then\n" +
+			"	return redis.error_reply('ERR value is compressed, use get/set instead')\n" +
+			"end\n" +
+			"return redis.call(ARGV[2], KEYS[1], unpack(ARGV, 3))");
+	
 	static {
 		Properties config = new Properties();
 		
@@ -110,6 +220,9 @@ public class RedisUtils {
 			String cluster = config.getProperty("cluster");
 			String maxRedirections = config.getProperty("maxRedirections");
 			
+			//分片设置
+			String shards = config.getProperty("shards");
+			
 			//哨兵设置
 			String sentinels = config.getProperty("sentinels");
 			String masterName = config.getProperty("masterName");
@@ -124,6 +237,64 @@ public class RedisUtils {
 			String password = config.getProperty("password");
 			if ("".equals(password)) password = null;
 			
+			//管道设置
+			pipelineFlushSize = Integer.parseInt(config.getProperty("pipeline.flushSize", "1000"));
+			
+			//编码设置
+			codec = toCodec(config.getProperty("codec", "java"));
+			
+			//迭代设置
+			scanCount = Integer.parseInt(config.getProperty("scan.count", "1000"));
+			
+			//批量转换字符串设置，总字节数达到阈值时才并行转换，小于等于0时不并行
+			decodeParallelBytes = Long.parseLong(config.getProperty("decode.parallelBytes", String.valueOf(1 << 20)));
+			
+			//压缩设置，默认不压缩
+			int compressThreshold = Integer.parseInt(config.getProperty("compress.threshold", "0"));
+			int compressLevel = Integer.parseInt(config.getProperty("compress.level", String.valueOf(Deflater.BEST_SPEED)));
+			compressor = new RedisCompressor(compressThreshold, compressLevel);
+			
+			//异步设置，默认并发数与连接数相同
+			int asyncThreads = Integer.parseInt(config.getProperty("async.threads", String.valueOf(maxTotal)));
+			int asyncQueueSize = Integer.parseInt(config.getProperty("async.queueSize", "10000"));
+			boolean asyncVirtualThreads = Boolean.parseBoolean(config.getProperty("async.virtualThreads"));
+			async = new RedisAsync(asyncThreads, asyncQueueSize, asyncVirtualThreads);
+			
+			//订阅设置，订阅连接在第一次订阅时建立
+			int pubSubWorkers = Integer.parseInt(config.getProperty("pubsub.workers", "4"));
+			int pubSubQueueSize = Integer.parseInt(config.getProperty("pubsub.queueSize", "10000"));
+			pubSub = new RedisPubSub(pubSubWorkers, pubSubQueueSize);
+			
+			//统计设置
+			if ("true".equals(config.getProperty("metrics.enable"))) {
+				metrics = new RedisMetrics(RedisUtils::getPools);
+				if (!"false".equals(config.getProperty("metrics.jmx"))) {
+					registerMBean(metrics);
+				}
+			}
+			
+			//热点key设置
+			if ("true".equals(config.getProperty("hotKey.enable"))) {
+				double sampleRate = Double.parseDouble(config.getProperty("hotKey.sampleRate", "0.01"));
+				long windowMillis = Long.parseLong(config.getProperty("hotKey.windowMillis", "10000"));
+				int topK = Integer.parseInt(config.getProperty("hotKey.topK", "20"));
+				hotKeys = new RedisHotKeys(sampleRate, windowMillis, topK);
+			}
+			
+			//合并读取设置
+			if ("true".equals(config.getProperty("coalesce.enable"))) {
+				long windowMicros = Long.parseLong(config.getProperty("coalesce.windowMicros", "100"));
+				int maxBatch = Integer.parseInt(config.getProperty("coalesce.maxBatch", "100"));
+				int coalesceThreads = Integer.parseInt(config.getProperty("coalesce.threads", String.valueOf(maxTotal)));
+				getCoalescer = new RedisGetCoalescer(windowMicros, maxBatch, coalesceThreads);
+			}
+			
+			//缓存加载设置
+			long lockMillis = Long.parseLong(config.getProperty("loader.lockMillis", "3000"));
+			double beta = Double.parseDouble(config.getProperty("loader.beta", "1.0"));
+			int loaderThreads = Integer.parseInt(config.getProperty("loader.threads", "4"));
+			cacheLoader = new RedisCacheLoader(lockMillis, beta, loaderThreads);
+			
 			JedisPoolConfig poolConfig = new JedisPoolConfig();
 			poolConfig.setMaxTotal(maxTotal);
 			poolConfig.setMaxIdle(maxIdle);
@@ -140,7 +311,10 @@ public class RedisUtils {
 					clusterNodes.add(new HostAndPort(nodeHost, nodePort));
 				}
 				
-				jedisCluster = new JedisCluster(clusterNodes, timeout, intMaxRedirections, poolConfig);
+				jedisCluster = new RedisCluster(clusterNodes, timeout, intMaxRedirections, poolConfig);
+				nodes = jedisCluster;
+			} else if (shards != null) {
+				nodes = new RedisShards(shards, poolConfig, timeout, password, database);
 			} else if (sentinels != null) {
 				Set<String> sentinelSet = new HashSet<>();
 				for (String sentinel : sentinels.split(",")) {
@@ -153,116 +327,808 @@ public class RedisUtils {
 				
 				jedisPool = new JedisPool(poolConfig, host, intPort, timeout, password, database);
 			}
+			
+			//从节点读取设置，集群与分片模式下不支持
+			String readFrom = config.getProperty("readFrom", "master");
+			if (!"master".equals(readFrom) && nodes == null) {
+				long refreshMillis = Long.parseLong(config.getProperty("replica.refreshMillis", "10000"));
+				replicas = new RedisReplicas(readFrom, sentinels, masterName, poolConfig, timeout, password, database, refreshMillis);
+				replicas.start();
+			}
+			
+			//本地缓存设置
+			if ("true".equals(config.getProperty("nearCache.enable"))) {
+				int maxSize = Integer.parseInt(config.getProperty("nearCache.maxSize", "10000"));
+				long ttl = Long.parseLong(config.getProperty("nearCache.ttl", "5000"));
+				String channel = config.getProperty("nearCache.channel", "__near_cache_invalidation__");
+				if ("".equals(channel)) channel = null;
+				String prefixes = config.getProperty("nearCache.prefixes", "");
+				
+				nearCache = new RedisNearCache(maxSize, ttl, channel, "".equals(prefixes) ? new String[0] : prefixes.split(","));
+				nearCache.start();
+			}
+		}
+	}
+	
+	/**
+	 * 将统计注册为JMX的MBean
+	 * 已有同名MBean(其他类加载器或重新部署)时替换，注册失败时不影响redis的使用
+	 * @param metrics
+	 */
+	private static void registerMBean(RedisMetrics metrics) {
+		try {
+			ObjectName name = new ObjectName("com.github.woshikid.utils:type=RedisMetrics");
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			try {
+				server.registerMBean(metrics, name);
+			} catch (InstanceAlreadyExistsException e) {
+				server.unregisterMBean(name);
+				server.registerMBean(metrics, name);
+			}
+		} catch (Exception e) {
+			logger.warn("redis metrics jmx register failed", e);
+		}
+	}
+	
+	/**
+	 * 根据名称创建编码方式
+	 * @param name java,json,binary或实现类的完整类名
+	 * @return
+	 */
+	private static RedisCodec toCodec(String name) {
+		switch (name) {
+		case "java":
+			return new RedisJavaCodec();
+		case "json":
+			return new RedisJsonCodec();
+		case "binary":
+			return new RedisBinaryCodec();
+		default:
+			try {
+				return (RedisCodec)Class.forName(name).getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	/**
+	 * 得到key对应集群中的slot
+	 * @param key
+	 * @return
+	 */
+	public static int getSlot(Object key) {
+		return JedisClusterCRC16.getSlot(toBytes(key));
+	}
+	
+	/**
+	 * 得到JedisCluster实例来进行redis操作
+	 * 内部自带连接池，再也不用finally去close了
+	 * 直接调用对应的方法即可
+	 * @return
+	 */
+	public static JedisCluster getJedisCluster() {
+		if (jedisCluster != null) {
+			return jedisCluster;
+		} else {
+			throw new RuntimeException("jedis cluster not ready");
+		}
+	}
+	
+	/**
+	 * 得到Jedis实例用来执行watch,multi等未实现的命令
+	 * 集群模式下请使用{@link #getJedisCluster()}，分片模式下不可用
+	 * 用完一定记得用
+	 * finally {
+	 *     jedis.close();
+	 * }
+	 * 将实例返回连接池
+	 * @return
+	 */
+	public static Jedis getJedis() {
+		if (jedisSentinelPool != null) {
+			return jedisSentinelPool.getResource();
+		} else if (jedisPool != null) {
+			return jedisPool.getResource();
+		} else {
+			throw new RuntimeException("jedis not ready");
+		}
+	}
+	
+	/**
+	 * 得到命令统计，没有开启统计时返回null
+	 * @return
+	 */
+	public static RedisMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * 得到热点key统计，没有开启统计时返回null
+	 * @return
+	 */
+	public static RedisHotKeys getHotKeys() {
+		return hotKeys;
+	}
+	
+	/**
+	 * 得到当前所有的连接池
+	 * @return key为节点名称
+	 */
+	private static Map<String, Pool<Jedis>> getPools() {
+		Map<String, Pool<Jedis>> pools = new HashMap<>();
+		if (nodes != null) {
+			pools.putAll(nodes.getClusterNodes());
+		} else if (jedisSentinelPool != null) {
+			pools.put(jedisSentinelPool.getCurrentHostMaster().toString(), jedisSentinelPool);
+		} else if (jedisPool != null) {
+			pools.put("default", jedisPool);
+		}
+		return pools;
+	}
+	
+	/**
+	 * 得到值的压缩，用于查看压缩率等统计信息
+	 * @return
+	 */
+	public static RedisCompressor getCompressor() {
+		return compressor;
+	}
+	
+	/**
+	 * 得到本地缓存，用于查看命中率等统计信息
+	 * 没有开启本地缓存时返回null
+	 * @return
+	 */
+	public static RedisNearCache getNearCache() {
+		return nearCache;
+	}
+	
+	/**
+	 * 得到订阅接口
+	 * @return
+	 */
+	public static RedisPubSub pubSub() {
+		if (pubSub != null) {
+			return pubSub;
+		} else {
+			throw new RuntimeException("redis pubsub not ready");
+		}
+	}
+	
+	/**
+	 * 得到异步执行命令的接口
+	 * @return
+	 */
+	public static RedisAsync async() {
+		if (async != null) {
+			return async;
+		} else {
+			throw new RuntimeException("redis async not ready");
+		}
+	}
+	
+	/**
+	 * 以管道方式批量执行命令，所有命令只占用一个连接
+	 * 每累积pipeline.flushSize个命令自动发送一次，以限制客户端内存
+	 * 方法返回后，批量操作中得到的Response均可取值
+	 * RedisUtils.pipeline(batch -&gt; {
+	 *     batch.hset(key, field, value);
+	 *     batch.expire(key, seconds);
+	 * });
+	 * @param batch
+	 */
+	public static void pipeline(Consumer<RedisPipeline> batch) {
+		pipeline(pipelineFlushSize, batch);
+	}
+	
+	/**
+	 * 以管道方式批量执行命令，所有命令只占用一个连接
+	 * 方法返回后，批量操作中得到的Response均可取值
+	 * @param flushSize 每累积多少个命令自动发送一次
+	 * @param batch
+	 */
+	public static void pipeline(int flushSize, Consumer<RedisPipeline> batch) {
+		if (flushSize <= 0) throw new IllegalArgumentException("flushSize must be positive:" + flushSize);
+		
+		measure("pipeline", () -> {
+			if (nodes != null) {
+				try (RedisPipeline pipeline = new RedisPipeline(nodes, flushSize)) {
+					batch.accept(pipeline);
+				}
+			} else {
+				try (RedisPipeline pipeline = new RedisPipeline(getJedis(), flushSize)) {
+					batch.accept(pipeline);
+				}
+			}
+			return null;
+		});
+	}
+	
+	/**
+	 * 在key所在的节点上执行命令
+	 * 单机与哨兵模式下直接从连接池中取得连接
+	 * 集群模式下根据key的slot路由，并自动处理重定向
+	 * 分片模式下根据key的一致性hash路由
+	 * @param name 命令名称，用于统计
+	 * @param key
+	 * @param command
+	 * @return
+	 */
+	private static <T> T execute(String name, Object key, Function<Jedis, T> command) {
+		byte[] rawKey = nodes != null ? toBytes(key) : null;
+		if (rawKey != null) {
+			sample(rawKey);
+		} else {
+			sample(key);
+		}
+		
+		long start = metrics == null ? 0 : System.nanoTime();
+		boolean success = false;
+		try {
+			T result = nodes != null ? nodes.execute(rawKey, command) : executeLocal(name, command);
+			success = true;
+			return result;
+		} finally {
+			record(name, start, success);
+		}
+	}
+	
+	/**
+	 * 在多个key所在的节点上执行命令
+	 * 集群模式下所有key必须在同一个slot中
+	 * @param name 命令名称，用于统计
+	 * @param keys
+	 * @param command
+	 * @return
+	 */
+	static <T> T execute(String name, Object[] keys, Function<Jedis, T> command) {
+		sample(keys);
+		
+		long start = metrics == null ? 0 : System.nanoTime();
+		boolean success = false;
+		try {
+			T result = nodes != null ? nodes.execute(toBytes(keys), command) : executeLocal(name, command);
+			success = true;
+			return result;
+		} finally {
+			record(name, start, success);
+		}
+	}
+	
+	/**
+	 * 执行与key无关的命令
+	 * 集群模式下在任意一个节点上执行
+	 * @param name 命令名称，用于统计，为null时不统计
+	 * @param command
+	 * @return
+	 */
+	static <T> T execute(String name, Function<Jedis, T> command) {
+		long start = metrics == null ? 0 : System.nanoTime();
+		boolean success = false;
+		try {
+			T result = nodes != null ? nodes.executeAnyNode(command) : executeLocal(name, command);
+			success = true;
+			return result;
+		} finally {
+			record(name, start, success);
+		}
+	}
+	
+	/**
+	 * 从单机或哨兵模式的连接池中取得连接执行命令
+	 * 开启从节点读取时，只读命令在从节点执行
+	 * @param name 命令名称
+	 * @param command
+	 * @return
+	 */
+	private static <T> T executeLocal(String name, Function<Jedis, T> command) {
+		if (replicas != null && RedisReplicas.isReadCommand(name)) return replicas.execute(command, RedisUtils::executeMaster);
+		
+		return executeMaster(command);
+	}
+	
+	/**
+	 * 在主节点执行命令
+	 * @param command
+	 * @return
+	 */
+	private static <T> T executeMaster(Function<Jedis, T> command) {
+		try (Jedis jedis = getJedis()) {
+			return command.apply(jedis);
 		}
 	}
 	
 	/**
-	 * 得到key对应集群中的slot
-	 * @param key
+	 * 在key所在的节点上执行写命令，并使key的本地缓存失效
+	 * @param name 命令名称，用于统计
+	 * @param key
+	 * @param command
+	 * @return
+	 */
+	private static <T> T executeWrite(String name, Object key, Function<Jedis, T> command) {
+		try {
+			return execute(name, key, command);
+		} finally {
+			invalidate(key);
+		}
+	}
+	
+	/**
+	 * 在多个key所在的节点上执行写命令，并使这些key的本地缓存失效
+	 * 集群模式下所有key必须在同一个slot中
+	 * @param name 命令名称，用于统计
+	 * @param keys
+	 * @param command
+	 * @return
+	 */
+	private static <T> T executeWrite(String name, Object[] keys, Function<Jedis, T> command) {
+		try {
+			return execute(name, keys, command);
+		} finally {
+			for (Object key : keys) {
+				invalidate(key);
+			}
+		}
+	}
+	
+	/**
+	 * 在多个key所在的节点上执行命令，结果保存到dstkey，并使dstkey的本地缓存失效
+	 * 集群模式下所有key必须在同一个slot中
+	 * @param name 命令名称，用于统计
+	 * @param dstkey
+	 * @param keys 包括dstkey在内的所有key
+	 * @param command
+	 * @return
+	 */
+	private static <T> T executeStore(String name, Object dstkey, Object[] keys, Function<Jedis, T> command) {
+		try {
+			return execute(name, keys, command);
+		} finally {
+			invalidate(dstkey);
+		}
+	}
+	
+	/**
+	 * 使key的本地缓存失效
+	 * 命令执行失败时也需要调用，因为无法确定命令是否已经执行
+	 * @param key
+	 */
+	static void invalidate(Object key) {
+		if (nearCache != null) nearCache.invalidate(toBytes(key));
+	}
+	
+	/**
+	 * 执行与key无关的命令
+	 * 集群模式下在所有主节点上执行
+	 * @param name 命令名称，用于统计
+	 * @param command
+	 * @return 各个节点的执行结果
+	 */
+	private static <T> List<T> executeAll(String name, Function<Jedis, T> command) {
+		long start = metrics == null ? 0 : System.nanoTime();
+		boolean success = false;
+		try {
+			List<T> results = nodes != null ? nodes.executeMasters(command) : Collections.singletonList(executeLocal(name, command));
+			success = true;
+			return results;
+		} finally {
+			record(name, start, success);
+		}
+	}
+	
+	/**
+	 * 统计不经过execute执行的操作，例如集群模式下跨slot的命令
+	 * @param name 命令名称
+	 * @param action
+	 * @return
+	 */
+	private static <T> T measure(String name, Supplier<T> action) {
+		long start = metrics == null ? 0 : System.nanoTime();
+		boolean success = false;
+		try {
+			T result = action.get();
+			success = true;
+			return result;
+		} finally {
+			record(name, start, success);
+		}
+	}
+	
+	/**
+	 * 将访问的key计入热点统计
+	 * @param key
+	 */
+	static void sample(Object key) {
+		if (hotKeys != null) hotKeys.record(key);
+	}
+	
+	/**
+	 * 将访问的key计入热点统计，key已经转换为字节数组
+	 * @param key
+	 */
+	static void sample(byte[] key) {
+		if (hotKeys != null) hotKeys.record(key);
+	}
+	
+	/**
+	 * 将访问的多个key计入热点统计
+	 * @param keys
+	 */
+	private static void sample(Object[] keys) {
+		if (hotKeys == null || keys == null) return;
+		
+		for (Object key : keys) {
+			hotKeys.record(key);
+		}
+	}
+	
+	/**
+	 * 将访问的多个已转换为字节数组的key计入热点统计
+	 * @param keys
+	 */
+	private static void sample(byte[][] keys) {
+		if (hotKeys == null || keys == null) return;
+		
+		for (byte[] key : keys) {
+			hotKeys.record(key);
+		}
+	}
+	
+	/**
+	 * 记录命令的执行耗时
+	 * @param name
+	 * @param start
+	 * @param success
+	 */
+	private static void record(String name, long start, boolean success) {
+		if (metrics != null && name != null) metrics.record(name, System.nanoTime() - start, success);
+	}
+	
+	/**
+	 * 将对象转成字节数组保存
+	 * redis值不能为null
+	 * @param object
+	 * @return
+	 */
+	static byte[] toBytes(Object object) {
+		if (object == null) return null;
+		
+		if (object instanceof String) {
+			return ((String)object).getBytes(StandardCharsets.UTF_8);
+		} else if (object instanceof byte[]) {
+			return (byte[])object;
+		} else if (object instanceof Boolean) {
+			return object.toString().getBytes(StandardCharsets.UTF_8);
+		} else if (object instanceof Long || object instanceof Integer || object instanceof Short || object instanceof Byte) {
+			return toBytes(((Number)object).longValue());
+		} else if (object instanceof Number) {
+			return object.toString().getBytes(StandardCharsets.UTF_8);
+		} else {
+			return codec.encode(object);
+		}
+	}
+	
+	/**
+	 * 将整数直接写成10进制的字节数组，不经过字符串
+	 * @param value
+	 * @return
+	 */
+	static byte[] toBytes(long value) {
+		if (value == Long.MIN_VALUE) return Long.toString(value).getBytes(StandardCharsets.UTF_8);
+		
+		boolean negative = value < 0;
+		long remaining = negative ? -value : value;
+		int length = negative ? 2 : 1;
+		for (long n = remaining; n >= 10; n /= 10) {
+			length++;
+		}
+		
+		byte[] bytes = new byte[length];
+		for (int i = length - 1; i >= (negative ? 1 : 0); i--) {
+			bytes[i] = (byte)('0' + remaining % 10);
+			remaining /= 10;
+		}
+		if (negative) bytes[0] = '-';
+		return bytes;
+	}
+	
+	/**
+	 * 将多个对象转换成字节数组
+	 * @param objects
+	 * @return
+	 */
+	static byte[][] toBytes(Object... objects) {
+		if (objects == null) return null;
+		
+		byte[][] bytes = new byte[objects.length][];
+		for (int i = 0; i < objects.length; i++) {
+			bytes[i] = toBytes(objects[i]);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * 将第一个key与其他key合并
+	 * @param key
+	 * @param keys
+	 * @return
+	 */
+	private static Object[] toKeys(Object key, Object... keys) {
+		Object[] allKeys = new Object[keys.length + 1];
+		allKeys[0] = key;
+		System.arraycopy(keys, 0, allKeys, 1, keys.length);
+		return allKeys;
+	}
+	
+	/**
+	 * 从key value交替的参数中取出所有的key
+	 * @param keysvalues
+	 * @return
+	 */
+	private static Object[] toMsetKeys(Object... keysvalues) {
+		Object[] keys = new Object[keysvalues.length / 2];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = keysvalues[i * 2];
+		}
+		return keys;
+	}
+	
+	/**
+	 * 将Map内容转换为字节数组
+	 * @param map
+	 * @return
+	 */
+	static Map<byte[], byte[]> toBytes(Map<?, ?> map) {
+		if (map == null) return null;
+		
+		Map<byte[], byte[]> byteMap = new HashMap<>(map.size());
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			byteMap.put(toBytes(entry.getKey()), toBytes(entry.getValue()));
+		}
+		return byteMap;
+	}
+	
+	/**
+	 * 将Map内容转换为字节数组
+	 * @param map
+	 * @return
+	 */
+	static Map<byte[], Double> toBytesZ(Map<?, Double> map) {
+		if (map == null) return null;
+		
+		Map<byte[], Double> byteMap = new HashMap<>(map.size());
+		for (Map.Entry<?, Double> entry : map.entrySet()) {
+			byteMap.put(toBytes(entry.getKey()), entry.getValue());
+		}
+		return byteMap;
+	}
+	
+	/**
+	 * 通过{@link #UNCOMPRESSED}执行按字节操作string的命令
+	 * @param jedis
+	 * @param command
+	 * @param key
+	 * @param args
+	 * @return
+	 */
+	private static Object evalUncompressed(Jedis jedis, String command, Object key, Object... args) {
+		byte[][] params = new byte[args.length + 3][];
+		params[0] = toBytes(key);
+		params[1] = RedisCompressor.magic();
+		params[2] = toBytes(command);
+		for (int i = 0; i < args.length; i++) {
+			params[i + 3] = toBytes(args[i]);
+		}
+		return UNCOMPRESSED.eval(jedis, 1, params);
+	}
+	
+	/**
+	 * 将值转换成字节数组，达到压缩阈值时进行压缩
+	 * 只用于值，key与hash的field使用{@link #toBytes(Object)}
+	 * @param value
+	 * @return
+	 */
+	static byte[] toValueBytes(Object value) {
+		return compressor.compress(toBytes(value));
+	}
+	
+	/**
+	 * 将多个值转换成字节数组
+	 * @param values
+	 * @return
+	 */
+	static byte[][] toValueBytes(Object... values) {
+		if (values == null) return null;
+		
+		byte[][] bytes = new byte[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = toValueBytes(values[i]);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * 将key value交替的参数转换成字节数组，只压缩value
+	 * @param keysvalues
+	 * @return
+	 */
+	private static byte[][] toMsetBytes(Object... keysvalues) {
+		byte[][] bytes = new byte[keysvalues.length][];
+		for (int i = 0; i < keysvalues.length; i++) {
+			bytes[i] = i % 2 == 0 ? toBytes(keysvalues[i]) : toValueBytes(keysvalues[i]);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * 将hash转换为字节数组，只压缩值
+	 * @param hash
+	 * @return
+	 */
+	static Map<byte[], byte[]> toValueBytes(Map<?, ?> hash) {
+		if (hash == null) return null;
+		
+		Map<byte[], byte[]> byteMap = new HashMap<>(hash.size());
+		for (Map.Entry<?, ?> entry : hash.entrySet()) {
+			byteMap.put(toBytes(entry.getKey()), toValueBytes(entry.getValue()));
+		}
+		return byteMap;
+	}
+	
+	/**
+	 * 还原读取到的值，带有压缩标记时解压，否则原样返回
+	 * @param bytes
+	 * @return
+	 */
+	static byte[] fromValueBytes(byte[] bytes) {
+		return compressor.decompress(bytes);
+	}
+	
+	/**
+	 * 还原读取到的多个值
+	 * @param byteList
 	 * @return
 	 */
-	public static int getSlot(Object key) {
-		return JedisClusterCRC16.getSlot(toBytes(key));
+	static List<byte[]> fromValueList(List<byte[]> byteList) {
+		if (byteList == null) return null;
+		
+		List<byte[]> list = new ArrayList<>(byteList.size());
+		for (byte[] bytes : byteList) {
+			list.add(fromValueBytes(bytes));
+		}
+		return list;
 	}
 	
 	/**
-	 * 得到JedisCluster实例来进行redis操作
-	 * 内部自带连接池，再也不用finally去close了
-	 * 直接调用对应的方法即可
+	 * 还原读取到的hash的值
+	 * @param byteMap
 	 * @return
 	 */
-	public static JedisCluster getJedisCluster() {
-		if (jedisCluster != null) {
-			return jedisCluster;
-		} else {
-			throw new RuntimeException("jedis cluster not ready");
+	static Map<byte[], byte[]> fromValueMap(Map<byte[], byte[]> byteMap) {
+		if (byteMap == null) return null;
+		
+		Map<byte[], byte[]> map = new JedisByteHashMap();
+		for (Map.Entry<byte[], byte[]> entry : byteMap.entrySet()) {
+			map.put(entry.getKey(), fromValueBytes(entry.getValue()));
 		}
+		return map;
 	}
 	
 	/**
-	 * 得到Jedis实例用来执行watch,multi,pipelined等未实现的命令
-	 * 用完一定记得用
-	 * finally {
-	 *     jedis.close();
-	 * }
-	 * 将实例返回连接池
+	 * 还原blpop,brpop读取到的key与值
+	 * @param keyValue
 	 * @return
 	 */
-	public static Jedis getJedis() {
-		if (jedisSentinelPool != null) {
-			return jedisSentinelPool.getResource();
-		} else if (jedisPool != null) {
-			return jedisPool.getResource();
-		} else {
-			throw new RuntimeException("jedis not ready");
+	private static List<byte[]> fromPopBytes(List<byte[]> keyValue) {
+		if (keyValue == null || keyValue.size() < 2) return keyValue;
+		
+		return Arrays.asList(keyValue.get(0), fromValueBytes(keyValue.get(1)));
+	}
+	
+	/**
+	 * 还原hscan读取到的字段与值
+	 * @param byteResult
+	 * @return
+	 */
+	private static ScanResult<Map.Entry<byte[], byte[]>> fromValueScan(ScanResult<Map.Entry<byte[], byte[]>> byteResult) {
+		List<Map.Entry<byte[], byte[]>> list = new ArrayList<>(byteResult.getResult().size());
+		for (Map.Entry<byte[], byte[]> entry : byteResult.getResult()) {
+			list.add(new AbstractMap.SimpleEntry<>(entry.getKey(), fromValueBytes(entry.getValue())));
 		}
+		return new ScanResult<>(byteResult.getCursorAsBytes(), list);
 	}
 	
 	/**
-	 * 将对象转成字节数组保存
-	 * redis值不能为null
-	 * @param object
+	 * 将字节数组还原为指定类型的对象
+	 * String,Number,Boolean,byte[]按照toBytes的规则还原，其余对象通过编码方式解码
+	 * 更换编码方式后，仍然可以读取原有的java序列化数据
+	 * @param bytes
+	 * @param type
 	 * @return
 	 */
-	private static byte[] toBytes(Object object) {
-		if (object == null) return null;
+	@SuppressWarnings("unchecked")
+	static <T> T toObject(byte[] bytes, Class<T> type) {
+		if (bytes == null) return null;
 		
-		if (object instanceof String) {
-			return ((String)object).getBytes(StandardCharsets.UTF_8);
-		} else if (object instanceof byte[]) {
-			return (byte[])object;
-		} else if (object instanceof Boolean) {
-			return object.toString().getBytes(StandardCharsets.UTF_8);
-		} else if (object instanceof Number) {
-			return object.toString().getBytes(StandardCharsets.UTF_8);
+		if (type == byte[].class) {
+			return (T)bytes;
+		} else if (type == String.class) {
+			return (T)toString(bytes);
+		} else if (type == Boolean.class || type == boolean.class) {
+			return (T)Boolean.valueOf(toString(bytes));
+		} else if (type == Integer.class || type == int.class) {
+			long value = toLong(bytes);
+			if (value != (int)value) throw new NumberFormatException("value out of int range:" + value);
+			return (T)Integer.valueOf((int)value);
+		} else if (type == Long.class || type == long.class) {
+			return (T)Long.valueOf(toLong(bytes));
+		} else if (type == Double.class || type == double.class) {
+			return (T)Double.valueOf(toDouble(bytes));
+		} else if (type == Float.class || type == float.class) {
+			return (T)Float.valueOf(toString(bytes));
+		} else if (type == Short.class || type == short.class) {
+			return (T)Short.valueOf(toString(bytes));
+		} else if (type == Byte.class || type == byte.class) {
+			return (T)Byte.valueOf(toString(bytes));
+		} else if (type == BigDecimal.class) {
+			return (T)new BigDecimal(toString(bytes));
+		} else if (type == BigInteger.class) {
+			return (T)new BigInteger(toString(bytes));
+		} else if (bytes.length > 1 && bytes[0] == (byte)0xAC && bytes[1] == (byte)0xED && !(codec instanceof RedisJavaCodec)) {
+			//java序列化数据的魔数
+			return type.cast(ObjectUtils.deserialize(bytes));
 		} else {
-			return ObjectUtils.serialize(object);
+			return codec.decode(bytes, type);
 		}
 	}
 	
 	/**
-	 * 将多个对象转换成字节数组
-	 * @param objects
+	 * 将字节数组的数组还原为指定类型的对象数组
+	 * @param byteList
+	 * @param type
 	 * @return
 	 */
-	private static byte[][] toBytes(Object... objects) {
-		if (objects == null) return null;
+	static <T> List<T> toObject(List<byte[]> byteList, Class<T> type) {
+		if (byteList == null) return null;
 		
-		byte[][] bytes = new byte[objects.length][];
-		for (int i = 0; i < objects.length; i++) {
-			bytes[i] = toBytes(objects[i]);
+		List<T> list = new ArrayList<>(byteList.size());
+		for (byte[] bytes : byteList) {
+			list.add(toObject(bytes, type));
 		}
-		return bytes;
+		return list;
 	}
 	
 	/**
-	 * 将Map内容转换为字节数组
-	 * @param map
+	 * 将字节数组的集合还原为指定类型的对象集合
+	 * @param byteSet
+	 * @param type
 	 * @return
 	 */
-	private static Map<byte[], byte[]> toBytes(Map<?, ?> map) {
-		if (map == null) return null;
+	static <T> Set<T> toObject(Set<byte[]> byteSet, Class<T> type) {
+		if (byteSet == null) return null;
 		
-		Map<byte[], byte[]> byteMap = new HashMap<>(map.size());
-		for (Map.Entry<?, ?> entry : map.entrySet()) {
-			byteMap.put(toBytes(entry.getKey()), toBytes(entry.getValue()));
+		Set<T> set = new HashSet<>(byteSet.size() * 4 / 3 + 1);
+		for (byte[] bytes : byteSet) {
+			set.add(toObject(bytes, type));
 		}
-		return byteMap;
+		return set;
 	}
 	
 	/**
-	 * 将Map内容转换为字节数组
-	 * @param map
+	 * 将字节数组的Map还原为字符串字段与指定类型值的Map
+	 * @param byteMap
+	 * @param type
 	 * @return
 	 */
-	private static Map<byte[], Double> toBytesZ(Map<?, Double> map) {
-		if (map == null) return null;
+	static <T> Map<String, T> toObject(Map<byte[], byte[]> byteMap, Class<T> type) {
+		if (byteMap == null) return null;
 		
-		Map<byte[], Double> byteMap = new HashMap<>(map.size());
-		for (Map.Entry<?, Double> entry : map.entrySet()) {
-			byteMap.put(toBytes(entry.getKey()), entry.getValue());
+		Map<String, T> map = new HashMap<>(byteMap.size() * 4 / 3 + 1);
+		for (Map.Entry<byte[], byte[]> entry : byteMap.entrySet()) {
+			map.put(toString(entry.getKey()), toObject(entry.getValue(), type));
 		}
-		return byteMap;
+		return map;
 	}
 	
 	/**
@@ -270,31 +1136,202 @@ public class RedisUtils {
 	 * @param bytes
 	 * @return
 	 */
-	private static String toString(byte[] bytes) {
+	static String toString(byte[] bytes) {
 		if (bytes == null) return null;
 		return new String(bytes, StandardCharsets.UTF_8);
 	}
 	
+	/**
+	 * 将10进制的字节数组直接解析为整数，不经过字符串
+	 * @param bytes
+	 * @return
+	 * @throws NumberFormatException 不是整数或超出long的范围
+	 */
+	static long toLong(byte[] bytes) {
+		int length = bytes.length;
+		boolean negative = length > 0 && bytes[0] == '-';
+		int start = negative ? 1 : 0;
+		if (length == start || length - start > 19) return parseLong(bytes);
+		
+		//按负数累加，以容纳Long.MIN_VALUE
+		long value = 0;
+		for (int i = start; i < length; i++) {
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9) return parseLong(bytes);
+			
+			long next = value * 10 - digit;
+			if (next > value) return parseLong(bytes);
+			value = next;
+		}
+		
+		if (negative) return value;
+		if (value == Long.MIN_VALUE) return parseLong(bytes);
+		return -value;
+	}
+	
+	/**
+	 * 少见的格式与错误交给Long.parseLong处理，与原来的解析结果保持一致
+	 * @param bytes
+	 * @return
+	 */
+	private static long parseLong(byte[] bytes) {
+		return Long.parseLong(new String(bytes, StandardCharsets.ISO_8859_1));
+	}
+	
+	/**
+	 * 将字节数组解析为浮点数
+	 * 整数直接解析，带有小数点或指数时交给Double.parseDouble处理
+	 * @param bytes
+	 * @return
+	 * @throws NumberFormatException 不是数字
+	 */
+	static double toDouble(byte[] bytes) {
+		int length = bytes.length;
+		int start = length > 0 && bytes[0] == '-' ? 1 : 0;
+		//15位以内的整数可以精确表示为double
+		if (length > start && length - start <= 15) {
+			boolean integer = true;
+			for (int i = start; i < length && integer; i++) {
+				integer = bytes[i] >= '0' && bytes[i] <= '9';
+			}
+			if (integer) {
+				long value = toLong(bytes);
+				return value == 0 && start == 1 ? -0.0 : value;
+			}
+		}
+		
+		return Double.parseDouble(new String(bytes, StandardCharsets.ISO_8859_1));
+	}
+	
 	/**
 	 * 将字节数组的数组转成字符串数组返回
+	 * 总字节数达到decode.parallelBytes时才分段并行转换，否则在当前线程中转换
 	 * @param byteList
 	 * @return
 	 */
-	private static List<String> toString(List<byte[]> byteList) {
+	static List<String> toString(List<byte[]> byteList) {
 		if (byteList == null) return null;
 		
-		return byteList.parallelStream().map(bytes -> toString(bytes)).collect(Collectors.toList());
+		return new ArrayList<>(Arrays.asList(toStringArray(byteList)));
 	}
 	
 	/**
 	 * 将字节数组的集合转成字符串集合返回
+	 * 总字节数达到decode.parallelBytes时才分段并行转换，否则在当前线程中转换
+	 * @param byteSet
+	 * @return
+	 */
+	static Set<String> toString(Set<byte[]> byteSet) {
+		if (byteSet == null) return null;
+		
+		String[] strings = toStringArray(byteSet);
+		Set<String> set = new HashSet<>(strings.length * 4 / 3 + 1);
+		Collections.addAll(set, strings);
+		return set;
+	}
+	
+	/**
+	 * 将多个字节数组转换成字符串
+	 * @param byteCollection
+	 * @return
+	 */
+	private static String[] toStringArray(Collection<byte[]> byteCollection) {
+		byte[][] byteArray = byteCollection.toArray(new byte[byteCollection.size()][]);
+		String[] strings = new String[byteArray.length];
+		
+		if (isLargeBatch(byteArray)) {
+			Arrays.parallelSetAll(strings, i -> toString(byteArray[i]));
+		} else {
+			for (int i = 0; i < byteArray.length; i++) {
+				strings[i] = toString(byteArray[i]);
+			}
+		}
+		return strings;
+	}
+	
+	/**
+	 * 总字节数是否达到并行转换的阈值
+	 * 小批量转换的耗时低于提交到ForkJoinPool的开销，并且会与应用的并行任务争抢线程
+	 * @param byteArray
+	 * @return
+	 */
+	private static boolean isLargeBatch(byte[][] byteArray) {
+		if (decodeParallelBytes <= 0 || byteArray.length < 2) return false;
+		
+		long total = 0;
+		for (byte[] bytes : byteArray) {
+			if (bytes != null) total += bytes.length;
+			if (total >= decodeParallelBytes) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * 将字节数组的数组包装为字符串数组的只读视图，访问元素时才转换，转换结果会被保留
+	 * 用于只访问结果中少量元素的情况，如asStringList(lrangeBytes(key, 0, -1)).get(0)
+	 * @param byteList
+	 * @return
+	 */
+	public static List<String> asStringList(List<byte[]> byteList) {
+		if (byteList == null) return null;
+		
+		byte[][] byteArray = byteList.toArray(new byte[byteList.size()][]);
+		String[] strings = new String[byteArray.length];
+		return new AbstractList<String>() {
+			
+			@Override
+			public String get(int index) {
+				String string = strings[index];
+				if (string == null && byteArray[index] != null) {
+					string = RedisUtils.toString(byteArray[index]);
+					strings[index] = string;
+				}
+				return string;
+			}
+			
+			@Override
+			public int size() {
+				return byteArray.length;
+			}
+			
+		};
+	}
+	
+	/**
+	 * 将字节数组的集合包装为字符串集合的只读视图，遍历时才转换
+	 * contains需要遍历转换，需要多次查找时使用{@link #toString(Set)}的结果
 	 * @param byteSet
 	 * @return
 	 */
-	private static Set<String> toString(Set<byte[]> byteSet) {
+	public static Set<String> asStringSet(Set<byte[]> byteSet) {
 		if (byteSet == null) return null;
 		
-		return byteSet.parallelStream().map(bytes -> toString(bytes)).collect(Collectors.toSet());
+		return new AbstractSet<String>() {
+			
+			@Override
+			public Iterator<String> iterator() {
+				Iterator<byte[]> iterator = byteSet.iterator();
+				return new Iterator<String>() {
+					
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+					
+					@Override
+					public String next() {
+						return RedisUtils.toString(iterator.next());
+					}
+					
+				};
+			}
+			
+			@Override
+			public int size() {
+				return byteSet.size();
+			}
+			
+		};
 	}
 	
 	/**
@@ -312,7 +1349,7 @@ public class RedisUtils {
 	 * @param byteMap
 	 * @return
 	 */
-	private static Map<String, String> toString(Map<byte[], byte[]> byteMap) {
+	static Map<String, String> toString(Map<byte[], byte[]> byteMap) {
 		if (byteMap == null) return null;
 		
 		Map<String, String> map = new HashMap<>(byteMap.size());
@@ -484,11 +1521,11 @@ public class RedisUtils {
 	 * @return 网络延时(纳秒)
 	 */
 	public static long ping() {
-		try (Jedis jedis = getJedis()) {
+		return execute("ping", jedis -> {
 			long now = System.nanoTime();
 			jedis.ping();
 			return System.nanoTime() - now;
-		}
+		});
 	}
 	
 	/**
@@ -498,19 +1535,20 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static List<String> time() {
-		try (Jedis jedis = getJedis()) {
-			return jedis.time();
-		}
+		return execute("time", jedis -> jedis.time());
 	}
 	
 	/**
 	 * 得到当前库里key的数量
+	 * 集群模式下为所有主节点key数量之和
 	 * @return
 	 */
 	public static long dbSize() {
-		try (Jedis jedis = getJedis()) {
-			return jedis.dbSize();
+		long size = 0;
+		for (Long nodeSize : executeAll("dbSize", jedis -> jedis.dbSize())) {
+			size += nodeSize;
 		}
+		return size;
 	}
 	
 	/**
@@ -518,27 +1556,23 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long lastsave() {
-		try (Jedis jedis = getJedis()) {
-			return jedis.lastsave();
-		}
+		return execute("lastsave", jedis -> jedis.lastsave());
 	}
 	
 	/**
 	 * 启动异步aof文件重写任务
+	 * 集群模式下在所有主节点上执行
 	 */
 	public static void bgrewriteaof() {
-		try (Jedis jedis = getJedis()) {
-			jedis.bgrewriteaof();
-		}
+		executeAll("bgrewriteaof", jedis -> jedis.bgrewriteaof());
 	}
 	
 	/**
 	 * 启动异步文件备份任务
+	 * 集群模式下在所有主节点上执行
 	 */
 	public static void bgsave() {
-		try (Jedis jedis = getJedis()) {
-			jedis.bgsave();
-		}
+		executeAll("bgsave", jedis -> jedis.bgsave());
 	}
 	
 	/**
@@ -547,20 +1581,32 @@ public class RedisUtils {
 	 * @return 成功返回true，key不存在返回false
 	 */
 	public static boolean del(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.del(toBytes(key)) == 1L;
-		}
+		return executeWrite("del", key, jedis -> jedis.del(toBytes(key)) == 1L);
 	}
 	
 	/**
 	 * 删除指定的多个key
 	 * @param keys
+	 * 集群模式下key可以分布在不同的slot中
 	 * @return 被实际删除的key个数
 	 */
 	public static long del(Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.del(toBytes(keys));
+		if (nodes == null) return executeWrite("del", keys, jedis -> jedis.del(toBytes(keys)));
+		
+		long[] count = new long[1];
+		try {
+			byte[][] rawKeys = toBytes(keys);
+			sample(rawKeys);
+			measure("del", () -> {
+				nodes.executeBySlot(rawKeys, 1, (pipeline, slotKeys) -> pipeline.del(slotKeys), (jedis, slotKeys) -> jedis.del(slotKeys), (indexes, slotCount) -> count[0] += slotCount);
+				return null;
+			});
+		} finally {
+			for (Object key : keys) {
+				invalidate(key);
+			}
 		}
+		return count[0];
 	}
 	
 	/**
@@ -569,21 +1615,27 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static boolean exists(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.exists(toBytes(key));
-		}
+		return execute("exists", key, jedis -> jedis.exists(toBytes(key)));
 	}
 	
 	/**
 	 * 检查多个key是否在缓存中存在，返回存在的key的总个数
 	 * 如果一个key在参数中重复多次，则会被统计多次
+	 * 集群模式下key可以分布在不同的slot中
 	 * @param keys
 	 * @return
 	 */
 	public static long exists(Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.exists(toBytes(keys));
-		}
+		if (nodes == null) return execute("exists", keys, jedis -> jedis.exists(toBytes(keys)));
+		
+		long[] count = new long[1];
+		byte[][] rawKeys = toBytes(keys);
+		sample(rawKeys);
+		measure("exists", () -> {
+			nodes.executeBySlot(rawKeys, 1, (pipeline, slotKeys) -> pipeline.exists(slotKeys), (jedis, slotKeys) -> jedis.exists(slotKeys), (indexes, slotCount) -> count[0] += slotCount);
+			return null;
+		});
+		return count[0];
 	}
 	
 	/**
@@ -598,9 +1650,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static boolean expire(Object key, int seconds) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.expire(toBytes(key), seconds) == 1L;
-		}
+		return executeWrite("expire", key, jedis -> jedis.expire(toBytes(key), seconds) == 1L);
 	}
 	
 	/**
@@ -611,9 +1661,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static boolean expireAt(Object key, long unixTime) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.expireAt(toBytes(key), unixTime) == 1L;
-		}
+		return executeWrite("expireAt", key, jedis -> jedis.expireAt(toBytes(key), unixTime) == 1L);
 	}
 	
 	/**
@@ -623,9 +1671,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static boolean pexpire(Object key, long milliseconds) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.pexpire(toBytes(key), milliseconds) == 1L;
-		}
+		return executeWrite("pexpire", key, jedis -> jedis.pexpire(toBytes(key), milliseconds) == 1L);
 	}
 	
 	/**
@@ -635,9 +1681,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static boolean pexpireAt(Object key, long millisecondsTimestamp) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.pexpireAt(toBytes(key), millisecondsTimestamp) == 1L;
-		}
+		return executeWrite("pexpireAt", key, jedis -> jedis.pexpireAt(toBytes(key), millisecondsTimestamp) == 1L);
 	}
 	
 	/**
@@ -647,9 +1691,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long ttl(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.ttl(toBytes(key));
-		}
+		return execute("ttl", key, jedis -> jedis.ttl(toBytes(key)));
 	}
 	
 	/**
@@ -658,9 +1700,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long pttl(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.pttl(toBytes(key));
-		}
+		return execute("pttl", key, jedis -> jedis.pttl(toBytes(key)));
 	}
 	
 	/**
@@ -669,9 +1709,7 @@ public class RedisUtils {
 	 * @return 取消过期时间成功与否(不存在或原来没有过期)
 	 */
 	public static boolean persist(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.persist(toBytes(key)) == 1L;
-		}
+		return executeWrite("persist", key, jedis -> jedis.persist(toBytes(key)) == 1L);
 	}
 	
 	/**
@@ -682,9 +1720,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Long idle(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.objectIdletime(toBytes(key));
-		}
+		return execute("objectIdletime", key, jedis -> jedis.objectIdletime(toBytes(key)));
 	}
 	
 	/**
@@ -695,9 +1731,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static String type(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.type(toBytes(key));
-		}
+		return execute("type", key, jedis -> jedis.type(toBytes(key)));
 	}
 	
 	/**
@@ -709,9 +1743,7 @@ public class RedisUtils {
 	 * @return 是否转移成功
 	 */
 	public static boolean move(Object key, int dbIndex) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.move(toBytes(key), dbIndex) == 1L;
-		}
+		return executeWrite("move", key, jedis -> jedis.move(toBytes(key), dbIndex) == 1L);
 	}
 	
 	/**
@@ -722,9 +1754,7 @@ public class RedisUtils {
 	 * @param newkey
 	 */
 	public static void rename(Object oldkey, Object newkey) {
-		try (Jedis jedis = getJedis()) {
-			jedis.rename(toBytes(oldkey), toBytes(newkey));
-		}
+		executeWrite("rename", new Object[] {oldkey, newkey}, jedis -> jedis.rename(toBytes(oldkey), toBytes(newkey)));
 	}
 	
 	/**
@@ -736,9 +1766,7 @@ public class RedisUtils {
 	 * @return 是否更名成功
 	 */
 	public static boolean renamenx(Object oldkey, Object newkey) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.renamenx(toBytes(oldkey), toBytes(newkey)) == 1L;
-		}
+		return executeWrite("renamenx", new Object[] {oldkey, newkey}, jedis -> jedis.renamenx(toBytes(oldkey), toBytes(newkey)) == 1L);
 	}
 	
 	/**
@@ -748,9 +1776,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] dump(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.dump(toBytes(key));
-		}
+		return execute("dump", key, jedis -> jedis.dump(toBytes(key)));
 	}
 	
 	/**
@@ -760,9 +1786,7 @@ public class RedisUtils {
 	 * @param serializedValue
 	 */
 	public static void restore(Object key, int ttl, byte[] serializedValue) {
-		try (Jedis jedis = getJedis()) {
-			jedis.restore(toBytes(key), ttl, serializedValue);
-		}
+		executeWrite("restore", key, jedis -> jedis.restore(toBytes(key), ttl, serializedValue));
 	}
 	
 	/**
@@ -771,9 +1795,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] randomKeyBytes() {
-		try (Jedis jedis = getJedis()) {
-			return jedis.randomBinaryKey();
-		}
+		return execute("randomBinaryKey", jedis -> jedis.randomBinaryKey());
 	}
 	
 	/**
@@ -791,9 +1813,14 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> keysBytes(String pattern) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.keys(toBytes(pattern));
+		List<Set<byte[]>> results = executeAll("keys", jedis -> jedis.keys(toBytes(pattern)));
+		if (results.size() == 1) return results.get(0);
+		
+		Set<byte[]> keys = new HashSet<>();
+		for (Set<byte[]> nodeKeys : results) {
+			keys.addAll(nodeKeys);
 		}
+		return keys;
 	}
 	
 	/**
@@ -812,9 +1839,62 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static ScanResult<byte[]> scanBytes(String cursor) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.scan(toBytes(cursor));
+		return scanBytes(cursor, null, null);
+	}
+	
+	/**
+	 * 迭代得到库中所有的key
+	 * 保证在完整迭代周期内始终存在的元素一定会返回
+	 * 保证在完整迭代周期内始终不存在的元素一定不会返回
+	 * 其他情况的元素返回性不能保证，有可能不返回，有可能重复返回多次
+	 * 一次返回的元素个数不定，有可能为0
+	 * 集群模式下依次迭代所有主节点
+	 * @param cursor 游标以0开始，以0结束
+	 * @return
+	 */
+	public static ScanResult<String> scan(String cursor) {
+		return toString(scanBytes(cursor));
+	}
+	
+	/**
+	 * 同{@link #scan(String, String, Integer)}原理
+	 * @param cursor
+	 * @param match
+	 * @param count
+	 * @return
+	 */
+	public static ScanResult<byte[]> scanBytes(String cursor, String match, Integer count) {
+		ScanParams params = toScanParams(match, count);
+		if (nodes == null) return execute("scan", jedis -> jedis.scan(toBytes(cursor), params));
+		
+		//集群模式下游标格式为 主节点序号:节点游标
+		int node = 0;
+		String nodeCursor = cursor;
+		int index = cursor.indexOf(':');
+		if (index > 0) {
+			node = Integer.parseInt(cursor.substring(0, index));
+			nodeCursor = cursor.substring(index + 1);
+		}
+		
+		List<JedisPool> masters = nodes.getMasterPools();
+		if (node >= masters.size()) return new ScanResult<>(toBytes("0"), new ArrayList<>());
+		
+		JedisPool pool = masters.get(node);
+		String scanCursor = nodeCursor;
+		ScanResult<byte[]> result = measure("scan", () -> {
+			try (Jedis jedis = pool.getResource()) {
+				return jedis.scan(toBytes(scanCursor), params);
+			}
+		});
+		
+		String next = result.getStringCursor();
+		if ("0".equals(next)) {
+			if (++node >= masters.size()) return result;
+			next = node + ":0";
+		} else {
+			next = node + ":" + next;
 		}
+		return new ScanResult<>(toBytes(next), result.getResult());
 	}
 	
 	/**
@@ -823,39 +1903,68 @@ public class RedisUtils {
 	 * 保证在完整迭代周期内始终不存在的元素一定不会返回
 	 * 其他情况的元素返回性不能保证，有可能不返回，有可能重复返回多次
 	 * 一次返回的元素个数不定，有可能为0
+	 * 集群模式下依次迭代所有主节点
 	 * @param cursor 游标以0开始，以0结束
+	 * @param match 支持*?[ae][a-e][^e]转义为\
+	 * @param count 希望一次返回的元素数量，但并不保证
+	 * @return
+	 */
+	public static ScanResult<String> scan(String cursor, String match, Integer count) {
+		return toString(scanBytes(cursor, match, count));
+	}
+	
+	/**
+	 * 同{@link #scanAll(String, Integer)}原理
+	 * @param match
+	 * @param count
+	 * @return
+	 */
+	public static Stream<byte[]> scanAllBytes(String match, Integer count) {
+		ScanParams params = toScanParams(match, count == null ? scanCount : count);
+		if (nodes == null) return new RedisScanIterator<>((byte[] cursor) -> execute("scan", jedis -> jedis.scan(cursor, params))).stream();
+		
+		//集群模式下并行迭代所有主节点
+		List<Function<byte[], ScanResult<byte[]>>> scanners = new ArrayList<>();
+		for (JedisPool pool : nodes.getMasterPools()) {
+			scanners.add(cursor -> measure("scan", () -> {
+				try (Jedis jedis = pool.getResource()) {
+					return jedis.scan(cursor, params);
+				}
+			}));
+		}
+		return new RedisScanIterator<>(scanners, nodes.getExecutor()).stream();
+	}
+	
+	/**
+	 * 同{@link #scanAll()}原理
 	 * @return
 	 */
-	public static ScanResult<String> scan(String cursor) {
-		return toString(scanBytes(cursor));
+	public static Stream<byte[]> scanAllBytes() {
+		return scanAllBytes(null, null);
 	}
 	
 	/**
-	 * 同{@link #scan(String, String, Integer)}原理
-	 * @param cursor
-	 * @param match
-	 * @param count
+	 * 自动翻页迭代库中所有的key，规则与{@link #scan(String, String, Integer)}相同
+	 * 集群模式下所有主节点并行迭代，各节点的key交错返回
+	 * 提前结束时需要关闭Stream，以停止后台线程
+	 * try (Stream&lt;String&gt; keys = RedisUtils.scanAll("user:*", null)) {
+	 *     keys.forEach(key -&gt; ...);
+	 * }
+	 * 需要Iterator时使用Stream.iterator()
+	 * @param match 支持*?[ae][a-e][^e]转义为\
+	 * @param count 每页希望返回的元素数量，为null时使用scan.count设置
 	 * @return
 	 */
-	public static ScanResult<byte[]> scanBytes(String cursor, String match, Integer count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.scan(toBytes(cursor), toScanParams(match, count));
-		}
+	public static Stream<String> scanAll(String match, Integer count) {
+		return scanAllBytes(match, count).map(RedisUtils::toString);
 	}
 	
 	/**
-	 * 迭代得到库中所有的key
-	 * 保证在完整迭代周期内始终存在的元素一定会返回
-	 * 保证在完整迭代周期内始终不存在的元素一定不会返回
-	 * 其他情况的元素返回性不能保证，有可能不返回，有可能重复返回多次
-	 * 一次返回的元素个数不定，有可能为0
-	 * @param cursor 游标以0开始，以0结束
-	 * @param match 支持*?[ae][a-e][^e]转义为\
-	 * @param count 希望一次返回的元素数量，但并不保证
+	 * 自动翻页迭代库中所有的key
 	 * @return
 	 */
-	public static ScanResult<String> scan(String cursor, String match, Integer count) {
-		return toString(scanBytes(cursor, match, count));
+	public static Stream<String> scanAll() {
+		return scanAll(null, null);
 	}
 	
 	/**
@@ -864,9 +1973,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static List<byte[]> sortBytes(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sort(toBytes(key));
-		}
+		return execute("sort", key, jedis -> jedis.sort(toBytes(key)));
 	}
 	
 	/**
@@ -890,9 +1997,7 @@ public class RedisUtils {
 	 * @return 插入的元素数量
 	 */
 	public static long sort(Object key, Object dstkey) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sort(toBytes(key), toBytes(dstkey));
-		}
+		return executeStore("sort", dstkey, new Object[] {key, dstkey}, jedis -> jedis.sort(toBytes(key), toBytes(dstkey)));
 	}
 	
 	/**
@@ -907,9 +2012,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static List<byte[]> sortBytes(Object key, String by, String ascdesc, String alpha, Integer offset, Integer count, String... get) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sort(toBytes(key), toSortingParams(by, ascdesc, alpha, offset, count, get));
-		}
+		return execute("sort", key, jedis -> jedis.sort(toBytes(key), toSortingParams(by, ascdesc, alpha, offset, count, get)));
 	}
 	
 	/**
@@ -941,9 +2044,7 @@ public class RedisUtils {
 	 * @return 插入的元素数量
 	 */
 	public static long sort(Object key, Object dstkey, String by, String ascdesc, String alpha, Integer offset, Integer count, String... get) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sort(toBytes(key), toSortingParams(by, ascdesc, alpha, offset, count, get), toBytes(dstkey));
-		}
+		return executeStore("sort", dstkey, new Object[] {key, dstkey}, jedis -> jedis.sort(toBytes(key), toSortingParams(by, ascdesc, alpha, offset, count, get), toBytes(dstkey)));
 	}
 	
 	/********** string命令 **********/
@@ -956,9 +2057,7 @@ public class RedisUtils {
 	 * @return 操作结果
 	 */
 	public static boolean set(Object key, Object value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.set(toBytes(key), toBytes(value)) != null;
-		}
+		return executeWrite("set", key, jedis -> jedis.set(toBytes(key), toValueBytes(value)) != null);
 	}
 	
 	/**
@@ -970,9 +2069,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static boolean set(Object key, Object value, String nxxx) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.set(toBytes(key), toBytes(value), toBytes(nxxx)) != null;
-		}
+		return executeWrite("set", key, jedis -> jedis.set(toBytes(key), toValueBytes(value), toBytes(nxxx)) != null);
 	}
 	
 	/**
@@ -985,9 +2082,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static boolean set(Object key, Object value, String nxxx, String expx, long time) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.set(toBytes(key), toBytes(value), toBytes(nxxx), toBytes(expx), time) != null;
-		}
+		return executeWrite("set", key, jedis -> jedis.set(toBytes(key), toValueBytes(value), toBytes(nxxx), toBytes(expx), time) != null);
 	}
 	
 	/**
@@ -996,9 +2091,21 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] getBytes(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.get(toBytes(key));
-		}
+		if (nearCache != null) return nearCache.get(toBytes(key), () -> loadBytes(key));
+		
+		return loadBytes(key);
+	}
+	
+	/**
+	 * 从redis中读取key的值
+	 * 开启合并读取时，与其他线程同时发起的读取合并为一次mget
+	 * @param key
+	 * @return
+	 */
+	private static byte[] loadBytes(Object key) {
+		if (getCoalescer != null) return getCoalescer.get(toBytes(key));
+		
+		return fromValueBytes(execute("get", key, jedis -> jedis.get(toBytes(key))));
 	}
 	
 	/**
@@ -1010,13 +2117,99 @@ public class RedisUtils {
 		return toString(getBytes(key));
 	}
 	
+	/**
+	 * 从缓存中根据key取得其值并还原为指定类型，如果key不存在则返回null
+	 * @param key
+	 * @param type
+	 * @return
+	 */
+	public static <T> T get(Object key, Class<T> type) {
+		return toObject(getBytes(key), type);
+	}
+	
+	/**
+	 * 从缓存中根据key取得整数值，直接解析字节，不经过字符串
+	 * @param key
+	 * @param defaultValue key不存在时返回的值
+	 * @return
+	 * @throws NumberFormatException 值不是整数
+	 */
+	public static long getLong(Object key, long defaultValue) {
+		byte[] bytes = getBytes(key);
+		return bytes == null ? defaultValue : toLong(bytes);
+	}
+	
+	/**
+	 * 从缓存中根据key取得浮点数值
+	 * @param key
+	 * @param defaultValue key不存在时返回的值
+	 * @return
+	 * @throws NumberFormatException 值不是数字
+	 */
+	public static double getDouble(Object key, double defaultValue) {
+		byte[] bytes = getBytes(key);
+		return bytes == null ? defaultValue : toDouble(bytes);
+	}
+	
+	/**
+	 * 从缓存中取得key的值，如果key不存在则由loader加载并缓存
+	 * 同一个key在所有进程中同时只有一个加载，缓存过期前按概率提前在后台刷新
+	 * 写入的值与set相同，加载耗时保存在同一个slot的辅助key中
+	 * @param key
+	 * @param seconds 过期时间(秒)
+	 * @param loader 返回null时不缓存
+	 * @return
+	 */
+	public static byte[] getOrLoadBytes(Object key, int seconds, Supplier<?> loader) {
+		return cacheLoader.get(key, seconds, loader);
+	}
+	
+	/**
+	 * 从缓存中取得key的值，如果key不存在则由loader加载并缓存
+	 * 同一个key在所有进程中同时只有一个加载，缓存过期前按概率提前在后台刷新
+	 * 写入的值与set相同，加载耗时保存在同一个slot的辅助key中
+	 * @param key
+	 * @param seconds 过期时间(秒)
+	 * @param loader 返回null时不缓存
+	 * @return
+	 */
+	public static String getOrLoad(Object key, int seconds, Supplier<?> loader) {
+		return toString(getOrLoadBytes(key, seconds, loader));
+	}
+	
+	/**
+	 * 从缓存中取得key的值并还原为指定类型，如果key不存在则由loader加载并缓存
+	 * @param key
+	 * @param seconds 过期时间(秒)
+	 * @param type
+	 * @param loader 返回null时不缓存
+	 * @return
+	 */
+	public static <T> T getOrLoad(Object key, int seconds, Class<T> type, Supplier<? extends T> loader) {
+		return toObject(getOrLoadBytes(key, seconds, loader), type);
+	}
+	
 	/**
 	 * 一次性设置多个key的值
+	 * 集群模式下key可以分布在不同的slot中，但各个slot之间不保证原子性
 	 * @param keysvalues
 	 */
 	public static void mset(Object... keysvalues) {
-		try (Jedis jedis = getJedis()) {
-			jedis.mset(toBytes(keysvalues));
+		if (nodes == null) {
+			executeWrite("mset", toMsetKeys(keysvalues), jedis -> jedis.mset(toMsetBytes(keysvalues)));
+			return;
+		}
+		
+		try {
+			sample(toMsetKeys(keysvalues));
+			measure("mset", () -> {
+				nodes.executeBySlot(toMsetBytes(keysvalues), 2, (pipeline, slotKeysvalues) -> pipeline.mset(slotKeysvalues), (jedis, slotKeysvalues) -> jedis.mset(slotKeysvalues), (indexes, status) -> {});
+				return null;
+			});
+		} finally {
+			for (Object key : toMsetKeys(keysvalues)) {
+				invalidate(key);
+			}
 		}
 	}
 	
@@ -1028,20 +2221,30 @@ public class RedisUtils {
 	 * @return 是否进行了set操作
 	 */
 	public static boolean msetnx(Object... keysvalues) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.msetnx(toBytes(keysvalues)) == 1L;
-		}
+		return executeWrite("msetnx", toMsetKeys(keysvalues), jedis -> jedis.msetnx(toMsetBytes(keysvalues)) == 1L);
 	}
 	
 	/**
 	 * 一次性取得多个key的值
+	 * 集群模式下key可以分布在不同的slot中，返回值仍然按照参数的顺序排列
 	 * @param keys
 	 * @return
 	 */
 	public static List<byte[]> mgetBytes(Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.mget(toBytes(keys));
-		}
+		if (nodes == null) return fromValueList(execute("mget", keys, jedis -> jedis.mget(toBytes(keys))));
+		
+		List<byte[]> values = new ArrayList<>(Collections.nCopies(keys.length, null));
+		byte[][] rawKeys = toBytes(keys);
+		sample(rawKeys);
+		measure("mget", () -> {
+			nodes.executeBySlot(rawKeys, 1, (pipeline, slotKeys) -> pipeline.mget(slotKeys), (jedis, slotKeys) -> jedis.mget(slotKeys), (indexes, slotValues) -> {
+				for (int i = 0; i < indexes.length; i++) {
+					values.set(indexes[i], fromValueBytes(slotValues.get(i)));
+				}
+			});
+			return null;
+		});
+		return values;
 	}
 	
 	/**
@@ -1053,6 +2256,110 @@ public class RedisUtils {
 		return toString(mgetBytes(keys));
 	}
 	
+	/**
+	 * 一次性取得多个key的值并还原为指定类型
+	 * @param type
+	 * @param keys
+	 * @return
+	 */
+	public static <T> List<T> mget(Class<T> type, Object... keys) {
+		return toObject(mgetBytes(keys), type);
+	}
+	
+	/**
+	 * 一次性取得多个key的整数值，按参数的顺序写入out，不创建中间的字符串与包装对象
+	 * 集群模式下key可以分布在不同的slot中
+	 * @param out 长度不能小于keys的个数
+	 * @param defaultValue key不存在时写入的值
+	 * @param keys
+	 * @return 存在的key的个数
+	 * @throws NumberFormatException 值不是整数
+	 */
+	public static int mgetLongs(long[] out, long defaultValue, Object... keys) {
+		if (out.length < keys.length) throw new IllegalArgumentException("out length " + out.length + " < keys length " + keys.length);
+		
+		if (nodes == null) return toLongs(execute("mget", keys, jedis -> jedis.mget(toBytes(keys))), null, out, defaultValue);
+		
+		int[] found = new int[1];
+		byte[][] rawKeys = toBytes(keys);
+		sample(rawKeys);
+		measure("mget", () -> {
+			nodes.executeBySlot(rawKeys, 1, (pipeline, slotKeys) -> pipeline.mget(slotKeys), (jedis, slotKeys) -> jedis.mget(slotKeys), (indexes, slotValues) -> found[0] += toLongs(slotValues, indexes, out, defaultValue));
+			return null;
+		});
+		return found[0];
+	}
+	
+	/**
+	 * 一次性取得多个key的浮点数值，按参数的顺序写入out
+	 * 集群模式下key可以分布在不同的slot中
+	 * @param out 长度不能小于keys的个数
+	 * @param defaultValue key不存在时写入的值
+	 * @param keys
+	 * @return 存在的key的个数
+	 * @throws NumberFormatException 值不是数字
+	 */
+	public static int mgetDoubles(double[] out, double defaultValue, Object... keys) {
+		if (out.length < keys.length) throw new IllegalArgumentException("out length " + out.length + " < keys length " + keys.length);
+		
+		if (nodes == null) return toDoubles(execute("mget", keys, jedis -> jedis.mget(toBytes(keys))), null, out, defaultValue);
+		
+		int[] found = new int[1];
+		byte[][] rawKeys = toBytes(keys);
+		sample(rawKeys);
+		measure("mget", () -> {
+			nodes.executeBySlot(rawKeys, 1, (pipeline, slotKeys) -> pipeline.mget(slotKeys), (jedis, slotKeys) -> jedis.mget(slotKeys), (indexes, slotValues) -> found[0] += toDoubles(slotValues, indexes, out, defaultValue));
+			return null;
+		});
+		return found[0];
+	}
+	
+	/**
+	 * 将读取到的值解析为整数写入out
+	 * @param values
+	 * @param indexes 每个值在out中的位置，为null时按顺序写入
+	 * @param out
+	 * @param defaultValue 值为null时写入的值
+	 * @return 不为null的值的个数
+	 */
+	private static int toLongs(List<byte[]> values, int[] indexes, long[] out, long defaultValue) {
+		int found = 0;
+		for (int i = 0; i < values.size(); i++) {
+			byte[] bytes = values.get(i);
+			int index = indexes == null ? i : indexes[i];
+			if (bytes == null) {
+				out[index] = defaultValue;
+			} else {
+				out[index] = toLong(fromValueBytes(bytes));
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * 将读取到的值解析为浮点数写入out
+	 * @param values
+	 * @param indexes 每个值在out中的位置，为null时按顺序写入
+	 * @param out
+	 * @param defaultValue 值为null时写入的值
+	 * @return 不为null的值的个数
+	 */
+	private static int toDoubles(List<byte[]> values, int[] indexes, double[] out, double defaultValue) {
+		int found = 0;
+		for (int i = 0; i < values.size(); i++) {
+			byte[] bytes = values.get(i);
+			int index = indexes == null ? i : indexes[i];
+			if (bytes == null) {
+				out[index] = defaultValue;
+			} else {
+				out[index] = toDouble(fromValueBytes(bytes));
+				found++;
+			}
+		}
+		return found;
+	}
+	
 	/**
 	 * 仅当key不存在时才设置value值
 	 * 如果key已经存在，则不做修改
@@ -1061,9 +2368,7 @@ public class RedisUtils {
 	 * @return 是否设置成功
 	 */
 	public static boolean setnx(Object key, Object value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.setnx(toBytes(key), toBytes(value)) == 1L;
-		}
+		return executeWrite("setnx", key, jedis -> jedis.setnx(toBytes(key), toValueBytes(value)) == 1L);
 	}
 	
 	/**
@@ -1073,9 +2378,7 @@ public class RedisUtils {
 	 * @param value
 	 */
 	public static void setex(Object key, int seconds, Object value) {
-		try (Jedis jedis = getJedis()) {
-			jedis.setex(toBytes(key), seconds, toBytes(value));
-		}
+		executeWrite("setex", key, jedis -> jedis.setex(toBytes(key), seconds, toValueBytes(value)));
 	}
 	
 	/**
@@ -1085,9 +2388,7 @@ public class RedisUtils {
 	 * @param value
 	 */
 	public static void psetex(Object key, long milliseconds, Object value) {
-		try (Jedis jedis = getJedis()) {
-			jedis.psetex(toBytes(key), milliseconds, toBytes(value));
-		}
+		executeWrite("psetex", key, jedis -> jedis.psetex(toBytes(key), milliseconds, toValueBytes(value)));
 	}
 	
 	/**
@@ -1098,9 +2399,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] getSetBytes(Object key, Object value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.getSet(toBytes(key), toBytes(value));
-		}
+		return fromValueBytes(executeWrite("getSet", key, jedis -> jedis.getSet(toBytes(key), toValueBytes(value))));
 	}
 	
 	/**
@@ -1123,9 +2422,7 @@ public class RedisUtils {
 	 * @return 返回减少后的新值
 	 */
 	public static long decrBy(Object key, long integer) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.decrBy(toBytes(key), integer);
-		}
+		return executeWrite("decrBy", key, jedis -> jedis.decrBy(toBytes(key), integer));
 	}
 	
 	/**
@@ -1136,9 +2433,7 @@ public class RedisUtils {
 	 * @return 返回减少后的新值
 	 */
 	public static long decr(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.decr(toBytes(key));
-		}
+		return executeWrite("decr", key, jedis -> jedis.decr(toBytes(key)));
 	}
 	
 	/**
@@ -1150,9 +2445,7 @@ public class RedisUtils {
 	 * @return 返回增加后的新值
 	 */
 	public static long incrBy(Object key, long integer) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.incrBy(toBytes(key), integer);
-		}
+		return executeWrite("incrBy", key, jedis -> jedis.incrBy(toBytes(key), integer));
 	}
 	
 	/**
@@ -1164,9 +2457,7 @@ public class RedisUtils {
 	 * @return 返回增加后的新值
 	 */
 	public static double incrByFloat(Object key, double value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.incrByFloat(toBytes(key), value);
-		}
+		return executeWrite("incrByFloat", key, jedis -> jedis.incrByFloat(toBytes(key), value));
 	}
 	
 	/**
@@ -1177,63 +2468,57 @@ public class RedisUtils {
 	 * @return 返回增加后的新值
 	 */
 	public static long incr(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.incr(toBytes(key));
-		}
+		return executeWrite("incr", key, jedis -> jedis.incr(toBytes(key)));
 	}
 	
 	/**
 	 * 将value追加到原有字符串的末尾
 	 * 如果key不存在，则默认原值为空字符串
+	 * value不压缩，原值被{@link #set(Object, Object)}等命令压缩过时抛出JedisDataException
 	 * @param key
 	 * @param value
 	 * @return 新string的长度
 	 */
 	public static long append(Object key, Object value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.append(toBytes(key), toBytes(value));
-		}
+		return executeWrite("append", key, jedis -> (Long)evalUncompressed(jedis, "APPEND", key, value));
 	}
 	
 	/**
 	 * 得到key对应的string的长度
 	 * 如果key不存在则返回0
+	 * 值被压缩过时抛出JedisDataException
 	 * @param key
 	 * @return
 	 */
 	public static long strlen(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.strlen(toBytes(key));
-		}
+		return execute("strlen", key, jedis -> (Long)evalUncompressed(jedis, "STRLEN", key));
 	}
 	
 	/**
 	 * 覆盖key对应的string的一部分，从指定的offset处开始，覆盖value的长度
 	 * 如果offset超过string的长度，则自动增长string直到offset
 	 * 如果key不存在则创建新的string
+	 * value不压缩，原值被{@link #set(Object, Object)}等命令压缩过时抛出JedisDataException
 	 * @param key
 	 * @param offset
 	 * @param value
 	 * @return 新string的长度
 	 */
 	public static long setrange(Object key, long offset, Object value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.setrange(toBytes(key), offset, toBytes(value));
-		}
+		return executeWrite("setrange", key, jedis -> (Long)evalUncompressed(jedis, "SETRANGE", key, offset, value));
 	}
 	
 	/**
 	 * 获得start - end之间的子字符串(包含end)
 	 * 若偏移量为负数，代表从末尾开始计算，例如-1代表倒数第一个，-2代表倒数第二个
+	 * 值被压缩过时抛出JedisDataException
 	 * @param key
 	 * @param startOffset
 	 * @param endOffset
 	 * @return
 	 */
 	public static byte[] getrangeBytes(Object key, long startOffset, long endOffset) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.getrange(toBytes(key), startOffset, endOffset);
-		}
+		return execute("getrange", key, jedis -> (byte[])evalUncompressed(jedis, "GETRANGE", key, startOffset, endOffset));
 	}
 	
 	/**
@@ -1254,9 +2539,7 @@ public class RedisUtils {
 	 */
 	@Deprecated
 	public static byte[] substrBytes(Object key, int start, int end) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.substr(toBytes(key), start, end);
-		}
+		return execute("substr", key, jedis -> jedis.substr(toBytes(key), start, end));
 	}
 	
 	/**
@@ -1282,9 +2565,7 @@ public class RedisUtils {
 	 * @return 原来位置的bit值，如果是1，则返回true，否则返回false
 	 */
 	public static boolean setbit(Object key, long offset, boolean value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.setbit(toBytes(key), offset, value);
-		}
+		return executeWrite("setbit", key, jedis -> jedis.setbit(toBytes(key), offset, value));
 	}
 	
 	/**
@@ -1295,9 +2576,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static boolean setbit(Object key, long offset, String value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.setbit(toBytes(key), offset, toBytes(value));
-		}
+		return executeWrite("setbit", key, jedis -> jedis.setbit(toBytes(key), offset, toBytes(value)));
 	}
 	
 	/**
@@ -1309,9 +2588,7 @@ public class RedisUtils {
 	 * @return true代表1，false代表0
 	 */
 	public static boolean getbit(Object key, long offset) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.getbit(toBytes(key), offset);
-		}
+		return execute("getbit", key, jedis -> jedis.getbit(toBytes(key), offset));
 	}
 	
 	/**
@@ -1321,9 +2598,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long bitcount(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.bitcount(toBytes(key));
-		}
+		return execute("bitcount", key, jedis -> jedis.bitcount(toBytes(key)));
 	}
 	
 	/**
@@ -1335,9 +2610,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long bitcount(Object key, long start, long end) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.bitcount(toBytes(key), start, end);
-		}
+		return execute("bitcount", key, jedis -> jedis.bitcount(toBytes(key), start, end));
 	}
 	
 	/**
@@ -1350,9 +2623,7 @@ public class RedisUtils {
 	 * @return 结果字符串的长度
 	 */
 	public static long bitop(String bitop, Object destKey, Object... srcKeys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.bitop(toBitOP(bitop), toBytes(destKey), toBytes(srcKeys));
-		}
+		return executeWrite("bitop", toKeys(destKey, srcKeys), jedis -> jedis.bitop(toBitOP(bitop), toBytes(destKey), toBytes(srcKeys)));
 	}
 	
 	/**
@@ -1364,9 +2635,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long bitpos(Object key, boolean value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.bitpos(toBytes(key), value);
-		}
+		return execute("bitpos", key, jedis -> jedis.bitpos(toBytes(key), value));
 	}
 	
 	/**
@@ -1382,9 +2651,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long bitpos(Object key, boolean value, long start, Long end) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.bitpos(toBytes(key), value, toBitPosParams(start, end));
-		}
+		return execute("bitpos", key, jedis -> jedis.bitpos(toBytes(key), value, toBitPosParams(start, end)));
 	}
 	
 	/********** hash命令 **********/
@@ -1399,9 +2666,7 @@ public class RedisUtils {
 	 * @return 新增为true，更新为false
 	 */
 	public static boolean hset(Object key, Object field, Object value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hset(toBytes(key), toBytes(field), toBytes(value)) == 1L;
-		}
+		return executeWrite("hset", key, jedis -> jedis.hset(toBytes(key), toBytes(field), toValueBytes(value)) == 1L);
 	}
 	
 	/**
@@ -1412,9 +2677,9 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] hgetBytes(Object key, Object field) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hget(toBytes(key), toBytes(field));
-		}
+		if (nearCache != null) return nearCache.hget(toBytes(key), toBytes(field), () -> fromValueBytes(execute("hget", key, jedis -> jedis.hget(toBytes(key), toBytes(field)))));
+		
+		return fromValueBytes(execute("hget", key, jedis -> jedis.hget(toBytes(key), toBytes(field))));
 	}
 	
 	/**
@@ -1428,6 +2693,18 @@ public class RedisUtils {
 		return toString(hgetBytes(key, field));
 	}
 	
+	/**
+	 * 取得Hash表中字段的值并还原为指定类型
+	 * 如果不存在该字段，或者key不存在，则返回null
+	 * @param key
+	 * @param field
+	 * @param type
+	 * @return
+	 */
+	public static <T> T hget(Object key, Object field, Class<T> type) {
+		return toObject(hgetBytes(key, field), type);
+	}
+	
 	/**
 	 * 设置hash表里field字段的值为value
 	 * 如果key不存在，则创建一个新的hash表
@@ -1438,9 +2715,7 @@ public class RedisUtils {
 	 * @return 是否设置成功
 	 */
 	public static boolean hsetnx(Object key, Object field, Object value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hsetnx(toBytes(key), toBytes(field), toBytes(value)) == 1L;
-		}
+		return executeWrite("hsetnx", key, jedis -> jedis.hsetnx(toBytes(key), toBytes(field), toValueBytes(value)) == 1L);
 	}
 	
 	/**
@@ -1450,9 +2725,7 @@ public class RedisUtils {
 	 * @param hash
 	 */
 	public static void hmset(Object key, Map<?, ?> hash) {
-		try (Jedis jedis = getJedis()) {
-			jedis.hmset(toBytes(key), toBytes(hash));
-		}
+		executeWrite("hmset", key, jedis -> jedis.hmset(toBytes(key), toValueBytes(hash)));
 	}
 	
 	/**
@@ -1464,9 +2737,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static List<byte[]> hmgetBytes(Object key, Object... fields) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hmget(toBytes(key), toBytes(fields));
-		}
+		return fromValueList(execute("hmget", key, jedis -> jedis.hmget(toBytes(key), toBytes(fields))));
 	}
 	
 	/**
@@ -1481,6 +2752,36 @@ public class RedisUtils {
 		return toString(hmgetBytes(key, fields));
 	}
 	
+	/**
+	 * 同时取得hash表里多个field字段的整数值，按参数的顺序写入out
+	 * @param key
+	 * @param out 长度不能小于fields的个数
+	 * @param defaultValue field不存在时写入的值
+	 * @param fields
+	 * @return 存在的field的个数
+	 * @throws NumberFormatException 值不是整数
+	 */
+	public static int hmgetLongs(Object key, long[] out, long defaultValue, Object... fields) {
+		if (out.length < fields.length) throw new IllegalArgumentException("out length " + out.length + " < fields length " + fields.length);
+		
+		return toLongs(execute("hmget", key, jedis -> jedis.hmget(toBytes(key), toBytes(fields))), null, out, defaultValue);
+	}
+	
+	/**
+	 * 同时取得hash表里多个field字段的浮点数值，按参数的顺序写入out
+	 * @param key
+	 * @param out 长度不能小于fields的个数
+	 * @param defaultValue field不存在时写入的值
+	 * @param fields
+	 * @return 存在的field的个数
+	 * @throws NumberFormatException 值不是数字
+	 */
+	public static int hmgetDoubles(Object key, double[] out, double defaultValue, Object... fields) {
+		if (out.length < fields.length) throw new IllegalArgumentException("out length " + out.length + " < fields length " + fields.length);
+		
+		return toDoubles(execute("hmget", key, jedis -> jedis.hmget(toBytes(key), toBytes(fields))), null, out, defaultValue);
+	}
+	
 	/**
 	 * 对hash中指定字段的值增加指定的值
 	 * 如果field不存在，则默认原值为0
@@ -1491,9 +2792,7 @@ public class RedisUtils {
 	 * @return 返回增加后的新值
 	 */
 	public static long hincrBy(Object key, Object field, long value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hincrBy(toBytes(key), toBytes(field), value);
-		}
+		return executeWrite("hincrBy", key, jedis -> jedis.hincrBy(toBytes(key), toBytes(field), value));
 	}
 	
 	/**
@@ -1506,9 +2805,7 @@ public class RedisUtils {
 	 * @return 返回增加后的新值
 	 */
 	public static double hincrByFloat(Object key, Object field, double value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hincrByFloat(toBytes(key), toBytes(field), value);
-		}
+		return executeWrite("hincrByFloat", key, jedis -> jedis.hincrByFloat(toBytes(key), toBytes(field), value));
 	}
 	
 	/**
@@ -1518,9 +2815,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static boolean hexists(Object key, Object field) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hexists(toBytes(key), toBytes(field));
-		}
+		return execute("hexists", key, jedis -> jedis.hexists(toBytes(key), toBytes(field)));
 	}
 	
 	/**
@@ -1530,9 +2825,7 @@ public class RedisUtils {
 	 * @return 实际被删除的field数量
 	 */
 	public static long hdel(Object key, Object... fields) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hdel(toBytes(key), toBytes(fields));
-		}
+		return executeWrite("hdel", key, jedis -> jedis.hdel(toBytes(key), toBytes(fields)));
 	}
 	
 	/**
@@ -1542,9 +2835,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long hlen(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hlen(toBytes(key));
-		}
+		return execute("hlen", key, jedis -> jedis.hlen(toBytes(key)));
 	}
 	
 	/**
@@ -1553,9 +2844,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> hkeysBytes(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hkeys(toBytes(key));
-		}
+		return execute("hkeys", key, jedis -> jedis.hkeys(toBytes(key)));
 	}
 	
 	/**
@@ -1573,9 +2862,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static List<byte[]> hvalsBytes(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hvals(toBytes(key));
-		}
+		return fromValueList(execute("hvals", key, jedis -> jedis.hvals(toBytes(key))));
 	}
 	
 	/**
@@ -1593,9 +2880,9 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Map<byte[], byte[]> hgetAllBytes(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hgetAll(toBytes(key));
-		}
+		if (nearCache != null) return nearCache.hgetAll(toBytes(key), () -> fromValueMap(execute("hgetAll", key, jedis -> jedis.hgetAll(toBytes(key)))));
+		
+		return fromValueMap(execute("hgetAll", key, jedis -> jedis.hgetAll(toBytes(key))));
 	}
 	
 	/**
@@ -1607,15 +2894,23 @@ public class RedisUtils {
 		return toString(hgetAllBytes(key));
 	}
 	
+	/**
+	 * 返回key指定的hash中所有的字段和值，值还原为指定类型
+	 * @param key
+	 * @param type
+	 * @return
+	 */
+	public static <T> Map<String, T> hgetAll(Object key, Class<T> type) {
+		return toObject(hgetAllBytes(key), type);
+	}
+	
 	/**
 	 * 同{@link #hscan(Object, String)}原理
 	 * @param cursor
 	 * @return
 	 */
 	public static ScanResult<Map.Entry<byte[], byte[]>> hscanBytes(Object key, String cursor) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hscan(toBytes(key), toBytes(cursor));
-		}
+		return fromValueScan(execute("hscan", key, jedis -> jedis.hscan(toBytes(key), toBytes(cursor))));
 	}
 	
 	/**
@@ -1640,9 +2935,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static ScanResult<Map.Entry<byte[], byte[]>> hscanBytes(Object key, String cursor, String match, Integer count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.hscan(toBytes(key), toBytes(cursor), toScanParams(match, count));
-		}
+		return fromValueScan(execute("hscan", key, jedis -> jedis.hscan(toBytes(key), toBytes(cursor), toScanParams(match, count))));
 	}
 	
 	/**
@@ -1661,6 +2954,39 @@ public class RedisUtils {
 		return toStringH(hscanBytes(key, cursor, match, count));
 	}
 	
+	/**
+	 * 同{@link #hscanAll(Object, String, Integer)}原理
+	 * @param key
+	 * @param match
+	 * @param count
+	 * @return
+	 */
+	public static Stream<Map.Entry<byte[], byte[]>> hscanAllBytes(Object key, String match, Integer count) {
+		ScanParams params = toScanParams(match, count == null ? scanCount : count);
+		return new RedisScanIterator<>((byte[] cursor) -> fromValueScan(execute("hscan", key, jedis -> jedis.hscan(toBytes(key), cursor, params)))).stream();
+	}
+	
+	/**
+	 * 自动翻页迭代hash中所有的字段和值，规则与{@link #hscan(Object, String, String, Integer)}相同
+	 * 需要Iterator时使用Stream.iterator()
+	 * @param key
+	 * @param match 支持*?[ae][a-e][^e]转义为\
+	 * @param count 每页希望返回的元素数量，为null时使用scan.count设置
+	 * @return
+	 */
+	public static Stream<Map.Entry<String, String>> hscanAll(Object key, String match, Integer count) {
+		return hscanAllBytes(key, match, count).map(RedisUtils::toString);
+	}
+	
+	/**
+	 * 自动翻页迭代hash中所有的字段和值
+	 * @param key
+	 * @return
+	 */
+	public static Stream<Map.Entry<String, String>> hscanAll(Object key) {
+		return hscanAll(key, null, null);
+	}
+	
 	/********** list命令 **********/
 	
 	/**
@@ -1672,9 +2998,7 @@ public class RedisUtils {
 	 * @return 插入后list的长度
 	 */
 	public static long rpush(Object key, Object... values) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.rpush(toBytes(key), toBytes(values));
-		}
+		return execute("rpush", key, jedis -> jedis.rpush(toBytes(key), toValueBytes(values)));
 	}
 	
 	/**
@@ -1687,9 +3011,7 @@ public class RedisUtils {
 	 * @return 插入后list的长度
 	 */
 	public static long lpush(Object key, Object... values) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.lpush(toBytes(key), toBytes(values));
-		}
+		return execute("lpush", key, jedis -> jedis.lpush(toBytes(key), toValueBytes(values)));
 	}
 	
 	/**
@@ -1699,9 +3021,7 @@ public class RedisUtils {
 	 * @return 插入后list的长度
 	 */
 	public static long rpushx(Object key, Object... values) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.rpushx(toBytes(key), toBytes(values));
-		}
+		return execute("rpushx", key, jedis -> jedis.rpushx(toBytes(key), toValueBytes(values)));
 	}
 	
 	/**
@@ -1712,9 +3032,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long lpushx(Object key, Object... values) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.lpushx(toBytes(key), toBytes(values));
-		}
+		return execute("lpushx", key, jedis -> jedis.lpushx(toBytes(key), toValueBytes(values)));
 	}
 	
 	/**
@@ -1723,9 +3041,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long llen(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.llen(toBytes(key));
-		}
+		return execute("llen", key, jedis -> jedis.llen(toBytes(key)));
 	}
 	
 	/**
@@ -1737,9 +3053,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static List<byte[]> lrangeBytes(Object key, long start, long end) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.lrange(toBytes(key), start, end);
-		}
+		return fromValueList(execute("lrange", key, jedis -> jedis.lrange(toBytes(key), start, end)));
 	}
 	
 	/**
@@ -1754,6 +3068,18 @@ public class RedisUtils {
 		return toString(lrangeBytes(key, start, end));
 	}
 	
+	/**
+	 * 获得key指定的list下标在start - end之间的元素(包含end)，并还原为指定类型
+	 * @param key
+	 * @param start
+	 * @param end
+	 * @param type
+	 * @return
+	 */
+	public static <T> List<T> lrange(Object key, long start, long end, Class<T> type) {
+		return toObject(lrangeBytes(key, start, end), type);
+	}
+	
 	/**
 	 * 修剪key指定的list，只保留下标在start - end之间的元素(包含end)
 	 * 若索引为负数，代表从末尾开始计算，例如-1代表倒数第一个，-2代表倒数第二个
@@ -1766,9 +3092,7 @@ public class RedisUtils {
 	 * @param end
 	 */
 	public static void ltrim(Object key, long start, long end) {
-		try (Jedis jedis = getJedis()) {
-			jedis.ltrim(toBytes(key), start, end);
-		}
+		execute("ltrim", key, jedis -> jedis.ltrim(toBytes(key), start, end));
 	}
 	
 	/**
@@ -1780,9 +3104,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] lindexBytes(Object key, long index) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.lindex(toBytes(key), index);
-		}
+		return fromValueBytes(execute("lindex", key, jedis -> jedis.lindex(toBytes(key), index)));
 	}
 	
 	/**
@@ -1806,9 +3128,7 @@ public class RedisUtils {
 	 * @param value
 	 */
 	public static void lset(Object key, long index, Object value) {
-		try (Jedis jedis = getJedis()) {
-			jedis.lset(toBytes(key), index, toBytes(value));
-		}
+		execute("lset", key, jedis -> jedis.lset(toBytes(key), index, toValueBytes(value)));
 	}
 	
 	/**
@@ -1817,16 +3137,14 @@ public class RedisUtils {
 	 * 如果key不存在或元素没找到则不进行操作
 	 * @param key
 	 * @param where before|after
-	 * @param pivot 要搜索的元素值
+	 * @param pivot 要搜索的元素值，以当前的压缩设置转换后比较，压缩设置不同时写入的元素无法匹配
 	 * @param value 要插入的新值
 	 * @return 插入后list的长度
 	 * 如果0则表示key不存在
 	 * 如果-1则表示元素没找到
 	 */
 	public static long linsert(Object key, String where, Object pivot, Object value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.linsert(toBytes(key), toListPosition(where), toBytes(pivot), toBytes(value));
-		}
+		return execute("linsert", key, jedis -> jedis.linsert(toBytes(key), toListPosition(where), toValueBytes(pivot), toValueBytes(value)));
 	}
 	
 	/**
@@ -1837,13 +3155,11 @@ public class RedisUtils {
 	 * 数组长度为0时会删除整个key
 	 * @param key
 	 * @param count
-	 * @param value 要删除的值
+	 * @param value 要删除的值，以当前的压缩设置转换后比较，压缩设置不同时写入的元素无法匹配
 	 * @return 实际删除的元素数量
 	 */
 	public static long lrem(Object key, long count, Object value) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.lrem(toBytes(key), count, toBytes(value));
-		}
+		return execute("lrem", key, jedis -> jedis.lrem(toBytes(key), count, toValueBytes(value)));
 	}
 	
 	/**
@@ -1854,9 +3170,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] lpopBytes(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.lpop(toBytes(key));
-		}
+		return fromValueBytes(execute("lpop", key, jedis -> jedis.lpop(toBytes(key))));
 	}
 	
 	/**
@@ -1878,9 +3192,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] rpopBytes(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.rpop(toBytes(key));
-		}
+		return fromValueBytes(execute("rpop", key, jedis -> jedis.rpop(toBytes(key))));
 	}
 	
 	/**
@@ -1901,9 +3213,7 @@ public class RedisUtils {
 	 * @return 被转移的元素
 	 */
 	public static byte[] rpoplpushBytes(Object srckey, Object dstkey) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.rpoplpush(toBytes(srckey), toBytes(dstkey));
-		}
+		return fromValueBytes(execute("rpoplpush", new Object[] {srckey, dstkey}, jedis -> jedis.rpoplpush(toBytes(srckey), toBytes(dstkey))));
 	}
 	
 	/**
@@ -1926,9 +3236,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static List<byte[]> blpopBytes(int timeout, Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.blpop(timeout, toBytes(keys));
-		}
+		return fromPopBytes(execute("blpop", keys, jedis -> jedis.blpop(timeout, toBytes(keys))));
 	}
 	
 	/**
@@ -1958,9 +3266,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static List<byte[]> brpopBytes(int timeout, Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.brpop(timeout, toBytes(keys));
-		}
+		return fromPopBytes(execute("brpop", keys, jedis -> jedis.brpop(timeout, toBytes(keys))));
 	}
 	
 	/**
@@ -1992,9 +3298,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] brpoplpushBytes(Object source, Object destination, int timeout) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.brpoplpush(toBytes(source), toBytes(destination), timeout);
-		}
+		return fromValueBytes(execute("brpoplpush", new Object[] {source, destination}, jedis -> jedis.brpoplpush(toBytes(source), toBytes(destination), timeout)));
 	}
 	
 	/**
@@ -2022,9 +3326,7 @@ public class RedisUtils {
 	 * @return 实际加入set的元素个数
 	 */
 	public static long sadd(Object key, Object... members) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sadd(toBytes(key), toBytes(members));
-		}
+		return execute("sadd", key, jedis -> jedis.sadd(toBytes(key), toBytes(members)));
 	}
 	
 	/**
@@ -2037,9 +3339,7 @@ public class RedisUtils {
 	 * @return 转移是否成功
 	 */
 	public static boolean smove(Object srckey, Object dstkey, Object member) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.smove(toBytes(srckey), toBytes(dstkey), toBytes(member)) == 1L;
-		}
+		return execute("smove", new Object[] {srckey, dstkey}, jedis -> jedis.smove(toBytes(srckey), toBytes(dstkey), toBytes(member)) == 1L);
 	}
 	
 	/**
@@ -2050,9 +3350,7 @@ public class RedisUtils {
 	 * @return 实际被删除的元素数量
 	 */
 	public static long srem(Object key, Object... members) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.srem(toBytes(key), toBytes(members));
-		}
+		return execute("srem", key, jedis -> jedis.srem(toBytes(key), toBytes(members)));
 	}
 	
 	/**
@@ -2061,9 +3359,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] spopBytes(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.spop(toBytes(key));
-		}
+		return execute("spop", key, jedis -> jedis.spop(toBytes(key)));
 	}
 	
 	/**
@@ -2083,9 +3379,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> spopBytes(Object key, long count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.spop(toBytes(key), count);
-		}
+		return execute("spop", key, jedis -> jedis.spop(toBytes(key), count));
 	}
 	
 	/**
@@ -2107,9 +3401,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long scard(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.scard(toBytes(key));
-		}
+		return execute("scard", key, jedis -> jedis.scard(toBytes(key)));
 	}
 	
 	/**
@@ -2118,9 +3410,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> sdiffBytes(Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sdiff(toBytes(keys));
-		}
+		return execute("sdiff", keys, jedis -> jedis.sdiff(toBytes(keys)));
 	}
 	
 	/**
@@ -2140,9 +3430,7 @@ public class RedisUtils {
 	 * @return 新集合元素的数量
 	 */
 	public static long sdiffstore(Object dstkey, Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sdiffstore(toBytes(dstkey), toBytes(keys));
-		}
+		return executeStore("sdiffstore", dstkey, toKeys(dstkey, keys), jedis -> jedis.sdiffstore(toBytes(dstkey), toBytes(keys)));
 	}
 	
 	/**
@@ -2151,9 +3439,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> sinterBytes(Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sinter(toBytes(keys));
-		}
+		return execute("sinter", keys, jedis -> jedis.sinter(toBytes(keys)));
 	}
 	
 	/**
@@ -2173,9 +3459,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long sinterstore(Object dstkey, Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sinterstore(toBytes(dstkey), toBytes(keys));
-		}
+		return executeStore("sinterstore", dstkey, toKeys(dstkey, keys), jedis -> jedis.sinterstore(toBytes(dstkey), toBytes(keys)));
 	}
 	
 	/**
@@ -2184,9 +3468,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> sunionBytes(Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sunion(toBytes(keys));
-		}
+		return execute("sunion", keys, jedis -> jedis.sunion(toBytes(keys)));
 	}
 	
 	/**
@@ -2206,9 +3488,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long sunionstore(Object dstkey, Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sunionstore(toBytes(dstkey), toBytes(keys));
-		}
+		return executeStore("sunionstore", dstkey, toKeys(dstkey, keys), jedis -> jedis.sunionstore(toBytes(dstkey), toBytes(keys)));
 	}
 	
 	/**
@@ -2218,9 +3498,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static boolean sismember(Object key, Object member) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sismember(toBytes(key), toBytes(member));
-		}
+		return execute("sismember", key, jedis -> jedis.sismember(toBytes(key), toBytes(member)));
 	}
 	
 	/**
@@ -2229,9 +3507,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static byte[] srandmemberBytes(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.srandmember(toBytes(key));
-		}
+		return execute("srandmember", key, jedis -> jedis.srandmember(toBytes(key)));
 	}
 	
 	/**
@@ -2251,9 +3527,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static List<byte[]> srandmemberBytes(Object key, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.srandmember(toBytes(key), count);
-		}
+		return execute("srandmember", key, jedis -> jedis.srandmember(toBytes(key), count));
 	}
 	
 	/**
@@ -2274,9 +3548,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> smembersBytes(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.smembers(toBytes(key));
-		}
+		return execute("smembers", key, jedis -> jedis.smembers(toBytes(key)));
 	}
 	
 	/**
@@ -2288,15 +3560,23 @@ public class RedisUtils {
 		return toString(smembersBytes(key));
 	}
 	
+	/**
+	 * 得到指定set里的所有元素，并还原为指定类型
+	 * @param key
+	 * @param type
+	 * @return
+	 */
+	public static <T> Set<T> smembers(Object key, Class<T> type) {
+		return toObject(smembersBytes(key), type);
+	}
+	
 	/**
 	 * 同{@link #sscan(Object, String)}原理
 	 * @param cursor
 	 * @return
 	 */
 	public static ScanResult<byte[]> sscanBytes(Object key, String cursor) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sscan(toBytes(key), toBytes(cursor));
-		}
+		return execute("sscan", key, jedis -> jedis.sscan(toBytes(key), toBytes(cursor)));
 	}
 	
 	/**
@@ -2321,9 +3601,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static ScanResult<byte[]> sscanBytes(Object key, String cursor, String match, Integer count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.sscan(toBytes(key), toBytes(cursor), toScanParams(match, count));
-		}
+		return execute("sscan", key, jedis -> jedis.sscan(toBytes(key), toBytes(cursor), toScanParams(match, count)));
 	}
 	
 	/**
@@ -2342,6 +3620,39 @@ public class RedisUtils {
 		return toString(sscanBytes(key, cursor, match, count));
 	}
 	
+	/**
+	 * 同{@link #sscanAll(Object, String, Integer)}原理
+	 * @param key
+	 * @param match
+	 * @param count
+	 * @return
+	 */
+	public static Stream<byte[]> sscanAllBytes(Object key, String match, Integer count) {
+		ScanParams params = toScanParams(match, count == null ? scanCount : count);
+		return new RedisScanIterator<>((byte[] cursor) -> execute("sscan", key, jedis -> jedis.sscan(toBytes(key), cursor, params))).stream();
+	}
+	
+	/**
+	 * 自动翻页迭代set中所有的元素，规则与{@link #sscan(Object, String, String, Integer)}相同
+	 * 需要Iterator时使用Stream.iterator()
+	 * @param key
+	 * @param match 支持*?[ae][a-e][^e]转义为\
+	 * @param count 每页希望返回的元素数量，为null时使用scan.count设置
+	 * @return
+	 */
+	public static Stream<String> sscanAll(Object key, String match, Integer count) {
+		return sscanAllBytes(key, match, count).map(RedisUtils::toString);
+	}
+	
+	/**
+	 * 自动翻页迭代set中所有的元素
+	 * @param key
+	 * @return
+	 */
+	public static Stream<String> sscanAll(Object key) {
+		return sscanAll(key, null, null);
+	}
+	
 	/********** zset命令 **********/
 	
 	/**
@@ -2356,9 +3667,7 @@ public class RedisUtils {
 	 * @return 是否插入成功
 	 */
 	public static boolean zadd(Object key, double score, Object member) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zadd(toBytes(key), score, toBytes(member)) == 1L;
-		}
+		return execute("zadd", key, jedis -> jedis.zadd(toBytes(key), score, toBytes(member)) == 1L);
 	}
 	
 	/**
@@ -2375,9 +3684,7 @@ public class RedisUtils {
 	 * @return 是否插入成功
 	 */
 	public static boolean zadd(Object key, double score, Object member, String nxxx, String ch) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zadd(toBytes(key), score, toBytes(member), toZAddParams(nxxx, ch)) == 1L;
-		}
+		return execute("zadd", key, jedis -> jedis.zadd(toBytes(key), score, toBytes(member), toZAddParams(nxxx, ch)) == 1L);
 	}
 	
 	/**
@@ -2391,9 +3698,7 @@ public class RedisUtils {
 	 * @return 实际添加的元素数量
 	 */
 	public static long zadd(Object key, Map<?, Double> scoreMembers) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zadd(toBytes(key), toBytesZ(scoreMembers));
-		}
+		return execute("zadd", key, jedis -> jedis.zadd(toBytes(key), toBytesZ(scoreMembers)));
 	}
 	
 	/**
@@ -2409,9 +3714,7 @@ public class RedisUtils {
 	 * @return 实际添加的元素数量
 	 */
 	public static long zadd(Object key, Map<?, Double> scoreMembers, String nxxx, String ch) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zadd(toBytes(key), toBytesZ(scoreMembers), toZAddParams(nxxx, ch));
-		}
+		return execute("zadd", key, jedis -> jedis.zadd(toBytes(key), toBytesZ(scoreMembers), toZAddParams(nxxx, ch)));
 	}
 	
 	/**
@@ -2424,9 +3727,7 @@ public class RedisUtils {
 	 * @return 返回增加后的新分数
 	 */
 	public static double zincrby(Object key, double score, Object member) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zincrby(toBytes(key), score, toBytes(member));
-		}
+		return execute("zincrby", key, jedis -> jedis.zincrby(toBytes(key), score, toBytes(member)));
 	}
 	
 	/**
@@ -2440,9 +3741,7 @@ public class RedisUtils {
 	 * @return 返回增加后的新分数，如果不符合新增或更新条件，则返回null
 	 */
 	public static Double zincrby(Object key, double score, Object member, String nxxx) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zincrby(toBytes(key), score, toBytes(member), toZIncrByParams(nxxx));
-		}
+		return execute("zincrby", key, jedis -> jedis.zincrby(toBytes(key), score, toBytes(member), toZIncrByParams(nxxx)));
 	}
 	
 	/**
@@ -2452,9 +3751,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long zcard(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zcard(toBytes(key));
-		}
+		return execute("zcard", key, jedis -> jedis.zcard(toBytes(key)));
 	}
 	
 	/**
@@ -2465,9 +3762,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long zcount(Object key, double min, double max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zcount(toBytes(key), min, max);
-		}
+		return execute("zcount", key, jedis -> jedis.zcount(toBytes(key), min, max));
 	}
 	
 	/**
@@ -2478,9 +3773,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long zcount(Object key, String min, String max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zcount(toBytes(key), toBytes(min), toBytes(max));
-		}
+		return execute("zcount", key, jedis -> jedis.zcount(toBytes(key), toBytes(min), toBytes(max)));
 	}
 	
 	/**
@@ -2492,9 +3785,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long zlexcount(Object key, String min, String max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zlexcount(toBytes(key), toBytes(min), toBytes(max));
-		}
+		return execute("zlexcount", key, jedis -> jedis.zlexcount(toBytes(key), toBytes(min), toBytes(max)));
 	}
 	
 	/**
@@ -2505,9 +3796,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Double zscore(Object key, Object member) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zscore(toBytes(key), toBytes(member));
-		}
+		return execute("zscore", key, jedis -> jedis.zscore(toBytes(key), toBytes(member)));
 	}
 	
 	/**
@@ -2521,9 +3810,7 @@ public class RedisUtils {
 	 * @return 排名或null
 	 */
 	public static Long zrank(Object key, Object member) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrank(toBytes(key), toBytes(member));
-		}
+		return execute("zrank", key, jedis -> jedis.zrank(toBytes(key), toBytes(member)));
 	}
 	
 	/**
@@ -2534,9 +3821,7 @@ public class RedisUtils {
 	 * @return 排名或null
 	 */
 	public static Long zrevrank(Object key, Object member) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrank(toBytes(key), toBytes(member));
-		}
+		return execute("zrevrank", key, jedis -> jedis.zrevrank(toBytes(key), toBytes(member)));
 	}
 	
 	/**
@@ -2547,9 +3832,7 @@ public class RedisUtils {
 	 * @return 实际被删除的元素数量
 	 */
 	public static long zrem(Object key, Object... members) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrem(toBytes(key), toBytes(members));
-		}
+		return execute("zrem", key, jedis -> jedis.zrem(toBytes(key), toBytes(members)));
 	}
 	
 	/**
@@ -2563,9 +3846,7 @@ public class RedisUtils {
 	 * @return 实际被删除的元素数量
 	 */
 	public static long zremrangeByRank(Object key, long start, long end) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zremrangeByRank(toBytes(key), start, end);
-		}
+		return execute("zremrangeByRank", key, jedis -> jedis.zremrangeByRank(toBytes(key), start, end));
 	}
 	
 	/**
@@ -2577,9 +3858,7 @@ public class RedisUtils {
 	 * @return 实际被删除的元素数量
 	 */
 	public static long zremrangeByLex(Object key, String min, String max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zremrangeByLex(toBytes(key), toBytes(min), toBytes(max));
-		}
+		return execute("zremrangeByLex", key, jedis -> jedis.zremrangeByLex(toBytes(key), toBytes(min), toBytes(max)));
 	}
 	
 	/**
@@ -2590,9 +3869,7 @@ public class RedisUtils {
 	 * @return 实际被删除的元素数量
 	 */
 	public static long zremrangeByScore(Object key, double min, double max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zremrangeByScore(toBytes(key), min, max);
-		}
+		return execute("zremrangeByScore", key, jedis -> jedis.zremrangeByScore(toBytes(key), min, max));
 	}
 	
 	/**
@@ -2603,9 +3880,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long zremrangeByScore(Object key, String min, String max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zremrangeByScore(toBytes(key), toBytes(min), toBytes(max));
-		}
+		return execute("zremrangeByScore", key, jedis -> jedis.zremrangeByScore(toBytes(key), toBytes(min), toBytes(max)));
 	}
 	
 	/**
@@ -2616,9 +3891,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrangeBytes(Object key, long start, long end) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrange(toBytes(key), start, end);
-		}
+		return execute("zrange", key, jedis -> jedis.zrange(toBytes(key), start, end));
 	}
 	
 	/**
@@ -2643,9 +3916,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrevrangeBytes(Object key, long start, long end) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrange(toBytes(key), start, end);
-		}
+		return execute("zrevrange", key, jedis -> jedis.zrevrange(toBytes(key), start, end));
 	}
 	
 	/**
@@ -2671,9 +3942,7 @@ public class RedisUtils {
 	 * @return 元素与分数的集合
 	 */
 	public static Set<Tuple> zrangeWithScores(Object key, long start, long end) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeWithScores(toBytes(key), start, end);
-		}
+		return execute("zrangeWithScores", key, jedis -> jedis.zrangeWithScores(toBytes(key), start, end));
 	}
 	
 	/**
@@ -2685,9 +3954,7 @@ public class RedisUtils {
 	 * @return 元素与分数的集合
 	 */
 	public static Set<Tuple> zrevrangeWithScores(Object key, long start, long end) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeWithScores(toBytes(key), start, end);
-		}
+		return execute("zrevrangeWithScores", key, jedis -> jedis.zrevrangeWithScores(toBytes(key), start, end));
 	}
 	
 	/**
@@ -2698,9 +3965,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrangeByLexBytes(Object key, String min, String max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeByLex(toBytes(key), toBytes(min), toBytes(max));
-		}
+		return execute("zrangeByLex", key, jedis -> jedis.zrangeByLex(toBytes(key), toBytes(min), toBytes(max)));
 	}
 	
 	/**
@@ -2725,9 +3990,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrangeByLexBytes(Object key, String min, String max, int offset, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeByLex(toBytes(key), toBytes(min), toBytes(max), offset, count);
-		}
+		return execute("zrangeByLex", key, jedis -> jedis.zrangeByLex(toBytes(key), toBytes(min), toBytes(max), offset, count));
 	}
 	
 	/**
@@ -2752,9 +4015,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrevrangeByLexBytes(Object key, String max, String min) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeByLex(toBytes(key), toBytes(max), toBytes(min));
-		}
+		return execute("zrevrangeByLex", key, jedis -> jedis.zrevrangeByLex(toBytes(key), toBytes(max), toBytes(min)));
 	}
 	
 	/**
@@ -2779,9 +4040,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrevrangeByLexBytes(Object key, String max, String min, int offset, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeByLex(toBytes(key), toBytes(max), toBytes(min), offset, count);
-		}
+		return execute("zrevrangeByLex", key, jedis -> jedis.zrevrangeByLex(toBytes(key), toBytes(max), toBytes(min), offset, count));
 	}
 	
 	/**
@@ -2806,9 +4065,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrangeByScoreBytes(Object key, double min, double max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeByScore(toBytes(key), min, max);
-		}
+		return execute("zrangeByScore", key, jedis -> jedis.zrangeByScore(toBytes(key), min, max));
 	}
 	
 	/**
@@ -2832,9 +4089,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrangeByScoreBytes(Object key, double min, double max, int offset, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeByScore(toBytes(key), min, max, offset, count);
-		}
+		return execute("zrangeByScore", key, jedis -> jedis.zrangeByScore(toBytes(key), min, max, offset, count));
 	}
 	
 	/**
@@ -2858,9 +4113,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrangeByScoreBytes(Object key, String min, String max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeByScore(toBytes(key), toBytes(min), toBytes(max));
-		}
+		return execute("zrangeByScore", key, jedis -> jedis.zrangeByScore(toBytes(key), toBytes(min), toBytes(max)));
 	}
 	
 	/**
@@ -2884,9 +4137,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrangeByScoreBytes(Object key, String min, String max, int offset, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeByScore(toBytes(key), toBytes(min), toBytes(max), offset, count);
-		}
+		return execute("zrangeByScore", key, jedis -> jedis.zrangeByScore(toBytes(key), toBytes(min), toBytes(max), offset, count));
 	}
 	
 	/**
@@ -2910,9 +4161,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrevrangeByScoreBytes(Object key, double max, double min) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeByScore(toBytes(key), max, min);
-		}
+		return execute("zrevrangeByScore", key, jedis -> jedis.zrevrangeByScore(toBytes(key), max, min));
 	}
 	
 	/**
@@ -2936,9 +4185,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrevrangeByScoreBytes(Object key, double max, double min, int offset, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeByScore(toBytes(key), max, min, offset, count);
-		}
+		return execute("zrevrangeByScore", key, jedis -> jedis.zrevrangeByScore(toBytes(key), max, min, offset, count));
 	}
 	
 	/**
@@ -2962,9 +4209,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrevrangeByScoreBytes(Object key, String max, String min) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeByScore(toBytes(key), toBytes(max), toBytes(min));
-		}
+		return execute("zrevrangeByScore", key, jedis -> jedis.zrevrangeByScore(toBytes(key), toBytes(max), toBytes(min)));
 	}
 	
 	/**
@@ -2988,9 +4233,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<byte[]> zrevrangeByScoreBytes(Object key, String max, String min, int offset, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeByScore(toBytes(key), toBytes(max), toBytes(min), offset, count);
-		}
+		return execute("zrevrangeByScore", key, jedis -> jedis.zrevrangeByScore(toBytes(key), toBytes(max), toBytes(min), offset, count));
 	}
 	
 	/**
@@ -3014,9 +4257,7 @@ public class RedisUtils {
 	 * @return 元素与分数的集合
 	 */
 	public static Set<Tuple> zrangeByScoreWithScores(Object key, double min, double max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeByScoreWithScores(toBytes(key), min, max);
-		}
+		return execute("zrangeByScoreWithScores", key, jedis -> jedis.zrangeByScoreWithScores(toBytes(key), min, max));
 	}
 	
 	/**
@@ -3029,9 +4270,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<Tuple> zrangeByScoreWithScores(Object key, double min, double max, int offset, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeByScoreWithScores(toBytes(key), min, max, offset, count);
-		}
+		return execute("zrangeByScoreWithScores", key, jedis -> jedis.zrangeByScoreWithScores(toBytes(key), min, max, offset, count));
 	}
 	
 	/**
@@ -3042,9 +4281,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<Tuple> zrangeByScoreWithScores(Object key, String min, String max) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeByScoreWithScores(toBytes(key), toBytes(min), toBytes(max));
-		}
+		return execute("zrangeByScoreWithScores", key, jedis -> jedis.zrangeByScoreWithScores(toBytes(key), toBytes(min), toBytes(max)));
 	}
 	
 	/**
@@ -3057,9 +4294,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<Tuple> zrangeByScoreWithScores(Object key, String min, String max, int offset, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrangeByScoreWithScores(toBytes(key), toBytes(min), toBytes(max), offset, count);
-		}
+		return execute("zrangeByScoreWithScores", key, jedis -> jedis.zrangeByScoreWithScores(toBytes(key), toBytes(min), toBytes(max), offset, count));
 	}
 	
 	/**
@@ -3070,9 +4305,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<Tuple> zrevrangeByScoreWithScores(Object key, double max, double min) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeByScoreWithScores(toBytes(key), max, min);
-		}
+		return execute("zrevrangeByScoreWithScores", key, jedis -> jedis.zrevrangeByScoreWithScores(toBytes(key), max, min));
 	}
 	
 	/**
@@ -3085,9 +4318,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<Tuple> zrevrangeByScoreWithScores(Object key, double max, double min, int offset, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeByScoreWithScores(toBytes(key), max, min, offset, count);
-		}
+		return execute("zrevrangeByScoreWithScores", key, jedis -> jedis.zrevrangeByScoreWithScores(toBytes(key), max, min, offset, count));
 	}
 	
 	/**
@@ -3098,9 +4329,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<Tuple> zrevrangeByScoreWithScores(Object key, String max, String min) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeByScoreWithScores(toBytes(key), toBytes(max), toBytes(min));
-		}
+		return execute("zrevrangeByScoreWithScores", key, jedis -> jedis.zrevrangeByScoreWithScores(toBytes(key), toBytes(max), toBytes(min)));
 	}
 	
 	/**
@@ -3113,9 +4342,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static Set<Tuple> zrevrangeByScoreWithScores(Object key, String max, String min, int offset, int count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zrevrangeByScoreWithScores(toBytes(key), toBytes(max), toBytes(min), offset, count);
-		}
+		return execute("zrevrangeByScoreWithScores", key, jedis -> jedis.zrevrangeByScoreWithScores(toBytes(key), toBytes(max), toBytes(min), offset, count));
 	}
 	
 	/**
@@ -3127,9 +4354,7 @@ public class RedisUtils {
 	 * @return 新集合的元素个数
 	 */
 	public static long zinterstore(Object dstkey, Object... sets) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zinterstore(toBytes(dstkey), toBytes(sets));
-		}
+		return executeStore("zinterstore", dstkey, toKeys(dstkey, sets), jedis -> jedis.zinterstore(toBytes(dstkey), toBytes(sets)));
 	}
 	
 	/**
@@ -3143,9 +4368,7 @@ public class RedisUtils {
 	 * @return 新集合的元素个数
 	 */
 	public static long zinterstore(Object dstkey, double[] weights, String aggregate, Object... sets) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zinterstore(toBytes(dstkey), toZParams(weights, aggregate), toBytes(sets));
-		}
+		return executeStore("zinterstore", dstkey, toKeys(dstkey, sets), jedis -> jedis.zinterstore(toBytes(dstkey), toZParams(weights, aggregate), toBytes(sets)));
 	}
 	
 	/**
@@ -3157,9 +4380,7 @@ public class RedisUtils {
 	 * @return 新集合的元素个数
 	 */
 	public static long zunionstore(Object dstkey, Object... sets) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zunionstore(toBytes(dstkey), toBytes(sets));
-		}
+		return executeStore("zunionstore", dstkey, toKeys(dstkey, sets), jedis -> jedis.zunionstore(toBytes(dstkey), toBytes(sets)));
 	}
 	
 	/**
@@ -3173,9 +4394,7 @@ public class RedisUtils {
 	 * @return 新集合的元素个数
 	 */
 	public static long zunionstore(Object dstkey, double[] weights, String aggregate, Object... sets) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zunionstore(toBytes(dstkey), toZParams(weights, aggregate), toBytes(sets));
-		}
+		return executeStore("zunionstore", dstkey, toKeys(dstkey, sets), jedis -> jedis.zunionstore(toBytes(dstkey), toZParams(weights, aggregate), toBytes(sets)));
 	}
 	
 	/**
@@ -3189,9 +4408,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static ScanResult<Tuple> zscan(Object key, String cursor) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zscan(toBytes(key), toBytes(cursor));
-		}
+		return execute("zscan", key, jedis -> jedis.zscan(toBytes(key), toBytes(cursor)));
 	}
 	
 	/**
@@ -3207,9 +4424,29 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static ScanResult<Tuple> zscan(Object key, String cursor, String match, Integer count) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.zscan(toBytes(key), toBytes(cursor), toScanParams(match, count));
-		}
+		return execute("zscan", key, jedis -> jedis.zscan(toBytes(key), toBytes(cursor), toScanParams(match, count)));
+	}
+	
+	/**
+	 * 自动翻页迭代zset中所有的元素与其分数，规则与{@link #zscan(Object, String, String, Integer)}相同
+	 * 需要Iterator时使用Stream.iterator()
+	 * @param key
+	 * @param match 支持*?[ae][a-e][^e]转义为\
+	 * @param count 每页希望返回的元素数量，为null时使用scan.count设置
+	 * @return
+	 */
+	public static Stream<Tuple> zscanAll(Object key, String match, Integer count) {
+		ScanParams params = toScanParams(match, count == null ? scanCount : count);
+		return new RedisScanIterator<>((byte[] cursor) -> execute("zscan", key, jedis -> jedis.zscan(toBytes(key), cursor, params))).stream();
+	}
+	
+	/**
+	 * 自动翻页迭代zset中所有的元素与其分数
+	 * @param key
+	 * @return
+	 */
+	public static Stream<Tuple> zscanAll(Object key) {
+		return zscanAll(key, null, null);
 	}
 	
 	/**
@@ -3220,9 +4457,7 @@ public class RedisUtils {
 	 * @return 统计数量是否有变化
 	 */
 	public static boolean pfadd(Object key, Object... elements) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.pfadd(toBytes(key), toBytes(elements)) == 1L;
-		}
+		return executeWrite("pfadd", key, jedis -> jedis.pfadd(toBytes(key), toBytes(elements)) == 1L);
 	}
 	
 	/**
@@ -3232,9 +4467,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long pfcount(Object key) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.pfcount(toBytes(key));
-		}
+		return execute("pfcount", key, jedis -> jedis.pfcount(toBytes(key)));
 	}
 	
 	/**
@@ -3244,9 +4477,7 @@ public class RedisUtils {
 	 * @return
 	 */
 	public static long pfcount(Object... keys) {
-		try (Jedis jedis = getJedis()) {
-			return jedis.pfcount(toBytes(keys));
-		}
+		return execute("pfcount", keys, jedis -> jedis.pfcount(toBytes(keys)));
 	}
 	
 	/**
@@ -3255,9 +4486,104 @@ public class RedisUtils {
 	 * @param sourcekeys
 	 */
 	public static void pfmerge(Object destkey, Object... sourcekeys) {
-		try (Jedis jedis = getJedis()) {
-			jedis.pfmerge(toBytes(destkey), toBytes(sourcekeys));
+		executeStore("pfmerge", destkey, toKeys(destkey, sourcekeys), jedis -> jedis.pfmerge(toBytes(destkey), toBytes(sourcekeys)));
+	}
+	
+	/********** script命令 **********/
+	
+	/**
+	 * 注册脚本，并缓存到所有主节点
+	 * 同名的脚本会被替换
+	 * @param name
+	 * @param script Lua脚本
+	 * @return
+	 */
+	public static RedisScript registerScript(String name, String script) {
+		RedisScript redisScript = new RedisScript(script);
+		redisScript.load();
+		scripts.put(name, redisScript);
+		return redisScript;
+	}
+	
+	/**
+	 * 得到已注册的脚本，未注册时返回null
+	 * @param name
+	 * @return
+	 */
+	public static RedisScript getScript(String name) {
+		return scripts.get(name);
+	}
+	
+	/**
+	 * 执行已注册的脚本
+	 * 集群模式下按照第一个key的slot路由，所有key必须在同一个slot中
+	 * @param name
+	 * @param keys 脚本中的KEYS
+	 * @param args 脚本中的ARGV
+	 * @return 整数返回Long，字符串返回byte[]，数组返回List
+	 */
+	public static Object evalScript(String name, Object[] keys, Object... args) {
+		RedisScript script = scripts.get(name);
+		if (script == null) throw new IllegalArgumentException("script not registered:" + name);
+		
+		return script.eval(keys, args);
+	}
+	
+	/**
+	 * 将脚本缓存到所有主节点，之后可以通过SHA1执行
+	 * @param script
+	 * @return 脚本的SHA1
+	 */
+	public static String scriptLoad(String script) {
+		List<byte[]> sha1s = executeAll("scriptLoad", jedis -> jedis.scriptLoad(toBytes(script)));
+		return toString(sha1s.get(0));
+	}
+	
+	/**
+	 * 判断脚本是否已缓存
+	 * 集群模式下所有主节点都已缓存时才返回true
+	 * @param sha1
+	 * @return
+	 */
+	public static boolean scriptExists(String sha1) {
+		for (Long exists : executeAll("scriptExists", jedis -> jedis.scriptExists(toBytes(sha1)))) {
+			if (exists != 1L) return false;
 		}
+		return true;
+	}
+	
+	/**
+	 * 清空所有主节点的脚本缓存
+	 * 已注册的脚本在下次执行时自动重新缓存
+	 */
+	public static void scriptFlush() {
+		executeAll("scriptFlush", jedis -> jedis.scriptFlush());
+	}
+	
+	/********** pub/sub命令 **********/
+	
+	/**
+	 * 发布消息到频道
+	 * 集群模式下消息会广播到所有节点
+	 * @param channel
+	 * @param message
+	 * @return 收到消息的订阅者数量，集群模式下只包括所连接节点上的订阅者
+	 */
+	public static long publish(String channel, Object message) {
+		return execute("publish", jedis -> jedis.publish(toBytes(channel), toBytes(message)));
+	}
+	
+	/**
+	 * 以管道方式批量发布消息到频道，消息按顺序发布
+	 * @param channel
+	 * @param messages
+	 */
+	public static void publishAll(String channel, Collection<?> messages) {
+		pipeline(batch -> {
+			for (Object message : messages) {
+				batch.publish(channel, message);
+			}
+		});
 	}
 	
 }